@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.backfill;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoint actuator de pilotage du rattrapage des récompenses :
+ *
+ * <pre>
+ * POST   /actuator/backfill    démarre un rattrapage ({"resume":false} pour ignorer le fichier de reprise)
+ * GET    /actuator/backfill    avancement, débit et temps restant estimé
+ * DELETE /actuator/backfill    interrompt le rattrapage, qui pourra être repris
+ * </pre>
+ */
+@Component
+@Endpoint(id = "backfill")
+public class RewardBackfillEndpoint {
+
+	private final RewardBackfillEngine engine;
+
+	public RewardBackfillEndpoint(RewardBackfillEngine engine) {
+		this.engine = engine;
+	}
+
+	@WriteOperation
+	public RewardBackfillEngine.Progress start(@Nullable Boolean resume) {
+		engine.start(resume == null || resume);
+		return engine.getProgress();
+	}
+
+	@ReadOperation
+	public RewardBackfillEngine.Progress progress() {
+		return engine.getProgress();
+	}
+
+	@DeleteOperation
+	public RewardBackfillEngine.Progress cancel() {
+		engine.cancel();
+		return engine.getProgress();
+	}
+}
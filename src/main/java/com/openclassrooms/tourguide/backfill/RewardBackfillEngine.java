@@ -0,0 +1,312 @@
+package com.openclassrooms.tourguide.backfill;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.ratelimit.TokenBucket;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.store.TieredUserStore;
+
+/**
+ * Moteur de rattrapage des récompenses : rejoue l'historique de tous les utilisateurs avec les règles courantes
+ * (rayon de proximité, catalogue des attractions), par exemple après une modification de ces règles.
+ * <ul>
+ * <li>les utilisateurs, triés par nom, sont découpés en lots traités en parallèle dans un {@link ForkJoinPool}
+ * dédié, sans passer par les pools du suivi ;</li>
+ * <li>chaque lot terminé est inscrit dans un fichier de reprise : un rattrapage interrompu reprend là où il
+ * s'était arrêté, tant que les règles et les utilisateurs n'ont pas changé ;</li>
+ * <li>les utilisateurs sont lus sans passer par le cache des utilisateurs actifs ;</li>
+ * <li>les appels à RewardCentral sont limités par un seau à jetons pour préserver le trafic en direct ;</li>
+ * <li>l'avancement, le débit et le temps restant estimé sont consultables à tout moment.</li>
+ * </ul>
+ */
+public class RewardBackfillEngine {
+
+	public enum State {
+		IDLE, RUNNING, COMPLETED, CANCELLED, FAILED
+	}
+
+	/**
+	 * Avancement du rattrapage en cours ou du dernier rattrapage.
+	 *
+	 * @param resumedUsers   Les utilisateurs des lots déjà traités lors d'une exécution précédente.
+	 * @param usersPerSecond Le débit de l'exécution courante.
+	 * @param etaSeconds     Le temps restant estimé, ou -1 s'il n'est pas encore connu.
+	 */
+	public record Progress(State state, int totalUsers, long processedUsers, long resumedUsers, long rewardsAdded,
+			int completedChunks, int totalChunks, long elapsedMillis, double usersPerSecond, long etaSeconds) {
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(RewardBackfillEngine.class);
+	private final TourGuideService tourGuideService;
+	private final RewardsService rewardsService;
+	private final Path checkpointFile;
+	private final int parallelism;
+	private final int chunkSize;
+	private final TokenBucket rewardCentralThrottle;
+
+	private volatile State state = State.IDLE;
+	private volatile boolean cancelled;
+	private volatile Thread runner;
+	private volatile int totalUsers;
+	private volatile int totalChunks;
+	private volatile long startedAtMillis;
+	private volatile long finishedAtMillis;
+	private BitSet completedChunks = new BitSet();
+	private final AtomicLong processedUsers = new AtomicLong();
+	private final AtomicLong resumedUsers = new AtomicLong();
+	private final AtomicLong rewardsAdded = new AtomicLong();
+
+	/**
+	 * @param checkpointFile              Le fichier de reprise.
+	 * @param parallelism                 Le nombre de lots traités simultanément.
+	 * @param chunkSize                   Le nombre d'utilisateurs par lot.
+	 * @param rewardCentralCallsPerSecond Le nombre maximal d'appels à RewardCentral par seconde.
+	 */
+	public RewardBackfillEngine(TourGuideService tourGuideService, RewardsService rewardsService, Path checkpointFile,
+			int parallelism, int chunkSize, double rewardCentralCallsPerSecond) {
+		this.tourGuideService = tourGuideService;
+		this.rewardsService = rewardsService;
+		this.checkpointFile = checkpointFile;
+		this.parallelism = parallelism;
+		this.chunkSize = chunkSize;
+		// rafale d'une seconde au plus
+		this.rewardCentralThrottle = new TokenBucket(Math.max(1, (int) rewardCentralCallsPerSecond),
+				rewardCentralCallsPerSecond);
+	}
+
+	/**
+	 * Démarre un rattrapage en arrière-plan, sauf si un rattrapage est déjà en cours.
+	 *
+	 * @param resume true pour reprendre depuis le fichier de reprise s'il correspond aux règles courantes.
+	 * @return false si un rattrapage est déjà en cours.
+	 */
+	public synchronized boolean start(boolean resume) {
+		if (state == State.RUNNING) {
+			return false;
+		}
+		TieredUserStore store = tourGuideService.getUserStore();
+		List<String> userNames = store.getUserNames();
+		String runKey = runKey(userNames, chunkSize, rewardsService.getProximityBuffer(),
+				rewardsService.getAttractionIndex().size());
+		totalUsers = userNames.size();
+		totalChunks = (userNames.size() + chunkSize - 1) / chunkSize;
+		completedChunks = resume ? readCheckpoint(runKey) : new BitSet();
+		if (completedChunks.isEmpty()) {
+			writeCheckpoint(runKey + System.lineSeparator(), false);
+		}
+		processedUsers.set(0);
+		rewardsAdded.set(0);
+		resumedUsers.set(0);
+		for (int chunk = completedChunks.nextSetBit(0); chunk >= 0; chunk = completedChunks.nextSetBit(chunk + 1)) {
+			resumedUsers.addAndGet(Math.min(chunkSize, userNames.size() - chunk * chunkSize));
+		}
+		cancelled = false;
+		startedAtMillis = System.currentTimeMillis();
+		finishedAtMillis = 0;
+		state = State.RUNNING;
+		logger.info("Reward backfill started for " + userNames.size() + " users, " + completedChunks.cardinality()
+				+ "/" + totalChunks + " chunks already done");
+
+		runner = new Thread(() -> run(store, userNames), "reward-backfill");
+		runner.setDaemon(true);
+		runner.start();
+		return true;
+	}
+
+	/**
+	 * Identifie un rattrapage : les lots d'un fichier de reprise ne sont réutilisés que si les règles et les
+	 * utilisateurs (une empreinte de leurs noms, et non leur seul nombre) sont les mêmes.
+	 *
+	 * @param userNames Les noms des utilisateurs, triés.
+	 * @return La première ligne du fichier de reprise.
+	 */
+	public static String runKey(List<String> userNames, int chunkSize, int proximityBuffer, int attractionCount) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (String userName : userNames) {
+			digest.update(userName.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+		}
+		return "users=" + userNames.size() + ";names=" + HexFormat.of().formatHex(digest.digest()) + ";chunkSize="
+				+ chunkSize + ";proximityBuffer=" + proximityBuffer + ";attractions=" + attractionCount;
+	}
+
+	/**
+	 * Interrompt le rattrapage en cours ; les lots terminés restent inscrits dans le fichier de reprise.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Attend la fin du rattrapage en cours.
+	 *
+	 * @return true si aucun rattrapage n'est plus en cours.
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		Thread thread = runner;
+		if (thread != null) {
+			thread.join(unit.toMillis(timeout));
+		}
+		return state != State.RUNNING;
+	}
+
+	// Appelée par Spring à l'arrêt du contexte
+	public void shutdown() {
+		cancel();
+	}
+
+	private void run(TieredUserStore store, List<String> userNames) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new ChunkRange(store, userNames, 0, totalChunks));
+			if (cancelled) {
+				state = State.CANCELLED;
+			} else {
+				Files.deleteIfExists(checkpointFile);
+				state = State.COMPLETED;
+			}
+		} catch (Exception e) {
+			logger.error("Reward backfill failed", e);
+			state = State.FAILED;
+		} finally {
+			pool.shutdownNow();
+			finishedAtMillis = System.currentTimeMillis();
+			logger.info("Reward backfill " + state + ": " + processedUsers.get() + " users, " + rewardsAdded.get()
+					+ " rewards added");
+		}
+	}
+
+	// Plage de lots, découpée en deux jusqu'à n'en contenir qu'un seul
+	private final class ChunkRange extends RecursiveAction {
+		private final TieredUserStore store;
+		private final List<String> userNames;
+		private final int fromChunk;
+		private final int toChunk;
+
+		private ChunkRange(TieredUserStore store, List<String> userNames, int fromChunk, int toChunk) {
+			this.store = store;
+			this.userNames = userNames;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk > 1) {
+				int middle = (fromChunk + toChunk) >>> 1;
+				invokeAll(new ChunkRange(store, userNames, fromChunk, middle),
+						new ChunkRange(store, userNames, middle, toChunk));
+				return;
+			}
+			if (fromChunk >= toChunk || isCompleted(fromChunk)) {
+				return;
+			}
+			int end = Math.min(userNames.size(), (fromChunk + 1) * chunkSize);
+			for (int i = fromChunk * chunkSize; i < end; i++) {
+				if (cancelled) {
+					return;
+				}
+				// lu sans passer par le cache : le rattrapage n'en évince pas les utilisateurs actifs
+				boolean[] interrupted = new boolean[1];
+				store.scan(userNames.get(i), user -> {
+					try {
+						rewardsAdded.addAndGet(rewardsService.replayRewards(user, rewardCentralThrottle));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						interrupted[0] = true;
+					}
+				});
+				if (interrupted[0]) {
+					cancelled = true;
+					return;
+				}
+				processedUsers.incrementAndGet();
+			}
+			markCompleted(fromChunk);
+		}
+	}
+
+	private synchronized boolean isCompleted(int chunk) {
+		return completedChunks.get(chunk);
+	}
+
+	private synchronized void markCompleted(int chunk) {
+		completedChunks.set(chunk);
+		writeCheckpoint(chunk + System.lineSeparator(), true);
+	}
+
+	// Fichier de reprise : la première ligne identifie le rattrapage, les suivantes sont les lots terminés
+	private BitSet readCheckpoint(String runKey) {
+		BitSet chunks = new BitSet();
+		if (!Files.exists(checkpointFile)) {
+			return chunks;
+		}
+		try {
+			List<String> lines = Files.readAllLines(checkpointFile, StandardCharsets.UTF_8);
+			if (lines.isEmpty() || !lines.get(0).equals(runKey)) {
+				logger.info("Reward backfill checkpoint does not match current rules, starting over");
+				return chunks;
+			}
+			for (String line : lines.subList(1, lines.size())) {
+				if (!line.isBlank()) {
+					chunks.set(Integer.parseInt(line.trim()));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Unreadable reward backfill checkpoint, starting over", e);
+			chunks.clear();
+		}
+		return chunks;
+	}
+
+	private void writeCheckpoint(String content, boolean append) {
+		try {
+			if (checkpointFile.getParent() != null) {
+				Files.createDirectories(checkpointFile.getParent());
+			}
+			Files.writeString(checkpointFile, content, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.DSYNC,
+					append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return L'avancement du rattrapage en cours ou du dernier rattrapage.
+	 */
+	public synchronized Progress getProgress() {
+		long end = finishedAtMillis > 0 ? finishedAtMillis : System.currentTimeMillis();
+		long elapsedMillis = startedAtMillis > 0 ? end - startedAtMillis : 0;
+		long processed = processedUsers.get();
+		double usersPerSecond = elapsedMillis > 0 ? processed * 1000d / elapsedMillis : 0;
+		long remaining = Math.max(0, totalUsers - processed - resumedUsers.get());
+		long etaSeconds = state != State.RUNNING ? 0 : usersPerSecond > 0 ? (long) (remaining / usersPerSecond) : -1;
+		return new Progress(state, totalUsers, processed, resumedUsers.get(), rewardsAdded.get(),
+				completedChunks.cardinality(), totalChunks, elapsedMillis, usersPerSecond, etaSeconds);
+	}
+}
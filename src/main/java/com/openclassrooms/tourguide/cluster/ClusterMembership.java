@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Composition du cluster TourGuide : le nœud courant, l'adresse de chaque nœud et l'anneau de hachage
+ * attribuant chaque utilisateur à un seul nœud. Chaque nœud ne suit que les utilisateurs de sa partition
+ * et redirige les requêtes concernant les autres vers leur propriétaire.
+ */
+public class ClusterMembership {
+
+	public static final String STANDALONE_NODE = "standalone";
+
+	private final String selfNodeId;
+	private final Map<String, String> nodeUrls;
+	private final ConsistentHashRing ring;
+
+	/**
+	 * @param selfNodeId L'identifiant du nœud courant.
+	 * @param nodeUrls   L'adresse de base (http://hôte:port) de chaque nœud, par identifiant.
+	 */
+	public ClusterMembership(String selfNodeId, Map<String, String> nodeUrls) {
+		if (!nodeUrls.containsKey(selfNodeId)) {
+			throw new IllegalArgumentException("Node " + selfNodeId + " is not a cluster member");
+		}
+		this.selfNodeId = selfNodeId;
+		this.nodeUrls = Collections.unmodifiableMap(new LinkedHashMap<>(nodeUrls));
+		this.ring = new ConsistentHashRing(nodeUrls.keySet());
+	}
+
+	/**
+	 * @return Un cluster d'un seul nœud, propriétaire de tous les utilisateurs.
+	 */
+	public static ClusterMembership standalone() {
+		return new ClusterMembership(STANDALONE_NODE, Map.of(STANDALONE_NODE, ""));
+	}
+
+	/**
+	 * Construit la composition à partir d'une liste "id=url,id=url".
+	 */
+	public static ClusterMembership fromList(String selfNodeId, String members) {
+		Map<String, String> nodeUrls = new LinkedHashMap<>();
+		for (String member : members.split(",")) {
+			String[] parts = member.trim().split("=", 2);
+			nodeUrls.put(parts[0].trim(), parts.length > 1 ? parts[1].trim() : "");
+		}
+		return new ClusterMembership(selfNodeId, nodeUrls);
+	}
+
+	/**
+	 * Construit la composition à partir d'un fichier de propriétés (une ligne "id=url" par nœud).
+	 */
+	public static ClusterMembership fromFile(String selfNodeId, Path membersFile) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(membersFile)) {
+			properties.load(reader);
+		}
+		Map<String, String> nodeUrls = new LinkedHashMap<>();
+		properties.stringPropertyNames().stream().sorted()
+				.forEach(node -> nodeUrls.put(node, properties.getProperty(node).trim()));
+		return new ClusterMembership(selfNodeId, nodeUrls);
+	}
+
+	/**
+	 * @param userName Le nom de l'utilisateur.
+	 * @return true si l'utilisateur appartient à la partition du nœud courant.
+	 */
+	public boolean isLocal(String userName) {
+		return nodeUrls.size() == 1 || selfNodeId.equals(ring.nodeFor(userName));
+	}
+
+	public String ownerOf(String userName) {
+		return ring.nodeFor(userName);
+	}
+
+	public String urlOf(String nodeId) {
+		return nodeUrls.get(nodeId);
+	}
+
+	public String getSelfNodeId() {
+		return selfNodeId;
+	}
+
+	public Map<String, String> getNodeUrls() {
+		return nodeUrls;
+	}
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Intercepteur redirigeant les requêtes concernant un utilisateur d'une autre partition
+ * vers le nœud propriétaire (307, la méthode et le corps sont conservés).
+ */
+public class ClusterRoutingInterceptor implements HandlerInterceptor {
+
+	private final ClusterMembership clusterMembership;
+
+	public ClusterRoutingInterceptor(ClusterMembership clusterMembership) {
+		this.clusterMembership = clusterMembership;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		String userName = request.getParameter("userName");
+		if (userName == null || clusterMembership.isLocal(userName)) {
+			return true;
+		}
+		String owner = clusterMembership.ownerOf(userName);
+		String location = clusterMembership.urlOf(owner) + request.getRequestURI()
+				+ (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+		response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+		response.setHeader(HttpHeaders.LOCATION, location);
+		response.setHeader("X-TourGuide-Owner", owner);
+		return false;
+	}
+}
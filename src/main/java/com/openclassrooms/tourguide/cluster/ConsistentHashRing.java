@@ -0,0 +1,69 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Anneau de hachage cohérent avec nœuds virtuels.
+ * Chaque nœud est placé plusieurs fois sur l'anneau afin de répartir uniformément les clés ;
+ * l'ajout ou le retrait d'un nœud ne déplace que la part de clés qui lui revient.
+ * La fonction de hachage est déterministe, si bien que tous les nœuds calculent le même partitionnement.
+ */
+public class ConsistentHashRing {
+
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+	private final List<String> nodes;
+
+	/**
+	 * @param nodes        Les identifiants des nœuds.
+	 * @param virtualNodes Le nombre de positions de chaque nœud sur l'anneau.
+	 */
+	public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("A hash ring needs at least one node");
+		}
+		this.nodes = List.copyOf(nodes);
+		for (String node : nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(node + "#" + i), node);
+			}
+		}
+	}
+
+	public ConsistentHashRing(Collection<String> nodes) {
+		this(nodes, DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * @param key La clé à placer (nom d'utilisateur).
+	 * @return L'identifiant du nœud propriétaire de la clé.
+	 */
+	public String nodeFor(String key) {
+		Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	// FNV-1a 64 bits suivi du mélange final de MurmurHash3, stable d'une JVM à l'autre
+	static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openclassrooms.tourguide.backfill.RewardBackfillEngine;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Configuration du rattrapage des récompenses.
+ *
+ * <pre>
+ * tourguide.backfill.checkpoint-file=/var/lib/tourguide/backfill.checkpoint
+ * tourguide.backfill.parallelism=8
+ * tourguide.backfill.chunk-size=256
+ * # plafond d'appels à RewardCentral, pour ne pas pénaliser le trafic en direct
+ * tourguide.backfill.reward-central-calls-per-second=20
+ * </pre>
+ */
+@Configuration
+public class BackfillConfig {
+
+	@Value("${tourguide.backfill.checkpoint-file:${java.io.tmpdir}/tourguide-backfill.checkpoint}")
+	private String checkpointFile;
+
+	@Value("${tourguide.backfill.parallelism:8}")
+	private int parallelism;
+
+	@Value("${tourguide.backfill.chunk-size:256}")
+	private int chunkSize;
+
+	@Value("${tourguide.backfill.reward-central-calls-per-second:20}")
+	private double rewardCentralCallsPerSecond;
+
+	@Bean
+	public RewardBackfillEngine rewardBackfillEngine(TourGuideService tourGuideService, RewardsService rewardsService) {
+		return new RewardBackfillEngine(tourGuideService, rewardsService, Paths.get(checkpointFile), parallelism,
+				chunkSize, rewardCentralCallsPerSecond);
+	}
+}
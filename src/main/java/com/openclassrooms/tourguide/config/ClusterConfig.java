@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.cluster.ClusterRoutingInterceptor;
+
+/**
+ * Configuration du partitionnement des utilisateurs entre plusieurs instances TourGuide.
+ * Sans configuration, l'instance est seule et possède tous les utilisateurs.
+ *
+ * <pre>
+ * tourguide.cluster.self=node-a
+ * tourguide.cluster.members=node-a=http://localhost:9080,node-b=http://localhost:9081
+ * # ou bien un fichier de propriétés "id=url" :
+ * tourguide.cluster.members-file=/etc/tourguide/members.properties
+ * </pre>
+ */
+@Configuration
+public class ClusterConfig implements WebMvcConfigurer {
+
+	@Value("${tourguide.cluster.self:" + ClusterMembership.STANDALONE_NODE + "}")
+	private String selfNodeId;
+
+	@Value("${tourguide.cluster.members:}")
+	private String members;
+
+	@Value("${tourguide.cluster.members-file:}")
+	private String membersFile;
+
+	// Configuration d'un bean décrivant la composition du cluster
+	@Bean
+	public ClusterMembership clusterMembership() throws IOException {
+		if (!membersFile.isEmpty()) {
+			return ClusterMembership.fromFile(selfNodeId, Paths.get(membersFile));
+		}
+		if (!members.isEmpty()) {
+			return ClusterMembership.fromList(selfNodeId, members);
+		}
+		return ClusterMembership.standalone();
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		try {
+			registry.addInterceptor(new ClusterRoutingInterceptor(clusterMembership()));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to load cluster members", e);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.tourguide.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.openclassrooms.tourguide.resilience.ResiliencePolicy;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Configuration du doublement des appels lents (hedging) vers gpsUtil et RewardCentral, désactivé par défaut.
+ * Les métriques exposées permettent de comparer la latence au 99e percentile vue par l'appelant
+ * à celle des tentatives individuelles, et la charge supplémentaire induite.
+ *
+ * <pre>
+ * tourguide.hedging.enabled=true
+ * # un appel plus lent que 95 % des appels récents est doublé
+ * tourguide.hedging.percentile=95
+ * # au plus 5 % d'appels supplémentaires
+ * tourguide.hedging.max-ratio=0.05
+ * </pre>
+ */
+@Configuration
+@ConditionalOnProperty("tourguide.hedging.enabled")
+public class HedgingConfig {
+
+	public HedgingConfig(RewardsService rewardsService, MeterRegistry meterRegistry,
+			@Value("${tourguide.hedging.percentile:95}") double percentile,
+			@Value("${tourguide.hedging.max-ratio:0.05}") double maxRatio) {
+		for (ResiliencePolicy policy : new ResiliencePolicy[] { rewardsService.getGpsUtilPolicy(),
+				rewardsService.getRewardCentralPolicy() }) {
+			policy.enableHedging(percentile, maxRatio);
+			register(policy, meterRegistry);
+		}
+	}
+
+	private static void register(ResiliencePolicy policy, MeterRegistry meterRegistry) {
+		String dependency = policy.getDependency();
+		FunctionCounter.builder("tourguide.hedging.hedges", policy, ResiliencePolicy::getHedgeCount)
+				.tag("dependency", dependency)
+				.register(meterRegistry);
+		FunctionCounter.builder("tourguide.hedging.wins", policy, ResiliencePolicy::getHedgeWinCount)
+				.tag("dependency", dependency)
+				.register(meterRegistry);
+		Gauge.builder("tourguide.hedging.extra.load", policy,
+				p -> p.getCallCount() == 0 ? 0 : (double) p.getHedgeCount() / p.getCallCount())
+				.tag("dependency", dependency)
+				.register(meterRegistry);
+		Gauge.builder("tourguide.hedging.latency.p99", policy, p -> p.getCallLatencyMillis(99))
+				.tag("dependency", dependency)
+				.tag("kind", "call")
+				.baseUnit("milliseconds")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.hedging.latency.p99", policy, p -> p.getAttemptLatencyMillis(99))
+				.tag("dependency", dependency)
+				.tag("kind", "attempt")
+				.baseUnit("milliseconds")
+				.register(meterRegistry);
+	}
+}
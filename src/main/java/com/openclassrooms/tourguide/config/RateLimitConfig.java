@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide.config;
+
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.openclassrooms.tourguide.ratelimit.RateLimitInterceptor;
+import com.openclassrooms.tourguide.ratelimit.RateLimiter;
+
+/**
+ * Configuration de la limitation de débit de l'API, par client et par endpoint, activée explicitement.
+ * Les règles sont exprimées en "rafale:requêtes par seconde". Derrière un proxy inverse, les clients sans clé
+ * ne sont distingués que si l'adresse d'origine est restituée (server.forward-headers-strategy) : sinon ils
+ * partagent tous la limite de l'adresse du proxy.
+ *
+ * <pre>
+ * tourguide.ratelimit.enabled=true
+ * tourguide.ratelimit.default=20:10
+ * tourguide.ratelimit.endpoints=/getNearbyAttractions=5:2,/getTripDeals=5:1
+ * # clés d'API reconnues dans l'en-tête X-API-Key ; les autres clients sont limités par adresse IP
+ * tourguide.ratelimit.api-keys=partner-1,partner-2
+ * # derrière un proxy de confiance uniquement : adresse du client lue dans X-Forwarded-For
+ * server.forward-headers-strategy=native
+ * </pre>
+ */
+@Configuration
+@ConditionalOnProperty(name = "tourguide.ratelimit.enabled", matchIfMissing = false)
+public class RateLimitConfig implements WebMvcConfigurer {
+
+	@Value("${tourguide.ratelimit.default:20:10}")
+	private String defaultRule;
+
+	@Value("${tourguide.ratelimit.endpoints:}")
+	private String endpointRules;
+
+	@Value("${tourguide.ratelimit.api-keys:}")
+	private Set<String> apiKeys;
+
+	private final MeterRegistry meterRegistry;
+
+	public RateLimitConfig(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		RateLimiter rateLimiter = new RateLimiter(RateLimiter.Rule.parse(defaultRule),
+				RateLimiter.parseEndpointRules(endpointRules));
+		// La limitation de débit passe avant toute autre interception (routage du cluster)
+		registry.addInterceptor(new RateLimitInterceptor(rateLimiter, meterRegistry, apiKeys))
+				.excludePathPatterns("/actuator/**")
+				.order(Ordered.HIGHEST_PRECEDENCE);
+	}
+}
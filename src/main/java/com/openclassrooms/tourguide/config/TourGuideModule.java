@@ -1,12 +1,18 @@
 package com.openclassrooms.tourguide.config;
 
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
 
 @Configuration
 public class TourGuideModule {
@@ -25,5 +31,17 @@ public class TourGuideModule {
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
+	// Configuration d'un bean pour obtenir une instance de TripPricer
+	@Bean
+	public TripPricer getTripPricer() {
+		return new TripPricer();
+	}
+	// Le Tracker est exposé comme bean pour que son démarrage et son arrêt suivent le cycle de vie du contexte
+	@Bean
+	public Tracker tracker(TourGuideService tourGuideService,
+			@Value("${tourguide.tracker.initial-delay-seconds:30}") long initialDelaySeconds) {
+		tourGuideService.tracker.setInitialDelayMillis(TimeUnit.SECONDS.toMillis(initialDelaySeconds));
+		return tourGuideService.tracker;
+	}
 	
 }
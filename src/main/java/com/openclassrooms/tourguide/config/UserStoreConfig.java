@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openclassrooms.tourguide.serialization.UserSnapshotCodec;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.store.TieredUserStore;
+
+/**
+ * Configuration du stockage des utilisateurs à deux niveaux (cache borné en mémoire et disque local).
+ * Sans répertoire configuré, tous les utilisateurs restent en mémoire.
+ *
+ * <pre>
+ * tourguide.users.store-dir=/var/lib/tourguide/users
+ * tourguide.users.hot-capacity=100000
+ * # seuls les utilisateurs consultés pendant cette durée sont suivis (0 : tous)
+ * tourguide.tracker.active-window-minutes=60
+ * </pre>
+ */
+@Configuration
+@ConditionalOnProperty("tourguide.users.store-dir")
+public class UserStoreConfig {
+
+	@Value("${tourguide.users.store-dir}")
+	private String storeDir;
+
+	@Value("${tourguide.users.hot-capacity:100000}")
+	private int hotCapacity;
+
+	// Configuration d'un bean de stockage dont les instantanés sont rattachés au catalogue des attractions
+	@Bean
+	public TieredUserStore tieredUserStore(RewardsService rewardsService) {
+		return new TieredUserStore(new UserSnapshotCodec(rewardsService::getAttractions), Paths.get(storeDir),
+				hotCapacity);
+	}
+}
@@ -1,20 +1,32 @@
 package com.openclassrooms.tourguide.controller;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import com.openclassrooms.tourguide.model.AttractionPopularity;
+import com.openclassrooms.tourguide.model.AttractionPresence;
+import com.openclassrooms.tourguide.model.HeatmapTile;
+import com.openclassrooms.tourguide.model.LocationHistoryPage;
 import com.openclassrooms.tourguide.model.NearbyAttraction;
+import com.openclassrooms.tourguide.model.TripDeals;
+import com.openclassrooms.tourguide.push.UserPushHub;
+import com.openclassrooms.tourguide.model.RewardsSummary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import gpsUtil.location.VisitedLocation;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
-import com.openclassrooms.tourguide.model.UserReward;
 
-import tripPricer.Provider;
 //L'import NearbyAttraction qui est maintenant utilisée pour représenter les attractions touristiques proches.
 @RestController
 public class TourGuideController {
@@ -23,6 +35,12 @@ public class TourGuideController {
 	@Autowired
 	TourGuideService tourGuideService;
 
+	@Autowired
+	UserResponseCache userResponseCache;
+
+	@Autowired
+	UserPushHub userPushHub;
+
 
     // Constructeur par défaut
 
@@ -39,32 +57,138 @@ public class TourGuideController {
     }
 
     // Endpoint pour obtenir la position d'un utilisateur par son nom d'utilisateur
+    // Les endpoints de lecture passent par le cache des réponses : ETag et 304 tant que l'utilisateur n'a pas changé
     @RequestMapping("/getLocation") 
-    public VisitedLocation getLocation(@RequestParam String userName) {
-    	return tourGuideService.getUserLocation(getUser(userName));
+    public ResponseEntity<byte[]> getLocation(@RequestParam String userName, WebRequest request) {
+    	User user = getUser(userName);
+    	return userResponseCache.respond("getLocation", user, request, () -> tourGuideService.getUserLocation(user));
 
         //http://localhost:9080/getLocation?userName=internalUser50
     }
+    // Endpoint pour obtenir le parcours d'un utilisateur sur une période, page par page.
+    // La page suivante est obtenue en transmettant le curseur nextCursor de la réponse
+    @RequestMapping("/getLocationHistory")
+    public LocationHistoryPage getLocationHistory(@RequestParam String userName,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and 1000");
+        }
+        try {
+            return tourGuideService.getLocationHistory(getUser(userName), from == null ? 0 : from.toEpochMilli(),
+                    to == null ? Long.MAX_VALUE : to.toEpochMilli(), cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        // http://localhost:9080/getLocationHistory?userName=internalUser50&from=2024-01-01T00:00:00Z&limit=50
+    }
     // Endpoint pour obtenir les attractions à proximité d'un utilisateur par son nom d'utilisateur
     @RequestMapping("/getNearbyAttractions") 
-    public List<NearbyAttraction> getNearbyAttractions(@RequestParam String userName) {
-    	VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-    	return tourGuideService.getFiveNearestAttractions(visitedLocation, getUser(userName));
+    public ResponseEntity<byte[]> getNearbyAttractions(@RequestParam String userName, WebRequest request) {
+    	User user = getUser(userName);
+    	return userResponseCache.respond("getNearbyAttractions", user, request,
+    			() -> tourGuideService.getNearbyAttractions(user));
 
         // http://localhost:9080/getNearbyAttractions?userName=internalUser50
     }
+    // Endpoint pour obtenir les attractions voisines de la dernière attraction visitée par un utilisateur
+    @RequestMapping("/getAttractionsNearLastVisit")
+    public List<NearbyAttraction> getAttractionsNearLastVisit(@RequestParam String userName,
+                                                              @RequestParam(defaultValue = "5") int count) {
+        if (count < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be at least 1");
+        }
+        return tourGuideService.getAttractionsNearLastVisit(getUser(userName), count);
+
+        // http://localhost:9080/getAttractionsNearLastVisit?userName=internalUser50&count=5
+    }
+    // Endpoint pour obtenir le nombre d'utilisateurs présents autour d'une attraction ; les noms des
+    // utilisateurs ne sont pas exposés. La réponse est lue dans l'index de présence, sans parcourir les utilisateurs
+    @RequestMapping("/getAttractionPresence")
+    public AttractionPresence getAttractionPresence(@RequestParam String attractionName) {
+        AttractionPresence presence = tourGuideService.getAttractionPresence(attractionName);
+        if (presence == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown attraction " + attractionName);
+        }
+        return presence;
+
+        // http://localhost:9080/getAttractionPresence?attractionName=Disneyland
+    }
+    // Endpoint pour obtenir les attractions les plus fréquentées en ce moment
+    @RequestMapping("/getCrowdedAttractions")
+    public List<AttractionPresence> getCrowdedAttractions(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be >= 0");
+        }
+        return tourGuideService.getCrowdedAttractions(limit);
+
+        // http://localhost:9080/getCrowdedAttractions?limit=10
+    }
+    // Endpoint pour obtenir les attractions pour lesquelles le plus d'utilisateurs ont été récompensés ;
+    // withAttraction limite le décompte aux utilisateurs récompensés pour cette attraction
+    @RequestMapping("/getAttractionPopularity")
+    public List<AttractionPopularity> getAttractionPopularity(@RequestParam(defaultValue = "10") int limit,
+                                                              @RequestParam(required = false) String withAttraction) {
+        if (limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be >= 0");
+        }
+        return tourGuideService.getAttractionPopularity(limit, withAttraction);
+
+        // http://localhost:9080/getAttractionPopularity?limit=10&withAttraction=Disneyland
+    }
+    // Endpoint pour obtenir la carte de densité des positions suivies dans une zone, à un niveau de zoom donné.
+    // Les comptages sont pré-agrégés au fil du suivi, sans parcourir l'historique des utilisateurs
+    @RequestMapping("/getHeatmap")
+    public List<HeatmapTile> getHeatmap(@RequestParam(defaultValue = "-90") double minLatitude,
+                                        @RequestParam(defaultValue = "-180") double minLongitude,
+                                        @RequestParam(defaultValue = "90") double maxLatitude,
+                                        @RequestParam(defaultValue = "180") double maxLongitude,
+                                        @RequestParam(defaultValue = "4") int zoom,
+                                        @RequestParam(defaultValue = "60") long windowMinutes) {
+        try {
+            return tourGuideService.getHeatmap().getTiles(minLatitude, minLongitude, maxLatitude, maxLongitude, zoom,
+                    TimeUnit.MINUTES.toMillis(windowMinutes), System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        // http://localhost:9080/getHeatmap?minLatitude=30&minLongitude=-125&maxLatitude=50&maxLongitude=-100&zoom=6
+    }
     // Endpoint pour obtenir les récompenses d'un utilisateur par son nom d'utilisateur
 
     //Pour utiliser la classe NearbyAttraction qui est maintenant utilisée pour représenter les attractions touristiques proches.
     @RequestMapping("/getRewards") 
-    public List<UserReward> getRewards(@RequestParam String userName) {
-    	return tourGuideService.getUserRewards(getUser(userName));
+    public ResponseEntity<byte[]> getRewards(@RequestParam String userName, WebRequest request) {
+    	User user = getUser(userName);
+    	return userResponseCache.respond("getRewards", user, request, () -> tourGuideService.getUserRewards(user));
    //http://localhost:9080/getRewards?userName=internalUser50
     }
-    // Endpoint pour obtenir les offres de voyage pour un utilisateur par son nom d'utilisateur
+    // Endpoint pour obtenir une projection allégée des récompenses, sans les objets imbriqués répétés.
+    // Comme les autres endpoints, il répond en CBOR si la requête contient l'en-tête Accept: application/cbor
+    @RequestMapping("/getRewardsSummary")
+    public RewardsSummary getRewardsSummary(@RequestParam String userName) {
+        return RewardsSummary.of(tourGuideService.getUserRewards(getUser(userName)));
+
+        // http://localhost:9080/getRewardsSummary?userName=internalUser50
+    }
+    // Endpoint d'abonnement aux notifications d'un utilisateur (Server-Sent Events) : événements "rewards" pour les
+    // nouvelles récompenses et "nearbyAttractions" quand les cinq attractions les plus proches changent
+    @RequestMapping(path = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam String userName) {
+        return userPushHub.subscribe(getUser(userName));
+
+        // curl -N http://localhost:9080/subscribe?userName=internalUser50
+    }
+    // Endpoint pour obtenir les offres de voyage pour un utilisateur par son nom d'utilisateur.
+    // Les dernières offres calculées sont retournées immédiatement avec la date de leur calcul ;
+    // forceRefresh=true les recalcule auprès de TripPricer avant de répondre
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-    	return tourGuideService.getTripDeals(getUser(userName));
+    public TripDeals getTripDeals(@RequestParam String userName,
+                                  @RequestParam(defaultValue = "false") boolean forceRefresh) {
+    	return tourGuideService.getCachedTripDeals(getUser(userName), forceRefresh);
     }
     // Méthode utilitaire pour obtenir un utilisateur par son nom d'utilisateur
     private User getUser(String userName) {
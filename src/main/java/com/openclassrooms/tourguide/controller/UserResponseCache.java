@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.controller;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import com.openclassrooms.tourguide.model.User;
+
+/**
+ * Cache des réponses sérialisées des endpoints de lecture, invalidé par la version de l'utilisateur.
+ * L'ETag d'une réponse est dérivé de cette version et du format négocié (JSON ou CBOR) : un client qui présente
+ * l'ETag courant (en-tête If-None-Match) reçoit une réponse 304 sans corps, et tant que la version n'a pas changé
+ * la réponse déjà sérialisée est renvoyée sans recalcul. Les réponses portent l'en-tête Vary: Accept, afin qu'un
+ * cache partagé ne serve pas un format à la place de l'autre.
+ */
+@Component
+public class UserResponseCache {
+	public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+	private static final class CachedResponse {
+		private final long version;
+		private final byte[] body;
+
+		private CachedResponse(long version, byte[] body) {
+			this.version = version;
+			this.body = body;
+		}
+	}
+
+	private final ObjectMapper jsonMapper;
+	private final ObjectMapper cborMapper;
+	private final int maxEntries;
+	private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+	/**
+	 * @param objectMapperBuilder Le constructeur de mappers configuré par Spring Boot, afin que les réponses
+	 *                            mises en cache soient sérialisées comme celles des autres endpoints.
+	 */
+	@Autowired
+	public UserResponseCache(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+		this(objectMapperBuilder, DEFAULT_MAX_ENTRIES);
+	}
+
+	public UserResponseCache(Jackson2ObjectMapperBuilder objectMapperBuilder, int maxEntries) {
+		this.jsonMapper = objectMapperBuilder.build();
+		this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Répond à une requête de lecture portant sur un utilisateur.
+	 *
+	 * @param endpoint Le nom de l'endpoint, qui fait partie de la clé du cache et de l'ETag.
+	 * @param user     L'utilisateur concerné.
+	 * @param request  La requête, utilisée pour la négociation du format et la vérification de l'ETag.
+	 * @param body     Le calcul de la réponse, appelé seulement si la version de l'utilisateur a changé.
+	 * @return La réponse sérialisée, ou null si le client dispose déjà de la version courante (304).
+	 */
+	public ResponseEntity<byte[]> respond(String endpoint, User user, WebRequest request, Supplier<Object> body) {
+		// La version est lue avant le calcul : une modification concurrente invalidera la réponse
+		long version = user.getVersion();
+		MediaType mediaType = acceptsCbor(request) ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+		String eTag = "\"" + endpoint + "-" + user.getUserId() + "-" + version + "-" + mediaType.getSubtype() + "\"";
+		// ajouté à la réponse avant la vérification de l'ETag, pour figurer aussi dans les réponses 304
+		HttpServletResponse response = request instanceof NativeWebRequest nativeRequest
+				? nativeRequest.getNativeResponse(HttpServletResponse.class) : null;
+		if (response != null && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+			response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		}
+		if (request.checkNotModified(eTag)) {
+			return null;
+		}
+		String key = endpoint + "|" + user.getUserName() + "|" + mediaType;
+		CachedResponse cached = responses.get(key);
+		if (cached == null || cached.version != version) {
+			cached = new CachedResponse(version, serialize(body.get(), mediaType));
+			evictIfFull();
+			responses.put(key, cached);
+		}
+		return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).contentType(mediaType).body(cached.body);
+	}
+
+	private boolean acceptsCbor(WebRequest request) {
+		String accept = request.getHeader("Accept");
+		if (accept == null) {
+			return false;
+		}
+		// Le premier des deux formats cités dans l'en-tête Accept l'emporte
+		for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+			if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+				return true;
+			}
+			if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_JSON)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private byte[] serialize(Object body, MediaType mediaType) {
+		try {
+			return (MediaType.APPLICATION_CBOR.equals(mediaType) ? cborMapper : jsonMapper).writeValueAsBytes(body);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Unable to serialize response", e);
+		}
+	}
+
+	// Cache plein : une entrée quelconque est retirée, elle sera recalculée à la demande suivante
+	private void evictIfFull() {
+		Iterator<String> keys = responses.keySet().iterator();
+		while (responses.size() >= maxEntries && keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	public int size() {
+		return responses.size();
+	}
+}
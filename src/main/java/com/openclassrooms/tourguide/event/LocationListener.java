@@ -0,0 +1,10 @@
+package com.openclassrooms.tourguide.event;
+
+/**
+ * Écouteur notifié à chaque localisation enregistrée par le suivi, par le thread de suivi : il ne doit pas bloquer.
+ */
+@FunctionalInterface
+public interface LocationListener {
+
+	void locationTracked(LocationTracked event);
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide.event;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.model.User;
+
+/**
+ * Événement publié à chaque fois qu'une nouvelle localisation a été enregistrée pour un utilisateur.
+ * Il est consommé par les workers de récompenses du {@link RewardsEventBus}, ce qui découple le suivi
+ * de la localisation du calcul des récompenses.
+ */
+public class LocationTracked {
+
+	private final User user;
+	private final VisitedLocation visitedLocation;
+	// Horodatage (System.nanoTime) de la publication, utilisé pour mesurer le retard des workers
+	private final long publishedAtNanos;
+	// Appelé une fois les récompenses évaluées, par exemple pour libérer l'utilisateur épinglé
+	private final Runnable onProcessed;
+
+	public LocationTracked(User user, VisitedLocation visitedLocation) {
+		this(user, visitedLocation, () -> {
+		});
+	}
+
+	public LocationTracked(User user, VisitedLocation visitedLocation, Runnable onProcessed) {
+		this.user = user;
+		this.visitedLocation = visitedLocation;
+		this.publishedAtNanos = System.nanoTime();
+		this.onProcessed = onProcessed;
+	}
+
+	void processed() {
+		onProcessed.run();
+	}
+
+	public User getUser() {
+		return user;
+	}
+
+	public VisitedLocation getVisitedLocation() {
+		return visitedLocation;
+	}
+
+	public long getPublishedAtNanos() {
+		return publishedAtNanos;
+	}
+}
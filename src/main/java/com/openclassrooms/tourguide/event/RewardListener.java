@@ -0,0 +1,21 @@
+package com.openclassrooms.tourguide.event;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+
+/**
+ * Écouteur notifié à chaque récompense attribuée à un utilisateur, par le thread qui l'a attribuée :
+ * il ne doit pas bloquer.
+ */
+@FunctionalInterface
+public interface RewardListener {
+
+	void rewardAdded(User user, UserReward userReward);
+
+	/**
+	 * Notifié une seule fois à la fin d'une évaluation ou d'un rattrapage ayant attribué au moins une récompense,
+	 * pour les écouteurs qui préfèrent traiter les récompenses par lot.
+	 */
+	default void rewardsUpdated(User user) {
+	}
+}
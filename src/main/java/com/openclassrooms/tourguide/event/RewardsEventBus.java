@@ -0,0 +1,265 @@
+package com.openclassrooms.tourguide.event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Bus d'événements en mémoire entre le suivi de localisation et le calcul des récompenses.
+ * Les événements {@link LocationTracked} sont déposés dans une file bornée et consommés par un groupe
+ * de workers dédiés, ce qui permet de dimensionner séparément le débit du suivi et celui des récompenses.
+ * Lorsque la file est pleine, l'événement est traité directement par le thread appelant (contre-pression).
+ * Les événements d'un même utilisateur ne sont jamais traités simultanément : un événement reçu pendant le
+ * traitement d'un autre du même utilisateur est confié, dans l'ordre, au thread qui le traite.
+ * À l'arrêt, les événements encore en file sont abandonnés mais leur fin de traitement est signalée (libération
+ * de l'épinglage de l'utilisateur) : leurs localisations, déjà enregistrées, seront prises en compte lors de la
+ * prochaine évaluation de l'utilisateur.
+ */
+public class RewardsEventBus {
+	public static final int DEFAULT_CAPACITY = 100_000;
+	public static final int DEFAULT_WORKERS = 50;
+
+	private final Logger logger = LoggerFactory.getLogger(RewardsEventBus.class);
+	private final RewardsService rewardsService;
+	private final BlockingQueue<LocationTracked> queue;
+	private final List<Thread> workers = new ArrayList<>();
+	// Utilisateurs en cours de traitement, et leurs événements reçus entre-temps
+	private final Map<String, ArrayDeque<LocationTracked>> inProgress = new ConcurrentHashMap<>();
+
+	// Compteurs permettant de suivre le retard entre le suivi et les récompenses
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong processedByCaller = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong discarded = new AtomicLong();
+	private final AtomicLong maxLagMillis = new AtomicLong();
+	private volatile long lastLagMillis;
+	private volatile boolean running = true;
+	// Nombre de workers souhaité : un worker dont le rang l'excède s'arrête
+	private volatile int targetWorkers;
+
+	public RewardsEventBus(RewardsService rewardsService) {
+		this(rewardsService, DEFAULT_CAPACITY, DEFAULT_WORKERS);
+	}
+
+	/**
+	 * @param rewardsService Le service utilisé par les workers pour calculer les récompenses.
+	 * @param capacity       La taille maximale de la file d'événements en attente.
+	 * @param workerCount    Le nombre de workers consommant les événements.
+	 */
+	public RewardsEventBus(RewardsService rewardsService, int capacity, int workerCount) {
+		this.rewardsService = rewardsService;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		setWorkerCount(workerCount);
+	}
+
+	/**
+	 * Modifie à chaud le nombre de workers. Les workers en trop s'arrêtent après leur événement en cours.
+	 *
+	 * @param workerCount Le nombre de workers souhaité.
+	 */
+	public void setWorkerCount(int workerCount) {
+		synchronized (workers) {
+			targetWorkers = workerCount;
+			for (int i = 0; i < workerCount; i++) {
+				if (i >= workers.size() || workers.get(i) == null) {
+					final int rank = i;
+					Thread worker = new Thread(() -> consume(rank), "rewards-worker-" + i);
+					worker.setDaemon(true);
+					if (i < workers.size()) {
+						workers.set(i, worker);
+					} else {
+						workers.add(worker);
+					}
+					worker.start();
+				}
+			}
+		}
+	}
+
+	public int getWorkerCount() {
+		return targetWorkers;
+	}
+
+	/**
+	 * Publie un événement de localisation. Si la file est pleine, l'événement est traité immédiatement
+	 * par le thread appelant afin de ne jamais perdre de calcul de récompenses.
+	 *
+	 * @param event L'événement à publier.
+	 */
+	public void publish(LocationTracked event) {
+		published.incrementAndGet();
+		if (!running || !queue.offer(event)) {
+			processedByCaller.incrementAndGet();
+			process(event);
+		} else if (!running) {
+			// déposé pendant l'arrêt, après le vidage de la file
+			discardQueued();
+		}
+	}
+
+	private void consume(int rank) {
+		while (running) {
+			if (rank >= targetWorkers) {
+				synchronized (workers) {
+					// Vérification sous verrou : le nombre de workers a pu être relevé entre-temps
+					if (rank >= targetWorkers) {
+						workers.set(rank, null);
+						return;
+					}
+				}
+			}
+			try {
+				LocationTracked event = queue.poll(500, TimeUnit.MILLISECONDS);
+				if (event != null) {
+					process(event);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+	}
+
+	private void process(LocationTracked event) {
+		String userName = event.getUser().getUserName();
+		boolean[] owner = new boolean[1];
+		inProgress.compute(userName, (name, deferred) -> {
+			if (deferred == null) {
+				owner[0] = true;
+				return new ArrayDeque<>();
+			}
+			deferred.add(event);
+			return deferred;
+		});
+		if (!owner[0]) {
+			// traité par le thread qui évalue déjà cet utilisateur
+			return;
+		}
+		LocationTracked next = event;
+		while (next != null) {
+			evaluate(next);
+			LocationTracked[] deferred = new LocationTracked[1];
+			inProgress.compute(userName, (name, pending) -> {
+				deferred[0] = pending.poll();
+				return deferred[0] == null ? null : pending;
+			});
+			next = deferred[0];
+		}
+	}
+
+	private void evaluate(LocationTracked event) {
+		long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.getPublishedAtNanos());
+		lastLagMillis = lag;
+		maxLagMillis.accumulateAndGet(lag, Math::max);
+		try {
+			rewardsService.calculateRewardsIfMoved(event.getUser(), event.getVisitedLocation());
+		} catch (RuntimeException e) {
+			failed.incrementAndGet();
+			logger.warn("Reward calculation failed for user " + event.getUser().getUserName(), e);
+		} finally {
+			complete(event);
+		}
+	}
+
+	// Signale la fin du traitement d'un événement, évalué ou abandonné
+	private void complete(LocationTracked event) {
+		try {
+			event.processed();
+		} catch (RuntimeException e) {
+			logger.warn("Post-processing failed for user " + event.getUser().getUserName(), e);
+		}
+		processed.incrementAndGet();
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	private void discardQueued() {
+		for (LocationTracked event = queue.poll(); event != null; event = queue.poll()) {
+			discarded.incrementAndGet();
+			complete(event);
+		}
+	}
+
+	/**
+	 * Attend que tous les événements publiés aient été traités.
+	 *
+	 * @param timeout La durée maximale d'attente.
+	 * @param unit    L'unité de la durée d'attente.
+	 * @return true si la file a été vidée avant l'expiration du délai.
+	 */
+	public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this) {
+			while (getBacklog() > 0) {
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remaining <= 0) {
+					return false;
+				}
+				wait(remaining);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Arrête les workers et abandonne les événements en file. Les événements en cours de traitement, et ceux
+	 * reçus entre-temps pour les mêmes utilisateurs, sont terminés par leur thread. Les événements publiés
+	 * ensuite sont traités par le thread appelant.
+	 */
+	public void shutdown() {
+		running = false;
+		synchronized (workers) {
+			workers.stream().filter(worker -> worker != null).forEach(Thread::interrupt);
+		}
+		discardQueued();
+	}
+
+	// Nombre d'événements publiés mais pas encore traités
+	public long getBacklog() {
+		return published.get() - processed.get();
+	}
+
+	public long getPublishedCount() {
+		return published.get();
+	}
+
+	public long getProcessedCount() {
+		return processed.get();
+	}
+
+	public long getProcessedByCallerCount() {
+		return processedByCaller.get();
+	}
+
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return Le nombre d'événements abandonnés à l'arrêt du bus.
+	 */
+	public long getDiscardedCount() {
+		return discarded.get();
+	}
+
+	public long getLastLagMillis() {
+		return lastLagMillis;
+	}
+
+	public long getMaxLagMillis() {
+		return maxLagMillis.get();
+	}
+}
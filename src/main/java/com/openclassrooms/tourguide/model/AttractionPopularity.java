@@ -0,0 +1,10 @@
+package com.openclassrooms.tourguide.model;
+
+/**
+ * Popularité d'une attraction.
+ *
+ * @param rewardedUsers Le nombre d'utilisateurs récompensés pour l'attraction (et pour l'attraction de référence,
+ *                      si la popularité est calculée parmi ses visiteurs).
+ */
+public record AttractionPopularity(String attractionName, int rewardedUsers) {
+}
@@ -0,0 +1,9 @@
+package com.openclassrooms.tourguide.model;
+
+/**
+ * Présence des utilisateurs autour d'une attraction.
+ *
+ * @param userCount Le nombre d'utilisateurs dont la dernière position est dans le rayon de l'attraction.
+ */
+public record AttractionPresence(String attractionName, double latitude, double longitude, int userCount) {
+}
@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Registre global des attractions, partagées comme poids-mouches : chaque attraction n'est conservée qu'en un seul
+ * exemplaire et reçoit un petit identifiant entier dense, attribué à sa première apparition. Les récompenses et
+ * les attractions proches ne mémorisent que cet identifiant et retrouvent les détails de l'attraction au moment
+ * de la sérialisation.
+ * <p>
+ * Les attractions sont identifiées par leur nom, comme pour l'attribution des récompenses : gpsUtil attribue
+ * de nouveaux UUID à chaque chargement du catalogue, alors que l'identifiant dense ne doit pas changer.
+ * À chaque chargement du catalogue, l'exemplaire conservé est remplacé par celui du catalogue
+ * ({@link #register(Attraction)}) : une attraction déplacée ou renommée de ville n'est pas figée à sa première
+ * version.
+ */
+public final class AttractionRegistry {
+
+	private static final Map<String, Integer> refsByName = new ConcurrentHashMap<>();
+	// Lecture sans verrou : le tableau est republié après chaque ajout ou remplacement d'une attraction
+	private static volatile Attraction[] attractions = new Attraction[32];
+	private static int size;
+
+	private AttractionRegistry() {
+	}
+
+	/**
+	 * Retourne l'identifiant de l'attraction, en l'enregistrant si elle est inconnue.
+	 *
+	 * @param attraction L'attraction.
+	 * @return L'identifiant dense de l'attraction.
+	 */
+	public static int intern(Attraction attraction) {
+		Integer ref = refsByName.get(attraction.attractionName);
+		if (ref != null) {
+			return ref;
+		}
+		synchronized (AttractionRegistry.class) {
+			ref = refsByName.get(attraction.attractionName);
+			if (ref == null) {
+				Attraction[] current = attractions;
+				if (size == current.length) {
+					current = Arrays.copyOf(current, size * 2);
+				}
+				current[size] = attraction;
+				attractions = current;
+				ref = size++;
+				refsByName.put(attraction.attractionName, ref);
+			}
+			return ref;
+		}
+	}
+
+	/**
+	 * Enregistre une attraction issue du catalogue courant : si elle est déjà connue, son exemplaire est remplacé
+	 * par celui-ci, sans changer son identifiant.
+	 *
+	 * @param attraction L'attraction du catalogue.
+	 * @return L'identifiant dense de l'attraction.
+	 */
+	public static int register(Attraction attraction) {
+		int ref = intern(attraction);
+		if (attractions[ref] != attraction) {
+			synchronized (AttractionRegistry.class) {
+				Attraction[] current = attractions;
+				current[ref] = attraction;
+				// écriture volatile : le remplacement est visible des lectures sans verrou
+				attractions = current;
+			}
+		}
+		return ref;
+	}
+
+	/**
+	 * @param attractionName Le nom d'une attraction.
+	 * @return L'identifiant dense de l'attraction, ou -1 si elle n'est pas enregistrée.
+	 */
+	public static int refOf(String attractionName) {
+		Integer ref = refsByName.get(attractionName);
+		return ref == null ? -1 : ref;
+	}
+
+	/**
+	 * @param ref L'identifiant dense d'une attraction enregistrée.
+	 * @return L'exemplaire unique de l'attraction.
+	 */
+	public static Attraction get(int ref) {
+		return attractions[ref];
+	}
+
+	/**
+	 * @return L'exemplaire unique d'une attraction, en l'enregistrant si elle est inconnue.
+	 */
+	public static Attraction canonical(Attraction attraction) {
+		return get(intern(attraction));
+	}
+
+	public static int size() {
+		return refsByName.size();
+	}
+}
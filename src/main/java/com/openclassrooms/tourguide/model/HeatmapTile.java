@@ -0,0 +1,13 @@
+package com.openclassrooms.tourguide.model;
+
+/**
+ * Case de la carte de densité des positions des utilisateurs.
+ *
+ * @param zoom  Le niveau de zoom : la carte est découpée en 2^zoom cases en latitude et en longitude.
+ * @param x     L'indice de la case en longitude, depuis -180°.
+ * @param y     L'indice de la case en latitude, depuis -90°.
+ * @param count Le nombre de positions enregistrées dans la case pendant la fenêtre demandée.
+ */
+public record HeatmapTile(int zoom, int x, int y, double minLatitude, double minLongitude, double maxLatitude,
+		double maxLongitude, long count) {
+}
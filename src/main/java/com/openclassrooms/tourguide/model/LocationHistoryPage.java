@@ -0,0 +1,14 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Page de l'historique des localisations d'un utilisateur sur une période.
+ *
+ * @param locations  Les localisations de la page, triées par date de visite.
+ * @param nextCursor Le curseur à transmettre pour obtenir la page suivante, ou null s'il s'agit de la dernière.
+ */
+public record LocationHistoryPage(String userName, List<VisitedLocation> locations, String nextCursor) {
+}
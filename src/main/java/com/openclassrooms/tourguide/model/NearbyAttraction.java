@@ -1,98 +1,72 @@
 package com.openclassrooms.tourguide.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 /**
  * Classe représentant une attraction touristique proche.
  * Cette classe contient les informations sur une attraction touristique à proximité, y compris son nom,
  * sa latitude et sa longitude, ainsi que la latitude et la longitude de l'utilisateur, la distance entre
  * l'utilisateur et l'attraction, et les points de récompense pour avoir visité l'attraction.
+ * L'attraction n'est mémorisée que par son identifiant dans le {@link AttractionRegistry} : son nom et
+ * sa position sont lus au moment de la sérialisation, sans copie.
  */
-
+@JsonPropertyOrder({ "name", "attractionLatitude", "attractionLongitude", "userLatitude", "userLongitude",
+        "distance", "rewards" })
 public class NearbyAttraction {
-    // Nom de l'attraction touristique,
-    private String name;
-    // Latitude/Longitude de l'attraction touristique
-    private double attractionLatitude;
-    private double attractionLongitude;
+    // Identifiant de l'attraction touristique dans le registre
+    private final int attractionRef;
 
     // Latitude/Longitude de l'utilisateur
-    private double userLatitude;
-
+    private final double userLatitude;
+    private final double userLongitude;
     // Distance en miles entre la position de l'utilisateur et chaque attraction
-    private double userLongitude;
-    // Distance en miles entre la position de l'utilisateur et chaque attraction
-    private double distance;
+    private final double distance;
     // Points de récompense pour la visite de l'attraction
-    private int rewards;
+    private final int rewards;
     //Constructeur de la classe NearbyAttraction.
-    public NearbyAttraction(String name,
-                            double attractionLatitude,
-                            double attractionLongitude,
+    public NearbyAttraction(int attractionRef,
                             double userLatitude,
                             double userLongitude,
                             double distance,
                             int rewards) {
-        this.name = name;
-        this.attractionLatitude = attractionLatitude;
-        this.attractionLongitude = attractionLongitude;
+        this.attractionRef = attractionRef;
         this.userLatitude = userLatitude;
         this.userLongitude = userLongitude;
         this.distance = distance;
         this.rewards = rewards;
     }
 
-    public String getName() {
-        return name;
+    @JsonIgnore
+    public int getAttractionRef() {
+        return attractionRef;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public String getName() {
+        return AttractionRegistry.get(attractionRef).attractionName;
     }
 
     public double getAttractionLatitude() {
-        return attractionLatitude;
-    }
-
-    public void setAttractionLatitude(double attractionLatitude) {
-        this.attractionLatitude = attractionLatitude;
+        return AttractionRegistry.get(attractionRef).latitude;
     }
 
     public double getAttractionLongitude() {
-        return attractionLongitude;
-    }
-
-    public void setAttractionLongitude(double attractionLongitude) {
-        this.attractionLongitude = attractionLongitude;
+        return AttractionRegistry.get(attractionRef).longitude;
     }
 
     public double getUserLatitude() {
         return userLatitude;
     }
 
-    public void setUserLatitude(double userLatitude) {
-        this.userLatitude = userLatitude;
-    }
-
     public double getUserLongitude() {
         return userLongitude;
     }
 
-    public void setUserLongitude(double userLongitude) {
-        this.userLongitude = userLongitude;
-    }
-
     public double getDistance() {
         return distance;
     }
 
-    public void setDistance(double distance) {
-        this.distance = distance;
-    }
-
     public int getRewards() {
         return rewards;
     }
-
-    public void setRewards(int rewards) {
-        this.rewards = rewards;
-    }
 }
@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.model;
+
+import gpsUtil.location.Location;
+
+/**
+ * Résultat de la dernière évaluation complète des récompenses d'un utilisateur, utilisé pour ne pas réévaluer
+ * un utilisateur qui n'a pas pu se rapprocher suffisamment d'une attraction non récompensée.
+ *
+ * @param location                    La position évaluée.
+ * @param distanceToNearestUnrewarded La distance en miles entre cette position et l'attraction non récompensée
+ *                                    la plus proche.
+ * @param proximityBuffer             Le rayon de proximité en vigueur lors de l'évaluation.
+ * @param catalogVersion              La version du catalogue des attractions utilisé lors de l'évaluation.
+ */
+public record RewardEvaluation(Location location, double distanceToNearestUnrewarded, int proximityBuffer,
+		long catalogVersion) {
+}
@@ -0,0 +1,59 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Projection allégée des récompenses d'un utilisateur.
+ * Chaque attraction n'est décrite qu'une seule fois dans un dictionnaire ; les récompenses y font référence
+ * par leur rang et ne conservent de la localisation visitée que ses coordonnées et sa date (en millisecondes).
+ * Cette projection est utilisée par l'API et par les instantanés d'utilisateurs enregistrés sur disque.
+ *
+ * @param attractions Le dictionnaire des attractions récompensées.
+ * @param rewards     Les récompenses, dans l'ordre de leur attribution.
+ */
+public record RewardsSummary(List<AttractionEntry> attractions, List<RewardEntry> rewards) {
+
+	/**
+	 * Entrée du dictionnaire des attractions.
+	 */
+	public record AttractionEntry(UUID attractionId, String name, String city, String state,
+			double latitude, double longitude) {
+	}
+
+	/**
+	 * Récompense attribuée, dont l'attraction est désignée par son rang dans le dictionnaire.
+	 */
+	public record RewardEntry(int attraction, double latitude, double longitude, long timeVisited,
+			int rewardPoints) {
+	}
+
+	/**
+	 * Construit la projection allégée d'une liste de récompenses.
+	 *
+	 * @param userRewards Les récompenses de l'utilisateur.
+	 * @return La projection allégée.
+	 */
+	public static RewardsSummary of(List<UserReward> userRewards) {
+		Map<Integer, Integer> dictionary = new LinkedHashMap<>();
+		List<AttractionEntry> attractions = new ArrayList<>();
+		List<RewardEntry> rewards = new ArrayList<>(userRewards.size());
+		for (UserReward userReward : userRewards) {
+			Attraction attraction = userReward.getAttraction();
+			int rank = dictionary.computeIfAbsent(userReward.getAttractionRef(), ref -> {
+				attractions.add(new AttractionEntry(attraction.attractionId, attraction.attractionName, attraction.city,
+						attraction.state, attraction.latitude, attraction.longitude));
+				return attractions.size() - 1;
+			});
+			rewards.add(new RewardEntry(rank, userReward.visitedLocation.location.latitude,
+					userReward.visitedLocation.location.longitude,
+					userReward.visitedLocation.timeVisited.getTime(), userReward.getRewardPoints()));
+		}
+		return new RewardsSummary(attractions, rewards);
+	}
+}
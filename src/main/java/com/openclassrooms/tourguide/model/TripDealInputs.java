@@ -0,0 +1,16 @@
+package com.openclassrooms.tourguide.model;
+
+/**
+ * Données transmises à TripPricer pour calculer les offres de voyage d'un utilisateur : un changement ailleurs
+ * ne justifie pas un nouveau calcul.
+ *
+ * @param rewardPoints Le total des points de récompense de l'utilisateur.
+ */
+public record TripDealInputs(int rewardPoints, int numberOfAdults, int numberOfChildren, int tripDuration) {
+
+	public static TripDealInputs of(User user) {
+		UserPreferences preferences = user.getUserPreferences();
+		return new TripDealInputs(user.copyUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum(),
+				preferences.getNumberOfAdults(), preferences.getNumberOfChildren(), preferences.getTripDuration());
+	}
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.Date;
+import java.util.List;
+
+import tripPricer.Provider;
+
+/**
+ * Dernières offres de voyage calculées pour un utilisateur.
+ *
+ * @param computedAt     La date du calcul des offres.
+ * @param refreshPending true si un nouveau calcul est programmé, les données de tarification ayant changé.
+ */
+public record TripDeals(List<Provider> providers, Date computedAt, boolean refreshPending) {
+}
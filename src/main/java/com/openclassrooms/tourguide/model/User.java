@@ -1,9 +1,12 @@
 package com.openclassrooms.tourguide.model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -19,10 +22,21 @@ public class User {
 	private String phoneNumber;
 	private String emailAddress;
 	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
+	// Historique trié par date de visite ; toutes les opérations sur la liste sont synchronisées sur elle
+	private final List<VisitedLocation> visitedLocations = new ArrayList<>();
 	private List<UserReward> userRewards = new ArrayList<>();
+	// Attractions récompensées, par identifiant du registre, protégées par le verrou des récompenses
+	private final BitSet rewardedAttractions = new BitSet();
 	private UserPreferences userPreferences = new UserPreferences();
 	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile Date tripDealsComputedAt;
+	private volatile TripDealInputs tripDealInputs;
+	// Version incrémentée à chaque modification de l'utilisateur (ETag des réponses de l'API, enregistrement sur disque)
+	private final AtomicLong version = new AtomicLong();
+	// Dernière évaluation complète des récompenses, non conservée dans les instantanés
+	private volatile RewardEvaluation lastRewardEvaluation;
+	// Dernier instantané publié pour les lectures des endpoints
+	private final AtomicReference<UserView> view = new AtomicReference<>();
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
 		this.userId = userId;
 		this.userName = userName;
@@ -62,21 +76,118 @@ public class User {
 		return latestLocationTimestamp;
 	}
 	
+	/**
+	 * Ajoute une localisation à l'historique en conservant l'ordre des dates de visite : les localisations
+	 * suivies, plus récentes que tout l'historique, sont ajoutées en fin de liste sans recherche.
+	 */
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		long time = visitedLocation.timeVisited.getTime();
+		synchronized (visitedLocations) {
+			int size = visitedLocations.size();
+			if (size == 0 || visitedLocations.get(size - 1).timeVisited.getTime() <= time) {
+				visitedLocations.add(visitedLocation);
+			} else {
+				// après les localisations de même date, pour conserver l'ordre d'arrivée
+				visitedLocations.add(indexOfFirstVisitAfter(time + 1), visitedLocation);
+			}
+		}
+		version.incrementAndGet();
 	}
 	
+	/**
+	 * @return Une copie de l'historique, triée par date de visite.
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		synchronized (visitedLocations) {
+			return List.copyOf(visitedLocations);
+		}
+	}
+
+	public boolean hasVisitedLocations() {
+		synchronized (visitedLocations) {
+			return !visitedLocations.isEmpty();
+		}
+	}
+
+	/**
+	 * Retourne les localisations visitées dans une période, par recherche dichotomique dans l'historique trié.
+	 * Les premières localisations datées de {@code fromMillis} peuvent être ignorées, pour reprendre une lecture
+	 * paginée après la dernière localisation déjà retournée.
+	 *
+	 * @param fromMillis La date de début de la période, incluse.
+	 * @param skip       Le nombre de localisations datées de {@code fromMillis} à ignorer.
+	 * @param toMillis   La date de fin de la période, exclue.
+	 * @param limit      Le nombre maximal de localisations retournées.
+	 * @return Les localisations de la période, triées par date de visite.
+	 */
+	public List<VisitedLocation> getVisitedLocationsBetween(long fromMillis, int skip, long toMillis, int limit) {
+		synchronized (visitedLocations) {
+			int from = indexOfFirstVisitAfter(fromMillis);
+			int sameTime = indexOfFirstVisitAfter(fromMillis + 1);
+			from = (int) Math.min((long) from + Math.max(0, skip), sameTime);
+			int to = Math.max(from, indexOfFirstVisitAfter(toMillis));
+			return List.copyOf(visitedLocations.subList(from, (int) Math.min(to, (long) from + limit)));
+		}
+	}
+
+	// Indice de la première localisation visitée à partir de la date donnée (appelée sous verrou)
+	private int indexOfFirstVisitAfter(long timeMillis) {
+		int low = 0;
+		int high = visitedLocations.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (visitedLocations.get(middle).timeVisited.getTime() < timeMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
 	}
 	
 	public void clearVisitedLocations() {
-		visitedLocations.clear();
+		synchronized (visitedLocations) {
+			visitedLocations.clear();
+		}
+		version.incrementAndGet();
 	}
 	
-	public void addUserReward(UserReward userReward) {
-		if(userRewards.stream().noneMatch(r -> r.getAttractionName().equals(userReward.getAttractionName()))) {
-			userRewards.add(userReward);
+	/**
+	 * @return true si la récompense a été ajoutée, false si l'attraction était déjà récompensée.
+	 */
+	public boolean addUserReward(UserReward userReward) {
+		synchronized (userRewards) {
+			if (!rewardedAttractions.get(userReward.getAttractionRef())) {
+				rewardedAttractions.set(userReward.getAttractionRef());
+				userRewards.add(userReward);
+				version.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @return Une copie des identifiants (registre des attractions) des attractions récompensées.
+	 */
+	public BitSet copyRewardedAttractions() {
+		synchronized (userRewards) {
+			return (BitSet) rewardedAttractions.clone();
+		}
+	}
+
+	public boolean isRewardedFor(int attractionRef) {
+		synchronized (userRewards) {
+			return rewardedAttractions.get(attractionRef);
+		}
+	}
+
+	/**
+	 * @return Une copie non modifiable des récompenses, cohérente même pendant l'ajout d'une récompense.
+	 */
+	public List<UserReward> copyUserRewards() {
+		synchronized (userRewards) {
+			return List.copyOf(userRewards);
 		}
 	}
 	
@@ -84,24 +195,109 @@ public class User {
 		return userRewards;
 	}
 	
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Rétablit la version d'un utilisateur rechargé depuis un instantané, afin que les ETag déjà
+	 * transmis aux clients restent valides.
+	 */
+	public void restoreVersion(long version) {
+		this.version.set(version);
+	}
+
 	public UserPreferences getUserPreferences() {
 		return userPreferences;
 	}
 	
 	public void setUserPreferences(UserPreferences userPreferences) {
 		this.userPreferences = userPreferences;
+		version.incrementAndGet();
+	}
+
+	/**
+	 * @param count Le nombre de localisations.
+	 * @return Les dernières localisations visitées, au plus {@code count}, triées par date de visite.
+	 */
+	public List<VisitedLocation> getLastVisitedLocations(int count) {
+		synchronized (visitedLocations) {
+			int size = visitedLocations.size();
+			return List.copyOf(visitedLocations.subList(Math.max(0, size - count), size));
+		}
 	}
 
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		synchronized (visitedLocations) {
+			return visitedLocations.get(visitedLocations.size() - 1);
+		}
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
+		setTripDeals(tripDeals, TripDealInputs.of(this));
+	}
+
+	/**
+	 * @param tripDeals Les offres calculées maintenant.
+	 * @param inputs    Les données de tarification avec lesquelles elles ont été calculées.
+	 */
+	public void setTripDeals(List<Provider> tripDeals, TripDealInputs inputs) {
+		this.tripDeals = tripDeals;
+		this.tripDealInputs = inputs;
+		this.tripDealsComputedAt = new Date();
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Restaure les offres d'un instantané telles qu'elles ont été calculées, sans modifier la version.
+	 */
+	public void restoreTripDeals(List<Provider> tripDeals, Date computedAt, TripDealInputs inputs) {
 		this.tripDeals = tripDeals;
+		this.tripDealInputs = inputs;
+		this.tripDealsComputedAt = computedAt;
 	}
 	
 	public List<Provider> getTripDeals() {
 		return tripDeals;
 	}
 
+	/**
+	 * @return La date du dernier calcul des offres de voyage, ou null si elles n'ont jamais été calculées.
+	 */
+	public Date getTripDealsComputedAt() {
+		return tripDealsComputedAt;
+	}
+
+	/**
+	 * @return Les données de tarification du dernier calcul des offres, ou null si elles sont inconnues.
+	 */
+	public TripDealInputs getTripDealInputs() {
+		return tripDealInputs;
+	}
+
+	public UserView getView() {
+		return view.get();
+	}
+
+	/**
+	 * Publie un instantané de l'utilisateur, sauf si un instantané plus récent a déjà été publié.
+	 */
+	public void publishView(UserView userView) {
+		UserView current;
+		do {
+			current = view.get();
+			if (current != null && current.version() > userView.version()) {
+				return;
+			}
+		} while (!view.compareAndSet(current, userView));
+	}
+
+	public RewardEvaluation getLastRewardEvaluation() {
+		return lastRewardEvaluation;
+	}
+
+	public void setLastRewardEvaluation(RewardEvaluation lastRewardEvaluation) {
+		this.lastRewardEvaluation = lastRewardEvaluation;
+	}
+
 }
@@ -1,26 +1,28 @@
 package com.openclassrooms.tourguide.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 /**
  * Classe représentant la récompense attribuée à un utilisateur pour avoir visité une attraction.
  * Une récompense est composée d'une localisation visitée (VisitedLocation), de l'attraction visitée (Attraction)
  * et du nombre de points de récompense attribués à cette visite.
+ * L'attraction n'est mémorisée que par son identifiant dans le {@link AttractionRegistry}.
  */
 public class UserReward {
 
 	public final VisitedLocation visitedLocation;
-	public final Attraction attraction;
+	private final int attractionRef;
 	private int rewardPoints;
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction, int rewardPoints) {
-		this.visitedLocation = visitedLocation;
-		this.attraction = attraction;
+		this(visitedLocation, attraction);
 		this.rewardPoints = rewardPoints;
 	}
 	
 	public UserReward(VisitedLocation visitedLocation, Attraction attraction) {
 		this.visitedLocation = visitedLocation;
-		this.attraction = attraction;
+		this.attractionRef = AttractionRegistry.intern(attraction);
 	}
 
 	public void setRewardPoints(int rewardPoints) {
@@ -31,8 +33,17 @@ public class UserReward {
 		return rewardPoints;
 	}
 
+	public Attraction getAttraction() {
+		return AttractionRegistry.get(attractionRef);
+	}
+
+	@JsonIgnore
+	public int getAttractionRef() {
+		return attractionRef;
+	}
+
 	public String getAttractionName(){
-		return attraction.attractionName;
+		return getAttraction().attractionName;
 	}
 	
 }
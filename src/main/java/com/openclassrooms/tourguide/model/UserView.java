@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.model;
+
+import java.util.List;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Instantané immuable de l'état d'un utilisateur lu par les endpoints : il est publié par les threads qui
+ * modifient l'utilisateur et lu sans verrou par les contrôleurs.
+ *
+ * @param version                La version de l'utilisateur au moment de la construction de l'instantané.
+ * @param lastLocation           La dernière localisation connue, ou null si l'utilisateur n'a jamais été localisé.
+ * @param rewards                Les récompenses de l'utilisateur (liste non modifiable).
+ * @param totalRewardPoints      Le total des points de récompense.
+ * @param nearestAttractionRefs  Les identifiants des cinq attractions les plus proches de la dernière localisation,
+ *                               de la plus proche à la plus éloignée.
+ */
+public record UserView(long version, VisitedLocation lastLocation, List<UserReward> rewards, int totalRewardPoints,
+		List<Integer> nearestAttractionRefs) {
+}
@@ -0,0 +1,49 @@
+package com.openclassrooms.tourguide.profiling;
+
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Événement JFR de base mesurant, en plus de la durée, le nombre d'octets alloués par le thread courant
+ * entre {@link #start()} et {@link #finish()}. La mesure n'est effectuée que si l'événement est activé
+ * dans l'enregistrement en cours, le coût est donc nul en production hors profilage.
+ */
+public abstract class AllocationTrackingEvent extends Event {
+
+	private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+
+	// Compteur d'allocation du thread au démarrage (non enregistré)
+	private transient long allocatedAtStart;
+
+	/**
+	 * Démarre la mesure de la durée et des allocations.
+	 */
+	public void start() {
+		if (isEnabled()) {
+			allocatedAtStart = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+			begin();
+		}
+	}
+
+	/**
+	 * Termine la mesure et enregistre l'événement s'il dépasse le seuil configuré.
+	 */
+	public void finish() {
+		if (!isEnabled()) {
+			return;
+		}
+		end();
+		if (shouldCommit()) {
+			allocatedBytes = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - allocatedAtStart;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.tourguide.profiling;
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant un appel à une bibliothèque externe (gpsUtil, RewardCentral, TripPricer).
+ */
+@Name("com.openclassrooms.tourguide.ExternalCall")
+@Label("External Call")
+@Category({ "TourGuide", "External" })
+@Description("Call to an external library")
+public class ExternalCallEvent extends AllocationTrackingEvent {
+
+	@Label("Dependency")
+	String dependency;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Failed")
+	boolean failed;
+
+	/**
+	 * Exécute un appel externe en l'enregistrant comme événement JFR.
+	 *
+	 * @param dependency Le nom de la bibliothèque appelée.
+	 * @param operation  Le nom de l'opération appelée.
+	 * @param call       L'appel à exécuter.
+	 * @return Le résultat de l'appel.
+	 */
+	public static <T> T record(String dependency, String operation, Supplier<T> call) {
+		ExternalCallEvent event = new ExternalCallEvent();
+		event.dependency = dependency;
+		event.operation = operation;
+		event.start();
+		try {
+			return call.get();
+		} catch (RuntimeException e) {
+			event.failed = true;
+			throw e;
+		} finally {
+			event.finish();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.openclassrooms.tourguide.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoint actuator permettant de piloter un enregistrement JDK Flight Recorder sans attacher d'agent :
+ *
+ * <pre>
+ * POST   /actuator/flightrecorder                      démarre un enregistrement ({"settings":"profile"})
+ * GET    /actuator/flightrecorder                      état de l'enregistrement
+ * DELETE /actuator/flightrecorder                      arrête l'enregistrement et le conserve sur disque
+ * GET    /actuator/flightrecorder/tourguide.jfr        télécharge un instantané de l'enregistrement en cours
+ * GET    /actuator/flightrecorder/{lastRecording}      télécharge le dernier enregistrement conservé
+ * </pre>
+ *
+ * Les événements TourGuide (cycles du Tracker, suivi, évaluation des récompenses et appels externes)
+ * sont toujours activés, en plus de ceux de la configuration JFR choisie. Seuls les fichiers produits par cet
+ * endpoint peuvent être téléchargés, et seul leur nom est exposé.
+ */
+@Component
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+
+	public static final String RUNNING_RECORDING = "tourguide.jfr";
+
+	private Recording recording;
+	private Path lastDump;
+
+	@WriteOperation
+	public synchronized Map<String, Object> start(@Nullable String settings, @Nullable Long maxAgeSeconds)
+			throws IOException, ParseException {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			return status();
+		}
+		closeRecording();
+		recording = new Recording(Configuration.getConfiguration(settings != null ? settings : "profile"));
+		recording.setName("tourguide");
+		recording.setMaxAge(Duration.ofSeconds(maxAgeSeconds != null ? maxAgeSeconds : 600));
+		recording.enable(TrackerCycleEvent.class);
+		recording.enable(TrackUserEvent.class);
+		recording.enable(RewardEvaluationEvent.class);
+		recording.enable(ExternalCallEvent.class);
+		recording.start();
+		return status();
+	}
+
+	@DeleteOperation
+	public synchronized Map<String, Object> stop() throws IOException {
+		if (recording != null && recording.getState() == RecordingState.RUNNING) {
+			recording.stop();
+			Path dump = Files.createTempFile("tourguide-", ".jfr");
+			recording.dump(dump);
+			deleteLastDump();
+			lastDump = dump;
+			closeRecording();
+		}
+		return status();
+	}
+
+	@ReadOperation
+	public synchronized Map<String, Object> status() {
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("state", recording != null ? recording.getState().name() : RecordingState.CLOSED.name());
+		if (recording != null) {
+			status.put("startTime", recording.getStartTime());
+			status.put("size", recording.getSize());
+		}
+		if (lastDump != null) {
+			status.put("lastRecording", lastDump.getFileName().toString());
+		}
+		return status;
+	}
+
+	/**
+	 * Télécharge un enregistrement : {@link #RUNNING_RECORDING} produit un instantané de l'enregistrement en
+	 * cours sans l'arrêter, tout autre nom doit être celui du dernier enregistrement conservé (lastRecording).
+	 *
+	 * @return L'enregistrement, ou null (404) si le nom ne désigne aucun enregistrement de cet endpoint.
+	 */
+	@ReadOperation(produces = "application/octet-stream")
+	public synchronized Resource download(@Selector String fileName) throws IOException {
+		if (RUNNING_RECORDING.equals(fileName)) {
+			if (recording == null || recording.getState() != RecordingState.RUNNING) {
+				return null;
+			}
+			Path snapshot = Files.createTempFile("tourguide-", ".jfr");
+			recording.dump(snapshot);
+			deleteLastDump();
+			lastDump = snapshot;
+			return new FileSystemResource(snapshot);
+		}
+		if (lastDump == null || !lastDump.getFileName().toString().equals(fileName)) {
+			return null;
+		}
+		return new FileSystemResource(lastDump);
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() throws IOException {
+		closeRecording();
+		deleteLastDump();
+	}
+
+	private void closeRecording() {
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+	}
+
+	private void deleteLastDump() throws IOException {
+		if (lastDump != null) {
+			Files.deleteIfExists(lastDump);
+			lastDump = null;
+		}
+	}
+}
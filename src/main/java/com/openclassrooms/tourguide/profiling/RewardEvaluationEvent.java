@@ -0,0 +1,37 @@
+package com.openclassrooms.tourguide.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant l'évaluation des récompenses d'un utilisateur.
+ */
+@Name("com.openclassrooms.tourguide.RewardEvaluation")
+@Label("Reward Evaluation")
+@Category({ "TourGuide", "Rewards" })
+@Description("Reward evaluation of a single user")
+public class RewardEvaluationEvent extends AllocationTrackingEvent {
+
+	@Label("User Name")
+	String userName;
+
+	@Label("Visited Locations")
+	int visitedLocations;
+
+	@Label("Rewards Added")
+	int rewardsAdded;
+
+	public void setUserName(String userName) {
+		this.userName = userName;
+	}
+
+	public void setVisitedLocations(int visitedLocations) {
+		this.visitedLocations = visitedLocations;
+	}
+
+	public void setRewardsAdded(int rewardsAdded) {
+		this.rewardsAdded = rewardsAdded;
+	}
+}
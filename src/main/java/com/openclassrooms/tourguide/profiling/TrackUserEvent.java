@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant le suivi de la localisation d'un utilisateur.
+ */
+@Name("com.openclassrooms.tourguide.TrackUser")
+@Label("Track User")
+@Category({ "TourGuide", "Tracker" })
+@Description("Location tracking of a single user")
+public class TrackUserEvent extends AllocationTrackingEvent {
+
+	@Label("User Name")
+	String userName;
+
+	public void setUserName(String userName) {
+		this.userName = userName;
+	}
+}
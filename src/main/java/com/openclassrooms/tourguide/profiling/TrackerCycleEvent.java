@@ -0,0 +1,24 @@
+package com.openclassrooms.tourguide.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant un cycle complet du Tracker.
+ * Les allocations mesurées sont celles du thread du Tracker uniquement.
+ */
+@Name("com.openclassrooms.tourguide.TrackerCycle")
+@Label("Tracker Cycle")
+@Category({ "TourGuide", "Tracker" })
+@Description("One full tracking cycle over all users")
+public class TrackerCycleEvent extends AllocationTrackingEvent {
+
+	@Label("Users")
+	int users;
+
+	public void setUsers(int users) {
+		this.users = users;
+	}
+}
@@ -0,0 +1,365 @@
+package com.openclassrooms.tourguide.push;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.event.LocationTracked;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.NearbyAttraction;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.service.AttractionIndex;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Notifications poussées aux clients abonnés : nouvelles récompenses et changements des cinq attractions les
+ * plus proches, produits par le suivi et l'évaluation des récompenses, au lieu d'interrogations répétées.
+ * <ul>
+ * <li>un abonnement inactif ne consomme ni thread ni traitement : seuls les utilisateurs abonnés sont
+ * recherchés à chaque événement ;</li>
+ * <li>les threads du suivi et des récompenses ne font que déposer l'événement dans l'abonnement, l'envoi est
+ * confié à un petit pool dédié, avec au plus un envoi en cours par abonnement ;</li>
+ * <li>la file d'un abonnement est bornée : les récompenses sont envoyées ensemble, au-delà d'une limite les plus
+ * récentes sont ignorées, et seules la dernière localisation et la dernière liste d'attractions proches sont
+ * conservées ;</li>
+ * <li>les points des attractions proches sont obtenus de RewardCentral hors du pool d'envoi, uniquement si les
+ * cinq plus proches ont changé ; un échec n'abandonne que l'événement concerné ;</li>
+ * <li>un abonnement dont l'envoi reste bloqué au-delà d'un délai (client trop lent) est résilié : il ne reçoit
+ * plus d'événement et sa connexion est fermée dès que l'écriture en cours se termine.</li>
+ * </ul>
+ */
+@Component
+public class UserPushHub {
+
+	public static final String REWARDS_EVENT = "rewards";
+	public static final String NEARBY_ATTRACTIONS_EVENT = "nearbyAttractions";
+	public static final int MAX_PENDING_REWARDS = 100;
+
+	/**
+	 * Destination des notifications d'un abonnement, par exemple une connexion SSE.
+	 */
+	public interface PushSink {
+
+		void send(String eventName, Object data) throws IOException;
+
+		void close();
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(UserPushHub.class);
+	private final TourGuideService tourGuideService;
+	private final long timeoutMillis;
+	private final long sendTimeoutNanos;
+	private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor dispatcher;
+	private final LongAdder sentEvents = new LongAdder();
+	private final LongAdder droppedRewards = new LongAdder();
+	private final LongAdder failedEvents = new LongAdder();
+	private final LongAdder stalledSubscriptions = new LongAdder();
+
+	public UserPushHub(TourGuideService tourGuideService, int dispatcherThreads, long timeoutMinutes) {
+		this(tourGuideService, dispatcherThreads, timeoutMinutes, 10);
+	}
+
+	/**
+	 * @param sendTimeoutSeconds La durée au-delà de laquelle un abonnement dont l'envoi est bloqué est résilié.
+	 */
+	@Autowired
+	public UserPushHub(TourGuideService tourGuideService,
+			@Value("${tourguide.push.dispatcher-threads:4}") int dispatcherThreads,
+			@Value("${tourguide.push.timeout-minutes:30}") long timeoutMinutes,
+			@Value("${tourguide.push.send-timeout-seconds:10}") long sendTimeoutSeconds) {
+		this.tourGuideService = tourGuideService;
+		this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+		this.sendTimeoutNanos = TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+		AtomicInteger threadNumber = new AtomicInteger();
+		// au plus une tâche par abonnement en attente : la file est bornée par le nombre d'abonnements
+		this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "push-dispatcher-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		tourGuideService.getRewardsService().addRewardListener(this::rewardAdded);
+		tourGuideService.addLocationListener(this::locationTracked);
+	}
+
+	/**
+	 * Abonne un client SSE aux notifications d'un utilisateur.
+	 *
+	 * @param user L'utilisateur.
+	 * @return La connexion SSE, fermée à l'expiration du délai de l'abonnement.
+	 */
+	public SseEmitter subscribe(User user) {
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		Subscription subscription = subscribe(user, new PushSink() {
+			@Override
+			public void send(String eventName, Object data) throws IOException {
+				emitter.send(SseEmitter.event().name(eventName).data(data));
+			}
+
+			@Override
+			public void close() {
+				emitter.complete();
+			}
+		});
+		emitter.onCompletion(subscription::cancel);
+		emitter.onTimeout(subscription::cancel);
+		emitter.onError(e -> subscription.cancel());
+		return emitter;
+	}
+
+	/**
+	 * Abonne une destination quelconque aux notifications d'un utilisateur. Les cinq attractions les plus proches
+	 * de sa dernière localisation connue sont envoyées immédiatement.
+	 *
+	 * @param user L'utilisateur.
+	 * @param sink La destination des notifications.
+	 * @return L'abonnement.
+	 */
+	public Subscription subscribe(User user, PushSink sink) {
+		// épinglé pendant toute la durée de l'abonnement
+		Subscription subscription = new Subscription(tourGuideService.pinUser(user), sink);
+		subscriptions.computeIfAbsent(user.getUserName(), name -> ConcurrentHashMap.newKeySet()).add(subscription);
+		if (user.hasVisitedLocations()) {
+			subscription.pendingLocation.set(user.getLastVisitedLocation());
+			subscription.schedule();
+		}
+		return subscription;
+	}
+
+	private void rewardAdded(User user, UserReward userReward) {
+		Set<Subscription> userSubscriptions = subscriptions.get(user.getUserName());
+		if (userSubscriptions != null) {
+			userSubscriptions.forEach(subscription -> subscription.offerReward(userReward));
+		}
+	}
+
+	private void locationTracked(LocationTracked event) {
+		Set<Subscription> userSubscriptions = subscriptions.get(event.getUser().getUserName());
+		if (userSubscriptions != null) {
+			userSubscriptions.forEach(subscription -> {
+				subscription.pendingLocation.set(event.getVisitedLocation());
+				subscription.schedule();
+			});
+		}
+	}
+
+	/**
+	 * Abonnement d'un client : événements en attente et dernier ensemble d'attractions proches envoyé.
+	 */
+	public final class Subscription {
+		private final User user;
+		private final PushSink sink;
+		private final ConcurrentLinkedQueue<UserReward> pendingRewards = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendingRewardCount = new AtomicInteger();
+		private final AtomicReference<VisitedLocation> pendingLocation = new AtomicReference<>();
+		private final AtomicReference<List<NearbyAttraction>> pendingNearby = new AtomicReference<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+		// Numéro de la dernière recherche d'attractions proches : le résultat d'une recherche dépassée est ignoré
+		private final AtomicInteger nearbyGeneration = new AtomicInteger();
+		private final AtomicBoolean nearbyFailed = new AtomicBoolean();
+		// Début de l'envoi en cours (System.nanoTime), 0 si aucun envoi n'est en cours
+		private volatile long sendStartedAt;
+		// Accédé uniquement par la tâche d'envoi, dont une seule instance s'exécute à la fois
+		private int[] lastNearest = new int[0];
+
+		private Subscription(User user, PushSink sink) {
+			this.user = user;
+			this.sink = sink;
+		}
+
+		private void offerReward(UserReward userReward) {
+			if (pendingRewardCount.incrementAndGet() > MAX_PENDING_REWARDS) {
+				pendingRewardCount.decrementAndGet();
+				droppedRewards.increment();
+				return;
+			}
+			pendingRewards.add(userReward);
+			schedule();
+		}
+
+		private void schedule() {
+			long startedAt = sendStartedAt;
+			if (startedAt != 0 && System.nanoTime() - startedAt > sendTimeoutNanos && !cancelled.get()) {
+				// client trop lent : la connexion sera fermée par la tâche d'envoi, à la fin de l'écriture bloquée
+				logger.debug("Push subscription stalled for " + user.getUserName());
+				stalledSubscriptions.increment();
+				cancel();
+				return;
+			}
+			if (!cancelled.get() && scheduled.compareAndSet(false, true)) {
+				try {
+					dispatcher.execute(this::drain);
+				} catch (RuntimeException e) {
+					scheduled.set(false);
+				}
+			}
+		}
+
+		// Envoie les événements en attente, puis recommence si d'autres sont arrivés entre-temps
+		private void drain() {
+			do {
+				if (cancelled.get()) {
+					sink.close();
+					return;
+				}
+				List<UserReward> rewards = new ArrayList<>();
+				for (UserReward reward = pendingRewards.poll(); reward != null; reward = pendingRewards.poll()) {
+					pendingRewardCount.decrementAndGet();
+					rewards.add(reward);
+				}
+				if (!rewards.isEmpty() && !send(REWARDS_EVENT, rewards)) {
+					return;
+				}
+				List<NearbyAttraction> nearbyAttractions = pendingNearby.getAndSet(null);
+				if (nearbyAttractions != null && !send(NEARBY_ATTRACTIONS_EVENT, nearbyAttractions)) {
+					return;
+				}
+				VisitedLocation visitedLocation = pendingLocation.getAndSet(null);
+				if (visitedLocation != null) {
+					requestNearbyAttractionsIfChanged(visitedLocation);
+				}
+				scheduled.set(false);
+			} while ((!pendingRewards.isEmpty() || pendingLocation.get() != null || pendingNearby.get() != null)
+					&& scheduled.compareAndSet(false, true));
+		}
+
+		// Envoie un événement ; en cas d'échec, le client est considéré comme déconnecté et l'abonnement est fermé
+		private boolean send(String eventName, Object data) {
+			sendStartedAt = System.nanoTime();
+			try {
+				sink.send(eventName, data);
+				sentEvents.increment();
+				if (cancelled.get()) {
+					// résilié pendant l'envoi, par exemple parce qu'il restait bloqué
+					sink.close();
+					return false;
+				}
+				return true;
+			} catch (IOException | RuntimeException e) {
+				logger.debug("Push subscription closed for " + user.getUserName() + ": " + e);
+				cancel();
+				sink.close();
+				return false;
+			} finally {
+				sendStartedAt = 0;
+			}
+		}
+
+		// Lance la recherche des points des attractions proches si les cinq plus proches ont changé ; le résultat
+		// est déposé dans l'abonnement, puis envoyé par la tâche d'envoi
+		private void requestNearbyAttractionsIfChanged(VisitedLocation visitedLocation) {
+			if (nearbyFailed.getAndSet(false)) {
+				// la dernière recherche a échoué : les attractions proches sont de nouveau envoyées
+				lastNearest = new int[0];
+			}
+			try {
+				AttractionIndex index = tourGuideService.getRewardsService().getAttractionIndex();
+				int[] nearest = Arrays.stream(index.nearest(visitedLocation.location, 5))
+						.map(i -> AttractionRegistry.intern(index.get(i)))
+						.toArray();
+				if (Arrays.equals(nearest, lastNearest)) {
+					return;
+				}
+				lastNearest = nearest;
+				int generation = nearbyGeneration.incrementAndGet();
+				tourGuideService.getFiveNearestAttractionsAsync(visitedLocation, user)
+						.whenComplete((nearbyAttractions, error) -> {
+							if (generation != nearbyGeneration.get()) {
+								return;
+							}
+							if (error != null) {
+								nearbyAttractionsFailed(error);
+							} else {
+								pendingNearby.set(nearbyAttractions);
+								schedule();
+							}
+						});
+			} catch (RuntimeException e) {
+				// catalogue des attractions indisponible : seul cet événement est abandonné
+				nearbyAttractionsFailed(e);
+			}
+		}
+
+		private void nearbyAttractionsFailed(Throwable error) {
+			failedEvents.increment();
+			nearbyFailed.set(true);
+			logger.debug("Nearby attractions not pushed to " + user.getUserName() + ": " + error);
+		}
+
+		/**
+		 * Met fin à l'abonnement ; les événements en attente sont abandonnés.
+		 */
+		public void cancel() {
+			if (!cancelled.compareAndSet(false, true)) {
+				return;
+			}
+			subscriptions.computeIfPresent(user.getUserName(), (name, userSubscriptions) -> {
+				userSubscriptions.remove(this);
+				return userSubscriptions.isEmpty() ? null : userSubscriptions;
+			});
+			tourGuideService.unpinUser(user);
+		}
+	}
+
+	public int getSubscriptionCount() {
+		return subscriptions.values().stream().mapToInt(Set::size).sum();
+	}
+
+	public long getSentEventCount() {
+		return sentEvents.sum();
+	}
+
+	/**
+	 * @return Le nombre de récompenses non envoyées à des clients trop lents.
+	 */
+	public long getDroppedRewardCount() {
+		return droppedRewards.sum();
+	}
+
+	/**
+	 * @return Le nombre d'événements abandonnés car une dépendance était indisponible.
+	 */
+	public long getFailedEventCount() {
+		return failedEvents.sum();
+	}
+
+	/**
+	 * @return Le nombre d'abonnements résiliés car leur envoi restait bloqué.
+	 */
+	public long getStalledSubscriptionCount() {
+		return stalledSubscriptions.sum();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		subscriptions.values().forEach(userSubscriptions -> userSubscriptions.forEach(subscription -> {
+			subscription.cancel();
+			subscription.sink.close();
+		}));
+		dispatcher.shutdownNow();
+	}
+}
@@ -0,0 +1,73 @@
+package com.openclassrooms.tourguide.ratelimit;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Intercepteur appliquant la limitation de débit aux endpoints de l'API.
+ * Le client est identifié par l'en-tête X-API-Key si la clé fait partie des clés connues, sinon par son adresse IP :
+ * une clé inventée ne permet donc pas d'obtenir un nouveau seau.
+ * L'endpoint est le motif de la route appelée (et non l'URI brute), ce qui borne le nombre de seaux et de métriques.
+ * Une requête refusée reçoit une réponse 429 avec l'en-tête Retry-After (en secondes),
+ * et est comptabilisée dans la métrique tourguide.ratelimit.throttled, par endpoint.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+	public static final String API_KEY_HEADER = "X-API-Key";
+	// Endpoint des requêtes qui ne correspondent à aucune route
+	public static final String UNMAPPED_ENDPOINT = "UNMAPPED";
+
+	private final RateLimiter rateLimiter;
+	private final MeterRegistry meterRegistry;
+	private final Set<String> apiKeys;
+
+	public RateLimitInterceptor(RateLimiter rateLimiter, MeterRegistry meterRegistry) {
+		this(rateLimiter, meterRegistry, Set.of());
+	}
+
+	/**
+	 * @param apiKeys Les clés d'API reconnues ; les autres clients sont identifiés par leur adresse IP.
+	 */
+	public RateLimitInterceptor(RateLimiter rateLimiter, MeterRegistry meterRegistry, Set<String> apiKeys) {
+		this.rateLimiter = rateLimiter;
+		this.meterRegistry = meterRegistry;
+		this.apiKeys = Set.copyOf(apiKeys);
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws IOException {
+		String apiKey = request.getHeader(API_KEY_HEADER);
+		String clientId = apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		String endpoint = pattern != null ? pattern.toString() : UNMAPPED_ENDPOINT;
+		long waitNanos = rateLimiter.tryAcquire(clientId, endpoint);
+		if (waitNanos == 0) {
+			return true;
+		}
+		throttledCounter(endpoint).increment();
+		long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+		response.getWriter().write("Too many requests, retry in " + retryAfterSeconds + " s");
+		return false;
+	}
+
+	private Counter throttledCounter(String endpoint) {
+		return Counter.builder("tourguide.ratelimit.throttled")
+				.description("Requests rejected by the rate limiter")
+				.tag("endpoint", endpoint)
+				.register(meterRegistry);
+	}
+}
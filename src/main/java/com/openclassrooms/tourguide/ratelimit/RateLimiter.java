@@ -0,0 +1,107 @@
+package com.openclassrooms.tourguide.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Limitation du débit par client et par endpoint.
+ * Chaque couple (client, endpoint) dispose de son propre {@link TokenBucket}, dimensionné par la règle
+ * de l'endpoint ou, à défaut, par la règle par défaut. Le nombre de seaux est borné : au-delà de la limite,
+ * le seau utilisé le moins récemment est oublié (il est le plus souvent plein, donc équivalent à un seau neuf).
+ * Les seaux sont répartis en segments indépendants, chacun protégé par son propre verrou.
+ */
+public class RateLimiter {
+	public static final int DEFAULT_MAX_BUCKETS = 100_000;
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * Règle de limitation : taille de la rafale et nombre de requêtes rendues par seconde.
+	 */
+	public record Rule(int burst, double refillPerSecond) {
+
+		/**
+		 * Lit une règle au format "rafale:débit", par exemple "20:10".
+		 */
+		public static Rule parse(String rule) {
+			String[] parts = rule.trim().split(":", 2);
+			return new Rule(Integer.parseInt(parts[0].trim()),
+					parts.length > 1 ? Double.parseDouble(parts[1].trim()) : Integer.parseInt(parts[0].trim()));
+		}
+	}
+
+	private final Rule defaultRule;
+	private final Map<String, Rule> endpointRules;
+	private final Map<String, TokenBucket>[] segments;
+
+	public RateLimiter(Rule defaultRule, Map<String, Rule> endpointRules) {
+		this(defaultRule, endpointRules, DEFAULT_MAX_BUCKETS);
+	}
+
+	public RateLimiter(Rule defaultRule, Map<String, Rule> endpointRules, int maxBuckets) {
+		this.defaultRule = defaultRule;
+		this.endpointRules = Map.copyOf(endpointRules);
+		int maxBucketsPerSegment = Math.max(1, maxBuckets / SEGMENTS);
+		@SuppressWarnings("unchecked")
+		Map<String, TokenBucket>[] lruSegments = new Map[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			lruSegments[i] = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+					return size() > maxBucketsPerSegment;
+				}
+			};
+		}
+		this.segments = lruSegments;
+	}
+
+	/**
+	 * Lit les règles propres aux endpoints, au format "/endpoint=rafale:débit,...".
+	 */
+	public static Map<String, Rule> parseEndpointRules(String rules) {
+		Map<String, Rule> endpointRules = new LinkedHashMap<>();
+		if (rules == null || rules.isBlank()) {
+			return endpointRules;
+		}
+		for (String rule : rules.split(",")) {
+			String[] parts = rule.trim().split("=", 2);
+			endpointRules.put(parts[0].trim(), Rule.parse(parts[1]));
+		}
+		return endpointRules;
+	}
+
+	/**
+	 * Tente d'admettre une requête.
+	 *
+	 * @param clientId L'identifiant du client.
+	 * @param endpoint L'endpoint appelé.
+	 * @return 0 si la requête est admise, sinon le délai en nanosecondes avant de pouvoir réessayer.
+	 */
+	public long tryAcquire(String clientId, String endpoint) {
+		String key = clientId + "|" + endpoint;
+		Map<String, TokenBucket> segment = segments[Math.floorMod(key.hashCode(), SEGMENTS)];
+		TokenBucket bucket;
+		synchronized (segment) {
+			bucket = segment.get(key);
+			if (bucket == null) {
+				Rule rule = getRule(endpoint);
+				bucket = new TokenBucket(rule.burst(), rule.refillPerSecond());
+				segment.put(key, bucket);
+			}
+		}
+		return bucket.tryAcquire();
+	}
+
+	public Rule getRule(String endpoint) {
+		return endpointRules.getOrDefault(endpoint, defaultRule);
+	}
+
+	public int getBucketCount() {
+		int count = 0;
+		for (Map<String, TokenBucket> segment : segments) {
+			synchronized (segment) {
+				count += segment.size();
+			}
+		}
+		return count;
+	}
+}
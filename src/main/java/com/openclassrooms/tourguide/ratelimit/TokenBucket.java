@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seau à jetons sans verrou, dont tout l'état tient dans un seul {@link AtomicLong}.
+ * L'implémentation suit l'algorithme GCRA : au lieu de compter les jetons, le seau mémorise l'instant
+ * théorique d'arrivée de la prochaine requête. Une requête est admise si cet instant, avancé d'un intervalle
+ * d'émission, ne dépasse pas l'instant courant de plus de la rafale autorisée.
+ */
+public class TokenBucket {
+
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	// Instant théorique d'arrivée (System.nanoTime) de la prochaine requête
+	private final AtomicLong theoreticalArrivalNanos;
+
+	/**
+	 * @param burst           Le nombre de requêtes pouvant être admises d'affilée.
+	 * @param refillPerSecond Le nombre de jetons rendus par seconde.
+	 */
+	public TokenBucket(int burst, double refillPerSecond) {
+		if (burst < 1 || refillPerSecond <= 0) {
+			throw new IllegalArgumentException("burst must be >= 1 and refill > 0");
+		}
+		this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+		this.burstToleranceNanos = emissionIntervalNanos * burst;
+		this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Tente de consommer un jeton.
+	 *
+	 * @return 0 si le jeton a été consommé, sinon le délai en nanosecondes avant qu'un jeton soit disponible.
+	 */
+	public long tryAcquire() {
+		return tryAcquire(System.nanoTime());
+	}
+
+	long tryAcquire(long nowNanos) {
+		while (true) {
+			long arrival = theoreticalArrivalNanos.get();
+			long next = Math.max(arrival, nowNanos) + emissionIntervalNanos;
+			long excess = next - nowNanos - burstToleranceNanos;
+			if (excess > 0) {
+				return excess;
+			}
+			if (theoreticalArrivalNanos.compareAndSet(arrival, next)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Consomme un jeton en attendant si nécessaire qu'il soit disponible.
+	 */
+	public void acquire() throws InterruptedException {
+		long waitNanos;
+		while ((waitNanos = tryAcquire()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * @return true si le seau est plein : il peut alors être oublié sans changer les décisions futures.
+	 */
+	public boolean isFull() {
+		return theoreticalArrivalNanos.get() <= System.nanoTime();
+	}
+}
@@ -0,0 +1,96 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disjoncteur protégeant un appel externe.
+ * Après un nombre d'échecs consécutifs, le circuit s'ouvre et les appels sont refusés immédiatement
+ * pendant une durée donnée. Un seul appel d'essai est ensuite autorisé (demi-ouvert) :
+ * son succès referme le circuit, son échec le rouvre.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Autorisation d'un appel : refusée, accordée, ou accordée comme appel d'essai du circuit demi-ouvert.
+	 * Seul le détenteur de l'appel d'essai peut le rendre.
+	 */
+	public enum Permission {
+		DENIED, GRANTED, TRIAL;
+
+		public boolean isGranted() {
+			return this != DENIED;
+		}
+	}
+
+	private final int failureThreshold;
+	private final long openDurationNanos;
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final AtomicBoolean trialInProgress = new AtomicBoolean();
+	private volatile State state = State.CLOSED;
+	private volatile long openedAtNanos;
+
+	/**
+	 * @param failureThreshold Le nombre d'échecs consécutifs provoquant l'ouverture du circuit.
+	 * @param openDuration     La durée pendant laquelle le circuit reste ouvert.
+	 * @param unit             L'unité de la durée d'ouverture.
+	 */
+	public CircuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+		this.failureThreshold = failureThreshold;
+		this.openDurationNanos = unit.toNanos(openDuration);
+	}
+
+	/**
+	 * @return L'autorisation de l'appel, à rendre par {@link #releasePermission(Permission)} si l'appel n'est
+	 *         finalement pas effectué.
+	 */
+	public Permission tryAcquirePermission() {
+		if (state == State.CLOSED) {
+			return Permission.GRANTED;
+		}
+		if (state == State.OPEN && System.nanoTime() - openedAtNanos < openDurationNanos) {
+			return Permission.DENIED;
+		}
+		// Délai d'ouverture écoulé : un seul appel d'essai à la fois
+		if (trialInProgress.compareAndSet(false, true)) {
+			state = State.HALF_OPEN;
+			return Permission.TRIAL;
+		}
+		return Permission.DENIED;
+	}
+
+	/**
+	 * Rend l'autorisation d'un appel qui n'a finalement pas été effectué : un appel d'essai peut alors être
+	 * accordé à un autre appelant. Sans effet pour une autorisation ordinaire.
+	 */
+	public void releasePermission(Permission permission) {
+		if (permission == Permission.TRIAL) {
+			trialInProgress.set(false);
+		}
+	}
+
+	public void onSuccess() {
+		consecutiveFailures.set(0);
+		if (state != State.CLOSED) {
+			state = State.CLOSED;
+			trialInProgress.set(false);
+		}
+	}
+
+	public void onFailure() {
+		if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+			openedAtNanos = System.nanoTime();
+			state = State.OPEN;
+			trialInProgress.set(false);
+		}
+	}
+
+	public State getState() {
+		return state;
+	}
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.tourguide.resilience;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception levée lorsqu'une bibliothèque externe est indisponible (circuit ouvert, délai dépassé,
+ * cloisonnement saturé ou erreur) et qu'aucune valeur de repli n'est disponible.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DependencyUnavailableException extends RuntimeException {
+
+	public DependencyUnavailableException(String dependency) {
+		super(dependency + " is unavailable");
+	}
+}
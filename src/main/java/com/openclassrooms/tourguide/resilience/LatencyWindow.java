@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Fenêtre glissante des dernières latences observées, pour l'estimation de percentiles.
+ */
+public class LatencyWindow {
+
+	private final long[] samples;
+	private int next;
+	private int count;
+
+	/**
+	 * @param capacity Le nombre de latences conservées.
+	 */
+	public LatencyWindow(int capacity) {
+		this.samples = new long[capacity];
+	}
+
+	public synchronized void record(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+	}
+
+	/**
+	 * @param percentile Le percentile recherché, entre 0 et 100.
+	 * @return La latence en nanosecondes au percentile donné, ou 0 si aucune latence n'a été observée.
+	 */
+	public long percentile(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (count == 0) {
+				return 0;
+			}
+			sorted = Arrays.copyOf(samples, count);
+		}
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+}
@@ -0,0 +1,485 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.profiling.ExternalCallEvent;
+
+/**
+ * Couche de résilience propre à une bibliothèque externe : cloisonnement (bulkhead), délai maximal
+ * d'appel et disjoncteur. Chaque dépendance dispose de son propre budget de threads, si bien qu'un
+ * ralentissement de l'une ne consomme pas la capacité des autres.
+ * Un permis n'est rendu que lorsque l'appel sous-jacent se termine réellement : un appel ayant dépassé
+ * son délai continue d'occuper le budget de sa dépendance, et seulement celui-ci.
+ * Les appels lents peuvent en outre être doublés pour réduire la latence de queue
+ * (voir {@link #enableHedging(double, double)}).
+ */
+public class ResiliencePolicy {
+
+	private final Logger logger = LoggerFactory.getLogger(ResiliencePolicy.class);
+	private final String dependency;
+	private final ResizableSemaphore bulkhead;
+	private int maxConcurrentCalls;
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+	private final long bulkheadWaitMillis;
+	private final CircuitBreaker circuitBreaker;
+
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	private final LongAdder shortCircuits = new LongAdder();
+
+	// Doublement des appels lents (désactivé par défaut)
+	private static final int MIN_HEDGE_SAMPLES = 100;
+	private static final int HEDGE_DELAY_UPDATE_INTERVAL = 64;
+	private static final double MAX_HEDGE_BUDGET = 10;
+	private volatile double hedgePercentile;
+	private volatile long hedgeDelayNanos;
+	private double maxHedgeRatio;
+	private double hedgeBudget;
+	private long budgetedCalls;
+	private final AtomicInteger attemptsSinceUpdate = new AtomicInteger();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder hedgeWins = new LongAdder();
+	private final ScheduledExecutorService hedgeScheduler;
+	// Latences de chaque tentative, et latences des appels vus par l'appelant (après doublement éventuel)
+	private final LatencyWindow attemptLatencies = new LatencyWindow(1024);
+	private final LatencyWindow callLatencies = new LatencyWindow(1024);
+
+	/**
+	 * @param dependency         Le nom de la bibliothèque protégée.
+	 * @param maxConcurrentCalls Le nombre maximal d'appels simultanés (budget de threads).
+	 * @param timeoutMillis      Le délai maximal d'un appel, en millisecondes.
+	 * @param bulkheadWaitMillis Le délai maximal d'attente d'un permis lorsque le budget est épuisé.
+	 * @param circuitBreaker     Le disjoncteur associé à la bibliothèque.
+	 */
+	public ResiliencePolicy(String dependency, int maxConcurrentCalls, long timeoutMillis, long bulkheadWaitMillis,
+			CircuitBreaker circuitBreaker) {
+		this.dependency = dependency;
+		this.bulkhead = new ResizableSemaphore(maxConcurrentCalls);
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.timeoutMillis = timeoutMillis;
+		this.bulkheadWaitMillis = bulkheadWaitMillis;
+		this.circuitBreaker = circuitBreaker;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, dependency + "-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, dependency + "-hedge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// les doublements annulés (appel terminé avant le délai) ne restent pas dans la file
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.hedgeScheduler = scheduler;
+	}
+
+	/**
+	 * Exécute un appel protégé et retourne la valeur de repli en cas d'indisponibilité.
+	 *
+	 * @param call     L'appel à la bibliothèque externe.
+	 * @param fallback La valeur de repli (peut lever {@link DependencyUnavailableException}).
+	 * @return Le résultat de l'appel ou la valeur de repli.
+	 */
+	public <T> T call(String operation, Supplier<T> call, Supplier<T> fallback) {
+		return tryCall(operation, call).orElseGet(fallback);
+	}
+
+	/**
+	 * Exécute un appel protégé.
+	 *
+	 * @param operation Le nom de l'opération appelée.
+	 * @param call      L'appel à la bibliothèque externe.
+	 * @return Le résultat de l'appel, ou un Optional vide si la bibliothèque est indisponible.
+	 */
+	public <T> Optional<T> tryCall(String operation, Supplier<T> call) {
+		try {
+			return tryCallAsync(operation, call).get();
+		} catch (InterruptedException e) {
+			// l'appel se poursuit jusqu'à son délai maximal, son permis n'est rendu qu'à sa fin
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// impossible : le résultat n'est jamais en erreur
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Exécute un appel protégé sans bloquer le thread appelant pendant l'appel : seule l'attente éventuelle
+	 * d'un permis du cloisonnement a lieu sur le thread appelant. Le délai maximal est appliqué au résultat.
+	 *
+	 * @param operation Le nom de l'opération appelée.
+	 * @param call      L'appel à la bibliothèque externe.
+	 * @return Le résultat à venir de l'appel, vide si la bibliothèque est indisponible (jamais en erreur).
+	 */
+	public <T> CompletableFuture<Optional<T>> tryCallAsync(String operation, Supplier<T> call) {
+		calls.increment();
+		CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+		if (!permission.isGranted()) {
+			shortCircuits.increment();
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		if (!acquirePermit()) {
+			rejections.increment();
+			// Un rejet ne dit rien de l'état de la dépendance : le disjoncteur n'est pas affecté, mais un appel
+			// d'essai non effectué doit être rendu, faute de quoi le circuit resterait demi-ouvert sans essai possible
+			circuitBreaker.releasePermission(permission);
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		Execution<T> execution = new Execution<>(operation, call);
+		try {
+			execution.launch(false);
+		} catch (RejectedExecutionException e) {
+			// pool arrêté : l'appel n'a pas eu lieu, son autorisation est rendue au disjoncteur
+			rejections.increment();
+			circuitBreaker.releasePermission(permission);
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		long hedgeDelay = hedgeDelayNanos;
+		if (hedgeDelay > 0) {
+			// Doublement de l'appel s'il dure plus longtemps que le percentile choisi des latences récentes ;
+			// le doublement programmé est annulé dès que l'appel se termine
+			try {
+				ScheduledFuture<?> hedge = hedgeScheduler.schedule(execution::hedge, hedgeDelay, TimeUnit.NANOSECONDS);
+				execution.result.whenComplete((result, error) -> hedge.cancel(false));
+			} catch (RejectedExecutionException e) {
+				// politique arrêtée : pas de doublement
+			}
+		}
+		return execution.result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).handle((result, error) -> {
+			if (error == null) {
+				circuitBreaker.onSuccess();
+				return Optional.ofNullable(result);
+			}
+			Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+			if (cause instanceof TimeoutException) {
+				timeouts.increment();
+				circuitBreaker.onFailure();
+				logger.debug(dependency + "." + operation + " timed out after " + timeoutMillis + " ms");
+			} else {
+				failures.increment();
+				circuitBreaker.onFailure();
+				logger.debug(dependency + "." + operation + " failed", cause);
+			}
+			return Optional.empty();
+		});
+	}
+
+	/**
+	 * Exécution d'un appel, éventuellement doublée : la première tentative réussie fournit le résultat et
+	 * l'autre tentative est abandonnée. Le résultat n'est en erreur que si toutes les tentatives ont échoué.
+	 */
+	private final class Execution<T> {
+		private final String operation;
+		private final Supplier<T> call;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private final List<CallTask<T>> attempts = new CopyOnWriteArrayList<>();
+		private final AtomicInteger pendingAttempts = new AtomicInteger();
+		private final AtomicBoolean won = new AtomicBoolean();
+		private final long startNanos = System.nanoTime();
+
+		Execution(String operation, Supplier<T> call) {
+			this.operation = operation;
+			this.call = call;
+			result.whenComplete((value, error) -> {
+				if (error == null) {
+					callLatencies.record(System.nanoTime() - startNanos);
+				}
+				// les tentatives encore en cours sont perdantes (ou ont dépassé le délai) : elles sont abandonnées
+				attempts.stream().filter(attempt -> !attempt.result.isDone()).forEach(CallTask::abandon);
+			});
+		}
+
+		// Le permis de la tentative doit avoir été obtenu par l'appelant
+		void launch(boolean hedge) {
+			CallTask<T> attempt = new CallTask<>(operation, call);
+			attempts.add(attempt);
+			pendingAttempts.incrementAndGet();
+			attempt.result.whenComplete((value, error) -> {
+				if (error == null) {
+					// le gain est compté avant de libérer l'appelant, qui peut consulter les métriques aussitôt
+					if (won.compareAndSet(false, true) && hedge && !result.isDone()) {
+						hedgeWins.increment();
+					}
+					result.complete(value);
+				} else if (pendingAttempts.decrementAndGet() == 0) {
+					result.completeExceptionally(error);
+				}
+			});
+			try {
+				executor.execute(attempt);
+			} catch (RuntimeException e) {
+				bulkhead.release();
+				throw e;
+			}
+			if (result.isDone()) {
+				attempt.abandon();
+			}
+		}
+
+		// Lance la tentative de couverture, dans la limite du budget et sans attendre de permis
+		void hedge() {
+			if (result.isDone() || !tryConsumeHedgeBudget()) {
+				return;
+			}
+			if (!bulkhead.tryAcquire()) {
+				return;
+			}
+			hedges.increment();
+			try {
+				launch(true);
+			} catch (RejectedExecutionException e) {
+				// pool arrêté : la tentative principale reste seule, son permis a été rendu
+			}
+		}
+	}
+
+	/**
+	 * Tentative exécutée sur le pool de la dépendance. Le permis est toujours rendu à la fin de l'exécution,
+	 * y compris lorsque l'appelant a abandonné l'attente.
+	 */
+	private class CallTask<T> implements Runnable {
+		private final String operation;
+		private final Supplier<T> call;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private volatile Thread runner;
+		private volatile long startNanos;
+
+		CallTask(String operation, Supplier<T> call) {
+			this.operation = operation;
+			this.call = call;
+		}
+
+		@Override
+		public void run() {
+			runner = Thread.currentThread();
+			startNanos = System.nanoTime();
+			try {
+				if (!result.isDone()) {
+					T value = ExternalCallEvent.record(dependency, operation, call);
+					// une tentative abandonnée entre-temps a déjà été comptée lors de son abandon
+					if (result.complete(value)) {
+						attemptLatencies.record(System.nanoTime() - startNanos);
+					}
+				}
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			} finally {
+				runner = null;
+				bulkhead.release();
+				onAttemptRecorded();
+			}
+		}
+
+		// Abandonne la tentative : interrompt le thread qui l'exécute, ou l'empêche de démarrer
+		void abandon() {
+			result.cancel(false);
+			Thread thread = runner;
+			if (thread != null) {
+				// durée minimale de la tentative, pour ne pas sous-estimer les latences lentes
+				attemptLatencies.record(System.nanoTime() - startNanos);
+				thread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Active le doublement des appels lents (hedging) : un appel qui dure plus longtemps que le percentile
+	 * donné des latences récentes est relancé une seule fois, et le premier résultat l'emporte.
+	 * Le nombre de doublements est plafonné à une fraction des appels, avec une réserve limitée.
+	 *
+	 * @param percentile    Le percentile des latences récentes au-delà duquel un appel est doublé (par exemple 95).
+	 * @param maxHedgeRatio La part maximale d'appels doublés (par exemple 0.05).
+	 */
+	public synchronized void enableHedging(double percentile, double maxHedgeRatio) {
+		if (percentile <= 0 || percentile >= 100 || maxHedgeRatio <= 0) {
+			throw new IllegalArgumentException("percentile must be in ]0, 100[ and maxHedgeRatio > 0");
+		}
+		this.hedgePercentile = percentile;
+		this.maxHedgeRatio = maxHedgeRatio;
+		this.hedgeBudget = 0;
+		updateHedgeDelay();
+	}
+
+	public synchronized void disableHedging() {
+		this.hedgePercentile = 0;
+		this.hedgeDelayNanos = 0;
+	}
+
+	public boolean isHedgingEnabled() {
+		return hedgePercentile > 0;
+	}
+
+	private synchronized boolean tryConsumeHedgeBudget() {
+		if (hedgePercentile <= 0) {
+			return false;
+		}
+		long callCount = calls.sum();
+		hedgeBudget = Math.min(MAX_HEDGE_BUDGET, hedgeBudget + (callCount - budgetedCalls) * maxHedgeRatio);
+		budgetedCalls = callCount;
+		if (hedgeBudget < 1) {
+			return false;
+		}
+		hedgeBudget -= 1;
+		return true;
+	}
+
+	// Le délai de doublement n'est recalculé que périodiquement, pour ne pas trier la fenêtre à chaque appel
+	private void onAttemptRecorded() {
+		if (hedgePercentile > 0 && attemptsSinceUpdate.incrementAndGet() >= HEDGE_DELAY_UPDATE_INTERVAL) {
+			attemptsSinceUpdate.set(0);
+			updateHedgeDelay();
+		}
+	}
+
+	private void updateHedgeDelay() {
+		double percentile = hedgePercentile;
+		hedgeDelayNanos = percentile > 0 && attemptLatencies.size() >= MIN_HEDGE_SAMPLES
+				? attemptLatencies.percentile(percentile)
+				: 0;
+	}
+
+	// Sémaphore dont le nombre de permis peut être réduit (réglage à chaud du cloisonnement)
+	private static final class ResizableSemaphore extends Semaphore {
+		private ResizableSemaphore(int permits) {
+			super(permits);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+
+	/**
+	 * Modifie à chaud le nombre maximal d'appels simultanés. Une réduction ne touche pas les appels en cours :
+	 * elle est absorbée au fur et à mesure de leur fin.
+	 *
+	 * @param maxConcurrentCalls Le nouveau nombre maximal d'appels simultanés.
+	 */
+	public synchronized void setMaxConcurrentCalls(int maxConcurrentCalls) {
+		if (maxConcurrentCalls < 1) {
+			throw new IllegalArgumentException("maxConcurrentCalls must be >= 1");
+		}
+		int delta = maxConcurrentCalls - this.maxConcurrentCalls;
+		if (delta > 0) {
+			executor.setMaximumPoolSize(maxConcurrentCalls);
+			executor.setCorePoolSize(maxConcurrentCalls);
+			bulkhead.release(delta);
+		} else if (delta < 0) {
+			bulkhead.reducePermits(-delta);
+			executor.setCorePoolSize(maxConcurrentCalls);
+			executor.setMaximumPoolSize(maxConcurrentCalls);
+		}
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+
+	public synchronized int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	private boolean acquirePermit() {
+		try {
+			return bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+		hedgeScheduler.shutdownNow();
+	}
+
+	public String getDependency() {
+		return dependency;
+	}
+
+	public CircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+
+	public int getAvailablePermits() {
+		return bulkhead.availablePermits();
+	}
+
+	public long getCallCount() {
+		return calls.sum();
+	}
+
+	public long getFailureCount() {
+		return failures.sum();
+	}
+
+	public long getTimeoutCount() {
+		return timeouts.sum();
+	}
+
+	public long getRejectionCount() {
+		return rejections.sum();
+	}
+
+	public long getShortCircuitCount() {
+		return shortCircuits.sum();
+	}
+
+	public long getHedgeCount() {
+		return hedges.sum();
+	}
+
+	public long getHedgeWinCount() {
+		return hedgeWins.sum();
+	}
+
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	public long getHedgeDelayMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos);
+	}
+
+	/**
+	 * @return La latence au percentile donné des appels vus par l'appelant, doublement compris, en millisecondes.
+	 */
+	public double getCallLatencyMillis(double percentile) {
+		return callLatencies.percentile(percentile) / 1e6;
+	}
+
+	/**
+	 * @return La latence au percentile donné des tentatives individuelles, en millisecondes : c'est une borne
+	 *         inférieure de la latence sans doublement, les tentatives abandonnées n'étant comptées que
+	 *         jusqu'à leur abandon.
+	 */
+	public double getAttemptLatencyMillis(double percentile) {
+		return attemptLatencies.percentile(percentile) / 1e6;
+	}
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.tourguide.serialization;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.openclassrooms.tourguide.model.RewardsSummary;
+import com.openclassrooms.tourguide.model.TripDealInputs;
+import com.openclassrooms.tourguide.model.UserPreferences;
+
+/**
+ * Instantané d'un utilisateur tel qu'il est enregistré sur disque.
+ * L'historique des localisations est stocké en colonnes (latitudes, longitudes, dates) plutôt qu'en objets,
+ * et les récompenses réutilisent la projection allégée de l'API.
+ *
+ * @param tripDealsComputedAt La date du calcul des offres, null si elles n'ont jamais été calculées.
+ * @param tripDealInputs      Les données de tarification de ce calcul, null si elles sont inconnues.
+ */
+public record UserSnapshot(UUID userId, long version, String userName, String phoneNumber, String emailAddress,
+		Long latestLocationTimestamp, double[] latitudes, double[] longitudes, long[] visitTimes,
+		RewardsSummary rewards, UserPreferences userPreferences, List<TripDeal> tripDeals, Long tripDealsComputedAt,
+		TripDealInputs tripDealInputs) {
+
+	/**
+	 * Offre de voyage proposée à l'utilisateur.
+	 */
+	public record TripDeal(UUID tripId, String name, double price) {
+	}
+}
@@ -0,0 +1,155 @@
+package com.openclassrooms.tourguide.serialization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+import com.openclassrooms.tourguide.model.RewardsSummary;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
+
+/**
+ * Encodage binaire (CBOR) des instantanés d'utilisateurs.
+ * Les attractions des récompenses sont rattachées au catalogue courant lors du décodage, afin de conserver
+ * leur identifiant : gpsUtil attribue un nouvel identifiant à chaque attraction construite.
+ */
+public class UserSnapshotCodec {
+
+	private final ObjectMapper mapper = new CBORMapper();
+	private final Supplier<List<Attraction>> attractionCatalog;
+
+	/**
+	 * @param attractionCatalog Le fournisseur du catalogue des attractions, utilisé lors du décodage.
+	 */
+	public UserSnapshotCodec(Supplier<List<Attraction>> attractionCatalog) {
+		this.attractionCatalog = attractionCatalog;
+	}
+
+	public UserSnapshot toSnapshot(User user) {
+		// La version est lue avant l'état : une modification concurrente sera enregistrée avec une version plus
+		// récente, et jamais un état ancien avec la version courante
+		long version = user.getVersion();
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		int size = visitedLocations.size();
+		double[] latitudes = new double[size];
+		double[] longitudes = new double[size];
+		long[] visitTimes = new long[size];
+		for (int i = 0; i < size; i++) {
+			VisitedLocation visitedLocation = visitedLocations.get(i);
+			latitudes[i] = visitedLocation.location.latitude;
+			longitudes[i] = visitedLocation.location.longitude;
+			visitTimes[i] = visitedLocation.timeVisited.getTime();
+		}
+		List<UserSnapshot.TripDeal> tripDeals = user.getTripDeals().stream()
+				.map(provider -> new UserSnapshot.TripDeal(provider.tripId, provider.name, provider.price))
+				.toList();
+		Date latestLocationTimestamp = user.getLatestLocationTimestamp();
+		Date tripDealsComputedAt = user.getTripDealsComputedAt();
+		return new UserSnapshot(user.getUserId(), version, user.getUserName(), user.getPhoneNumber(), user.getEmailAddress(),
+				latestLocationTimestamp == null ? null : latestLocationTimestamp.getTime(),
+				latitudes, longitudes, visitTimes, RewardsSummary.of(user.copyUserRewards()),
+				user.getUserPreferences(), tripDeals,
+				tripDealsComputedAt == null ? null : tripDealsComputedAt.getTime(), user.getTripDealInputs());
+	}
+
+	public User fromSnapshot(UserSnapshot snapshot) {
+		User user = new User(snapshot.userId(), snapshot.userName(), snapshot.phoneNumber(), snapshot.emailAddress());
+		if (snapshot.latestLocationTimestamp() != null) {
+			user.setLatestLocationTimestamp(new Date(snapshot.latestLocationTimestamp()));
+		}
+		for (int i = 0; i < snapshot.visitTimes().length; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
+					new Location(snapshot.latitudes()[i], snapshot.longitudes()[i]), new Date(snapshot.visitTimes()[i])));
+		}
+		List<Attraction> attractions = resolveAttractions(snapshot.rewards().attractions());
+		for (RewardsSummary.RewardEntry reward : snapshot.rewards().rewards()) {
+			VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(),
+					new Location(reward.latitude(), reward.longitude()), new Date(reward.timeVisited()));
+			user.addUserReward(new UserReward(visitedLocation, attractions.get(reward.attraction()),
+					reward.rewardPoints()));
+		}
+		if (snapshot.userPreferences() != null) {
+			user.setUserPreferences(snapshot.userPreferences());
+		}
+		List<Provider> tripDeals = new ArrayList<>();
+		for (UserSnapshot.TripDeal tripDeal : snapshot.tripDeals()) {
+			tripDeals.add(new Provider(tripDeal.tripId(), tripDeal.name(), tripDeal.price()));
+		}
+		// restaurées telles qu'elles ont été calculées : elles ne sont recalculées que si leurs données ont changé
+		if (snapshot.tripDealsComputedAt() != null) {
+			user.restoreTripDeals(tripDeals, new Date(snapshot.tripDealsComputedAt()), snapshot.tripDealInputs());
+		}
+		user.restoreVersion(snapshot.version());
+		return user;
+	}
+
+	// Rattache les entrées du dictionnaire au catalogue, ou reconstruit l'attraction si elle en est absente
+	private List<Attraction> resolveAttractions(List<RewardsSummary.AttractionEntry> entries) {
+		Map<UUID, Attraction> catalog = new HashMap<>();
+		if (!entries.isEmpty()) {
+			try {
+				attractionCatalog.get().forEach(attraction -> catalog.put(attraction.attractionId, attraction));
+			} catch (DependencyUnavailableException e) {
+				// catalogue indisponible : les attractions sont reconstruites à partir de l'instantané
+			}
+		}
+		List<Attraction> attractions = new ArrayList<>(entries.size());
+		for (RewardsSummary.AttractionEntry entry : entries) {
+			Attraction attraction = catalog.get(entry.attractionId());
+			attractions.add(attraction != null ? attraction
+					: new Attraction(entry.name(), entry.city(), entry.state(), entry.latitude(), entry.longitude()));
+		}
+		return attractions;
+	}
+
+	public byte[] encode(User user) {
+		try {
+			return mapper.writeValueAsBytes(toSnapshot(user));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public User decode(byte[] bytes) {
+		try {
+			return fromSnapshot(mapper.readValue(bytes, UserSnapshot.class));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Enregistre l'instantané d'un utilisateur. Le fichier est écrit à côté puis renommé, de sorte qu'un
+	 * lecteur ne voie jamais d'instantané partiellement écrit.
+	 *
+	 * @param user L'utilisateur à enregistrer.
+	 * @param file Le fichier de destination.
+	 */
+	public void write(User user, Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temporary, encode(user));
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public User read(Path file) throws IOException {
+		return decode(Files.readAllBytes(file));
+	}
+}
@@ -0,0 +1,299 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+
+/**
+ * Index précalculé du catalogue des attractions, construit au chargement (ou au rafraîchissement) du catalogue.
+ * <ul>
+ * <li>chaque attraction est représentée par son vecteur unitaire (x, y, z) : le cosinus de l'angle entre deux
+ * positions est alors un simple produit scalaire, sans trigonométrie par attraction ;</li>
+ * <li>la distance de chaque attraction à un pivot est triée, ce qui permet, par inégalité triangulaire,
+ * de ne tester que les attractions pouvant se trouver dans un rayon ou parmi les plus proches ;</li>
+ * <li>les k plus proches voisines de chaque attraction sont stockées dans des tableaux primitifs.</li>
+ * </ul>
+ * Les distances sont identiques à celles de {@link RewardsService#getDistance(Location, Location)}
+ * (loi sphérique des cosinus), exprimées en miles terrestres.
+ */
+public class AttractionIndex {
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	// Distance maximale entre deux points du globe, en miles
+	private static final double MAX_DISTANCE = milesFromCosine(-1);
+	public static final int MAX_NEIGHBOURS = 16;
+
+	private final List<Attraction> attractions;
+	// Position dans le catalogue de chaque attraction, par identifiant du registre (-1 si absente)
+	private final int[] indexByRef;
+	// Identifiant du registre de chaque attraction, par position dans le catalogue
+	private final int[] refByIndex;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	// Attractions triées par distance au pivot, et distances correspondantes
+	private final int[] pivotOrder;
+	private final double[] pivotDistances;
+	private final int pivot;
+	// k plus proches voisines de chaque attraction (tableaux aplatis, k par attraction)
+	private final int neighbourCount;
+	private final int[] neighbours;
+	private final float[] neighbourDistances;
+	private final long builtAtMillis = System.currentTimeMillis();
+	// Version du catalogue, différente pour chaque index construit
+	private static final AtomicLong versions = new AtomicLong();
+	private final long version = versions.incrementAndGet();
+
+	public AttractionIndex(List<Attraction> attractions) {
+		this.attractions = List.copyOf(attractions);
+		int n = attractions.size();
+		x = new double[n];
+		y = new double[n];
+		z = new double[n];
+		int[] refs = refByIndex = new int[n];
+		int maxRef = -1;
+		for (int i = 0; i < n; i++) {
+			// le catalogue chargé remplace les exemplaires d'un chargement précédent
+			refs[i] = AttractionRegistry.register(attractions.get(i));
+			maxRef = Math.max(maxRef, refs[i]);
+		}
+		indexByRef = new int[maxRef + 1];
+		Arrays.fill(indexByRef, -1);
+		for (int i = 0; i < n; i++) {
+			Attraction attraction = attractions.get(i);
+			indexByRef[refs[i]] = i;
+			double lat = Math.toRadians(attraction.latitude);
+			double lon = Math.toRadians(attraction.longitude);
+			x[i] = Math.cos(lat) * Math.cos(lon);
+			y[i] = Math.cos(lat) * Math.sin(lon);
+			z[i] = Math.sin(lat);
+		}
+
+		// Pivot : l'attraction la plus éloignée de la première, pour étaler les distances au pivot
+		int farthest = 0;
+		for (int i = 1; i < n; i++) {
+			if (dot(0, i) < dot(0, farthest)) {
+				farthest = i;
+			}
+		}
+		pivot = farthest;
+		Integer[] order = new Integer[n];
+		double[] toPivot = new double[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			toPivot[i] = milesFromCosine(dot(pivot, i));
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(toPivot[a], toPivot[b]));
+		pivotOrder = new int[n];
+		pivotDistances = new double[n];
+		for (int i = 0; i < n; i++) {
+			pivotOrder[i] = order[i];
+			pivotDistances[i] = toPivot[order[i]];
+		}
+
+		neighbourCount = Math.min(MAX_NEIGHBOURS, Math.max(0, n - 1));
+		neighbours = new int[n * neighbourCount];
+		neighbourDistances = new float[n * neighbourCount];
+		for (int i = 0; i < n; i++) {
+			final int from = i;
+			Integer[] others = new Integer[n];
+			for (int j = 0; j < n; j++) {
+				others[j] = j;
+			}
+			Arrays.sort(others, (a, b) -> Double.compare(dot(from, b), dot(from, a)));
+			int k = 0;
+			for (int j = 0; j < n && k < neighbourCount; j++) {
+				if (others[j] != from) {
+					neighbours[i * neighbourCount + k] = others[j];
+					neighbourDistances[i * neighbourCount + k] = (float) milesFromCosine(dot(from, others[j]));
+					k++;
+				}
+			}
+		}
+	}
+
+	public int size() {
+		return attractions.size();
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public Attraction get(int index) {
+		return attractions.get(index);
+	}
+
+	/**
+	 * @return L'index de l'attraction dans le catalogue, ou -1 si elle n'en fait pas partie.
+	 */
+	public int indexOf(Attraction attraction) {
+		return indexOfRef(AttractionRegistry.intern(attraction));
+	}
+
+	/**
+	 * @param ref L'identifiant de l'attraction dans le {@link AttractionRegistry}.
+	 * @return L'index de l'attraction dans le catalogue, ou -1 si elle n'en fait pas partie.
+	 */
+	public int indexOfRef(int ref) {
+		return ref < indexByRef.length ? indexByRef[ref] : -1;
+	}
+
+	/**
+	 * @param index L'index d'une attraction dans le catalogue.
+	 * @return L'identifiant de l'attraction dans le {@link AttractionRegistry}.
+	 */
+	public int refOf(int index) {
+		return refByIndex[index];
+	}
+
+	public long getBuiltAtMillis() {
+		return builtAtMillis;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Appelle l'action pour chaque attraction située à une distance inférieure ou égale au rayon donné.
+	 * Seules les attractions compatibles avec l'inégalité triangulaire par rapport au pivot sont testées,
+	 * et le test lui-même est un produit scalaire comparé à un seuil.
+	 *
+	 * @param location La position de référence.
+	 * @param miles    Le rayon en miles.
+	 * @param action   L'action appelée avec l'index de chaque attraction dans le rayon.
+	 */
+	public void forEachWithin(Location location, double miles, IntConsumer action) {
+		if (miles >= MAX_DISTANCE) {
+			for (int i = 0; i < attractions.size(); i++) {
+				action.accept(i);
+			}
+			return;
+		}
+		double[] unit = unitVector(location);
+		double minCosine = Math.cos(Math.toRadians(miles / STATUTE_MILES_PER_NAUTICAL_MILE / 60));
+		double toPivot = milesFromCosine(dot(pivot, unit));
+		int from = lowerBound(toPivot - miles);
+		for (int p = from; p < pivotOrder.length && pivotDistances[p] <= toPivot + miles; p++) {
+			int i = pivotOrder[p];
+			if (dot(i, unit) >= minCosine) {
+				action.accept(i);
+			}
+		}
+	}
+
+	/**
+	 * Recherche les attractions les plus proches d'une position, parmi celles acceptées par le filtre.
+	 * Le parcours part de la position dans l'ordre du pivot et s'arrête dès que l'inégalité triangulaire
+	 * garantit qu'aucune attraction restante ne peut être plus proche que les k déjà trouvées.
+	 *
+	 * @param location La position de référence.
+	 * @param k        Le nombre d'attractions recherchées.
+	 * @param filter   Le filtre sur l'index des attractions candidates.
+	 * @return Les index des attractions trouvées, de la plus proche à la plus éloignée.
+	 */
+	public int[] nearest(Location location, int k, IntPredicate filter) {
+		if (k <= 0) {
+			return new int[0];
+		}
+		double[] unit = unitVector(location);
+		double toPivot = milesFromCosine(dot(pivot, unit));
+		int[] best = new int[k];
+		double[] bestDistances = new double[k];
+		int found = 0;
+		int up = lowerBound(toPivot);
+		int down = up - 1;
+		while (down >= 0 || up < pivotOrder.length) {
+			// Candidat suivant : celui dont la borne inférieure de distance est la plus faible
+			double upBound = up < pivotOrder.length ? pivotDistances[up] - toPivot : Double.MAX_VALUE;
+			double downBound = down >= 0 ? toPivot - pivotDistances[down] : Double.MAX_VALUE;
+			double bound = Math.min(upBound, downBound);
+			if (found == k && bound > bestDistances[k - 1]) {
+				break;
+			}
+			int i = upBound <= downBound ? pivotOrder[up++] : pivotOrder[down--];
+			if (!filter.test(i)) {
+				continue;
+			}
+			double distance = milesFromCosine(dot(i, unit));
+			if (found < k || distance < bestDistances[k - 1]) {
+				int position = found < k ? found++ : k - 1;
+				while (position > 0 && bestDistances[position - 1] > distance) {
+					best[position] = best[position - 1];
+					bestDistances[position] = bestDistances[position - 1];
+					position--;
+				}
+				best[position] = i;
+				bestDistances[position] = distance;
+			}
+		}
+		return Arrays.copyOf(best, found);
+	}
+
+	public int[] nearest(Location location, int k) {
+		return nearest(location, k, i -> true);
+	}
+
+	/**
+	 * @return Les index des k attractions les plus proches d'une attraction (au plus {@link #MAX_NEIGHBOURS}).
+	 */
+	public int[] nearestToAttraction(int index, int k) {
+		int count = Math.max(0, Math.min(k, neighbourCount));
+		return Arrays.copyOfRange(neighbours, index * neighbourCount, index * neighbourCount + count);
+	}
+
+	/**
+	 * @return La distance précalculée entre une attraction et sa n-ième plus proche voisine.
+	 */
+	public double neighbourDistance(int index, int rank) {
+		return neighbourDistances[index * neighbourCount + rank];
+	}
+
+	/**
+	 * @return La distance en miles entre une attraction et une position.
+	 */
+	public double distance(int index, Location location) {
+		return milesFromCosine(dot(index, unitVector(location)));
+	}
+
+	// Premier rang dans l'ordre du pivot dont la distance au pivot est supérieure ou égale à la valeur donnée
+	private int lowerBound(double toPivot) {
+		int low = 0;
+		int high = pivotDistances.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (pivotDistances[middle] < toPivot) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private double dot(int a, int b) {
+		return x[a] * x[b] + y[a] * y[b] + z[a] * z[b];
+	}
+
+	private double dot(int a, double[] unit) {
+		return x[a] * unit[0] + y[a] * unit[1] + z[a] * unit[2];
+	}
+
+	private static double[] unitVector(Location location) {
+		double lat = Math.toRadians(location.latitude);
+		double lon = Math.toRadians(location.longitude);
+		double cosLat = Math.cos(lat);
+		return new double[] { cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat) };
+	}
+
+	private static double milesFromCosine(double cosine) {
+		double angle = Math.acos(Math.max(-1, Math.min(1, cosine)));
+		return STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(angle);
+	}
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.openclassrooms.tourguide.event.RewardListener;
+import com.openclassrooms.tourguide.model.AttractionPopularity;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+
+/**
+ * Index de popularité des attractions : pour chaque attraction, l'ensemble des utilisateurs récompensés, sous
+ * forme de bitmap indexé par un identifiant dense attribué à chaque utilisateur.
+ * <ul>
+ * <li>le nombre d'utilisateurs récompensés pour une attraction est obtenu en temps constant ;</li>
+ * <li>le nombre d'utilisateurs récompensés pour deux attractions est une intersection de bitmaps, sans
+ * parcourir les utilisateurs ;</li>
+ * <li>l'index est alimenté par les récompenses attribuées depuis le démarrage, par les récompenses des
+ * utilisateurs ajoutés au service et, au démarrage, par celles de tous les utilisateurs du stockage.</li>
+ * </ul>
+ */
+public class AttractionPopularityIndex implements RewardListener {
+
+	private final Map<String, Integer> userIds = new ConcurrentHashMap<>();
+	private final AtomicInteger nextUserId = new AtomicInteger();
+	// Chaque bitmap est protégé par son propre verrou
+	private final Map<Integer, BitSet> usersByAttraction = new ConcurrentHashMap<>();
+	private final Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+	@Override
+	public void rewardAdded(User user, UserReward userReward) {
+		record(userId(user), userReward.getAttractionRef());
+	}
+
+	/**
+	 * Ajoute à l'index toutes les attractions déjà récompensées d'un utilisateur.
+	 */
+	public void seed(User user) {
+		BitSet rewarded = user.copyRewardedAttractions();
+		if (rewarded.isEmpty()) {
+			return;
+		}
+		int userId = userId(user);
+		for (int ref = rewarded.nextSetBit(0); ref >= 0; ref = rewarded.nextSetBit(ref + 1)) {
+			record(userId, ref);
+		}
+	}
+
+	private int userId(User user) {
+		return userIds.computeIfAbsent(user.getUserName(), name -> nextUserId.getAndIncrement());
+	}
+
+	private void record(int userId, int attractionRef) {
+		BitSet users = usersByAttraction.computeIfAbsent(attractionRef, ref -> new BitSet());
+		boolean added;
+		synchronized (users) {
+			added = !users.get(userId);
+			users.set(userId);
+		}
+		if (added) {
+			counts.computeIfAbsent(attractionRef, ref -> new AtomicInteger()).incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return Le nombre d'utilisateurs récompensés pour l'attraction.
+	 */
+	public int countRewardedUsers(int attractionRef) {
+		AtomicInteger count = counts.get(attractionRef);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return Le nombre d'utilisateurs récompensés pour les deux attractions.
+	 */
+	public int countRewardedUsers(int attractionRef, int otherAttractionRef) {
+		BitSet users = copyUsers(attractionRef);
+		users.and(copyUsers(otherAttractionRef));
+		return users.cardinality();
+	}
+
+	private BitSet copyUsers(int attractionRef) {
+		BitSet users = usersByAttraction.get(attractionRef);
+		if (users == null) {
+			return new BitSet();
+		}
+		synchronized (users) {
+			return (BitSet) users.clone();
+		}
+	}
+
+	/**
+	 * Retourne les attractions les plus populaires, éventuellement parmi les utilisateurs récompensés pour une
+	 * attraction de référence.
+	 *
+	 * @param limit         Le nombre maximal d'attractions retournées.
+	 * @param withAttraction L'identifiant de l'attraction de référence, ou -1 pour tous les utilisateurs.
+	 * @return Les attractions, de la plus à la moins populaire.
+	 * @throws IllegalArgumentException Si la limite est négative.
+	 */
+	public List<AttractionPopularity> getMostPopular(int limit, int withAttraction) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit must be >= 0");
+		}
+		BitSet reference = withAttraction < 0 ? null : copyUsers(withAttraction);
+		List<AttractionPopularity> popularity = new ArrayList<>();
+		for (Integer ref : usersByAttraction.keySet()) {
+			int rewardedUsers;
+			if (reference == null) {
+				rewardedUsers = countRewardedUsers(ref);
+			} else if (ref == withAttraction) {
+				continue;
+			} else {
+				BitSet users = copyUsers(ref);
+				users.and(reference);
+				rewardedUsers = users.cardinality();
+			}
+			if (rewardedUsers > 0) {
+				popularity.add(new AttractionPopularity(AttractionRegistry.get(ref).attractionName, rewardedUsers));
+			}
+		}
+		popularity.sort(Comparator.comparingInt(AttractionPopularity::rewardedUsers).reversed()
+				.thenComparing(AttractionPopularity::attractionName));
+		return popularity.size() > limit ? popularity.subList(0, limit) : popularity;
+	}
+}
@@ -0,0 +1,188 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import gpsUtil.location.Location;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.User;
+
+/**
+ * Index inverse de présence : pour chaque attraction, l'ensemble des utilisateurs dont la dernière position
+ * suivie se trouve dans son rayon de proximité.
+ * <ul>
+ * <li>l'index est mis à jour de manière incrémentale à chaque nouvelle position : seules les attractions
+ * quittées ou atteintes depuis la position précédente sont modifiées ;</li>
+ * <li>le nombre d'utilisateurs présents est obtenu en temps constant, et leur liste en temps proportionnel
+ * à sa taille, quel que soit le nombre d'utilisateurs suivis ;</li>
+ * <li>les attractions sont identifiées par leur identifiant du {@link AttractionRegistry} ;</li>
+ * <li>la présence d'un utilisateur qui n'est plus suivi (inactif, évincé ou suivi par un autre nœud) est
+ * retirée lorsque le suivi l'oublie, et au plus tard quand sa dernière position a dépassé la durée de
+ * validité.</li>
+ * </ul>
+ * Une modification du rayon de proximité n'est prise en compte qu'à la position suivante de chaque utilisateur.
+ */
+public class AttractionPresenceIndex {
+
+	// Trois fois l'intervalle de suivi maximal : un utilisateur suivi est mis à jour bien avant l'expiration
+	public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+	private static final int[] NONE = new int[0];
+
+	// Attractions (identifiants triés) dans le rayon desquelles se trouve un utilisateur, et date de la position
+	private record Presence(int[] attractions, long updatedAtMillis) {
+	}
+
+	private final RewardsService rewardsService;
+	private final long ttlMillis;
+	private final Map<Integer, Set<String>> usersByAttraction = new ConcurrentHashMap<>();
+	private final Map<String, Presence> attractionsByUser = new ConcurrentHashMap<>();
+	private final AtomicLong nextExpiryMillis = new AtomicLong();
+
+	public AttractionPresenceIndex(RewardsService rewardsService) {
+		this(rewardsService, DEFAULT_TTL_MILLIS);
+	}
+
+	/**
+	 * @param ttlMillis La durée de validité de la dernière position d'un utilisateur.
+	 */
+	public AttractionPresenceIndex(RewardsService rewardsService, long ttlMillis) {
+		this.rewardsService = rewardsService;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Met à jour la présence d'un utilisateur à partir de sa nouvelle position.
+	 *
+	 * @param user     L'utilisateur.
+	 * @param location Sa nouvelle position.
+	 */
+	public void update(User user, Location location) {
+		AttractionIndex index = rewardsService.getAttractionIndex();
+		int buffer = rewardsService.getProximityBuffer();
+		IntStream.Builder within = IntStream.builder();
+		index.forEachWithin(location, buffer, i -> within.add(AttractionRegistry.intern(index.get(i))));
+		int[] current = within.build().toArray();
+		Arrays.sort(current);
+		int[] attractions = current;
+		String userName = user.getUserName();
+		long nowMillis = System.currentTimeMillis();
+		// compute sérialise les mises à jour d'un même utilisateur
+		attractionsByUser.compute(userName, (name, previous) -> {
+			int[] before = previous == null ? NONE : previous.attractions();
+			for (int ref : before) {
+				if (Arrays.binarySearch(attractions, ref) < 0) {
+					Set<String> users = usersByAttraction.get(ref);
+					if (users != null) {
+						users.remove(name);
+					}
+				}
+			}
+			for (int ref : attractions) {
+				if (Arrays.binarySearch(before, ref) < 0) {
+					usersByAttraction.computeIfAbsent(ref, r -> ConcurrentHashMap.newKeySet()).add(name);
+				}
+			}
+			return attractions.length == 0 ? null : new Presence(attractions, nowMillis);
+		});
+		// les présences périmées sont retirées périodiquement, par l'un des threads de suivi
+		long nextExpiry = nextExpiryMillis.get();
+		if (nowMillis >= nextExpiry && nextExpiryMillis.compareAndSet(nextExpiry, nowMillis + ttlMillis / 4)) {
+			expire(nowMillis);
+		}
+	}
+
+	/**
+	 * Retire la présence d'un utilisateur qui n'est plus suivi par ce nœud.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 */
+	public void remove(String userName) {
+		attractionsByUser.computeIfPresent(userName, (name, presence) -> {
+			removeFromAttractions(name, presence);
+			return null;
+		});
+	}
+
+	/**
+	 * Retire les présences dont la dernière position a dépassé la durée de validité.
+	 *
+	 * @param nowMillis L'instant courant.
+	 * @return Le nombre de présences retirées.
+	 */
+	public int expire(long nowMillis) {
+		long cutoff = nowMillis - ttlMillis;
+		int[] expired = new int[1];
+		for (String userName : attractionsByUser.keySet()) {
+			attractionsByUser.computeIfPresent(userName, (name, presence) -> {
+				if (presence.updatedAtMillis() >= cutoff) {
+					return presence;
+				}
+				removeFromAttractions(name, presence);
+				expired[0]++;
+				return null;
+			});
+		}
+		return expired[0];
+	}
+
+	private void removeFromAttractions(String userName, Presence presence) {
+		for (int ref : presence.attractions()) {
+			Set<String> users = usersByAttraction.get(ref);
+			if (users != null) {
+				users.remove(userName);
+			}
+		}
+	}
+
+	/**
+	 * @return Le nombre d'utilisateurs présents autour d'au moins une attraction.
+	 */
+	public int getPresentUserCount() {
+		return attractionsByUser.size();
+	}
+
+	/**
+	 * @param attractionRef L'identifiant de l'attraction.
+	 * @return Le nombre d'utilisateurs actuellement dans le rayon de l'attraction.
+	 */
+	public int countUsersNear(int attractionRef) {
+		Set<String> users = usersByAttraction.get(attractionRef);
+		return users == null ? 0 : users.size();
+	}
+
+	/**
+	 * @param attractionRef L'identifiant de l'attraction.
+	 * @return Les noms des utilisateurs actuellement dans le rayon de l'attraction (vue non modifiable).
+	 */
+	public Set<String> getUsersNear(int attractionRef) {
+		Set<String> users = usersByAttraction.get(attractionRef);
+		return users == null ? Collections.emptySet() : Collections.unmodifiableSet(users);
+	}
+
+	/**
+	 * @param limit Le nombre maximal d'attractions retournées.
+	 * @return Les identifiants des attractions les plus fréquentées, de la plus à la moins fréquentée.
+	 * @throws IllegalArgumentException Si la limite est négative.
+	 */
+	public List<Integer> getMostCrowded(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit must be >= 0");
+		}
+		return usersByAttraction.entrySet().stream()
+				.filter(entry -> !entry.getValue().isEmpty())
+				.sorted(Comparator.comparingInt((Map.Entry<Integer, Set<String>> entry) -> entry.getValue().size())
+						.reversed())
+				.limit(limit)
+				.map(Map.Entry::getKey)
+				.toList();
+	}
+}
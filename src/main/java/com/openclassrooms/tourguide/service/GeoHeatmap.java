@@ -0,0 +1,279 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.model.HeatmapTile;
+
+/**
+ * Carte de densité des positions des utilisateurs, agrégée au fil du suivi plutôt que recalculée à partir des
+ * historiques de tous les utilisateurs.
+ * <ul>
+ * <li>chaque position est comptée dans une case de chaque niveau de zoom : au niveau z, la carte est découpée
+ * en 2^z cases en latitude et en longitude ;</li>
+ * <li>les compteurs sont des {@link LongAdder}, répartis sur plusieurs cellules pour supporter les écritures
+ * concurrentes des threads de suivi ;</li>
+ * <li>les comptages sont regroupés par tranches de temps, dans un anneau : la tranche la plus ancienne est
+ * recyclée quand une nouvelle commence ;</li>
+ * <li>le nombre de cases d'une tranche est plafonné : au-delà, les positions ne sont plus comptées que dans
+ * les cases existantes, ce qui borne la mémoire utilisée quelle que soit la dispersion des positions ;</li>
+ * <li>une requête ne peut couvrir qu'un nombre limité de cases, ce qui borne la taille des réponses.</li>
+ * </ul>
+ */
+public class GeoHeatmap {
+
+	public static final int DEFAULT_MAX_ZOOM = 8;
+	public static final long DEFAULT_BUCKET_MILLIS = 60_000;
+	public static final int DEFAULT_BUCKET_COUNT = 60;
+	public static final int DEFAULT_MAX_TILES_PER_BUCKET = 8_192;
+	// Une requête sur le monde entier reste possible jusqu'au niveau 6
+	public static final int MAX_QUERY_TILES = 4_096;
+
+	// Comptages d'une tranche de temps, une table de cases par niveau de zoom
+	private static final class Bucket {
+		private final long epoch;
+		private final Map<Long, LongAdder>[] tiles;
+		private final AtomicInteger tileCount = new AtomicInteger();
+
+		@SuppressWarnings("unchecked")
+		private Bucket(long epoch, int levels) {
+			this.epoch = epoch;
+			this.tiles = new Map[levels];
+			for (int zoom = 0; zoom < levels; zoom++) {
+				tiles[zoom] = new ConcurrentHashMap<>();
+			}
+		}
+	}
+
+	private final int maxZoom;
+	private final long bucketMillis;
+	private final int maxTilesPerBucket;
+	private final AtomicReferenceArray<Bucket> buckets;
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder overflowed = new LongAdder();
+
+	public GeoHeatmap() {
+		this(DEFAULT_MAX_ZOOM, DEFAULT_BUCKET_MILLIS, DEFAULT_BUCKET_COUNT, DEFAULT_MAX_TILES_PER_BUCKET);
+	}
+
+	public GeoHeatmap(int maxZoom, long bucketMillis, int bucketCount) {
+		this(maxZoom, bucketMillis, bucketCount, DEFAULT_MAX_TILES_PER_BUCKET);
+	}
+
+	/**
+	 * @param maxZoom           Le niveau de zoom le plus fin, au plus 30.
+	 * @param bucketMillis      La durée d'une tranche de temps.
+	 * @param bucketCount       Le nombre de tranches conservées.
+	 * @param maxTilesPerBucket Le nombre maximal de cases d'une tranche, tous niveaux de zoom confondus.
+	 */
+	public GeoHeatmap(int maxZoom, long bucketMillis, int bucketCount, int maxTilesPerBucket) {
+		if (maxZoom < 0 || maxZoom > 30) {
+			throw new IllegalArgumentException("maxZoom must be between 0 and 30");
+		}
+		if (bucketMillis <= 0 || bucketCount <= 0 || maxTilesPerBucket <= 0) {
+			throw new IllegalArgumentException("bucketMillis, bucketCount and maxTilesPerBucket must be positive");
+		}
+		this.maxZoom = maxZoom;
+		this.bucketMillis = bucketMillis;
+		this.maxTilesPerBucket = maxTilesPerBucket;
+		this.buckets = new AtomicReferenceArray<>(bucketCount);
+	}
+
+	/**
+	 * Compte une position dans la tranche de temps de sa date de visite.
+	 *
+	 * @param visitedLocation La position suivie.
+	 */
+	public void record(VisitedLocation visitedLocation) {
+		Bucket bucket = bucketFor(visitedLocation.timeVisited.getTime() / bucketMillis);
+		if (bucket == null) {
+			dropped.increment();
+			return;
+		}
+		double latitude = visitedLocation.location.latitude;
+		double longitude = visitedLocation.location.longitude;
+		boolean truncated = false;
+		for (int zoom = 0; zoom <= maxZoom; zoom++) {
+			LongAdder counter = counterFor(bucket, zoom, key(tileX(longitude, zoom), tileY(latitude, zoom)));
+			if (counter != null) {
+				counter.increment();
+			} else {
+				truncated = true;
+			}
+		}
+		if (truncated) {
+			overflowed.increment();
+		}
+		recorded.increment();
+	}
+
+	// Compteur d'une case, créé si la tranche n'a pas atteint son nombre maximal de cases ; null sinon
+	private LongAdder counterFor(Bucket bucket, int zoom, long key) {
+		Map<Long, LongAdder> tiles = bucket.tiles[zoom];
+		LongAdder counter = tiles.get(key);
+		if (counter != null) {
+			return counter;
+		}
+		return tiles.computeIfAbsent(key, k -> {
+			if (bucket.tileCount.incrementAndGet() > maxTilesPerBucket) {
+				bucket.tileCount.decrementAndGet();
+				return null;
+			}
+			return new LongAdder();
+		});
+	}
+
+	// Tranche de l'époque donnée, recyclée si elle contient une époque plus ancienne ; null si l'époque est
+	// trop ancienne pour être encore conservée
+	private Bucket bucketFor(long epoch) {
+		int slot = (int) Math.floorMod(epoch, (long) buckets.length());
+		while (true) {
+			Bucket bucket = buckets.get(slot);
+			if (bucket != null && bucket.epoch == epoch) {
+				return bucket;
+			}
+			if (bucket != null && bucket.epoch > epoch) {
+				return null;
+			}
+			Bucket fresh = new Bucket(epoch, maxZoom + 1);
+			if (buckets.compareAndSet(slot, bucket, fresh)) {
+				return fresh;
+			}
+		}
+	}
+
+	/**
+	 * Retourne les cases non vides qui recoupent une zone, pour les positions enregistrées pendant une fenêtre
+	 * se terminant à une date donnée. Le coût dépend du nombre de cases de la zone ou du nombre de cases non
+	 * vides, selon le plus petit des deux, et non du nombre de positions.
+	 *
+	 * @param zoom         Le niveau de zoom, entre 0 et le niveau le plus fin.
+	 * @param windowMillis La durée de la fenêtre, arrondie à la tranche de temps.
+	 * @param nowMillis    La fin de la fenêtre.
+	 * @return Les cases, triées par latitude puis longitude.
+	 * @throws IllegalArgumentException Si le niveau de zoom ou la zone sont invalides, ou si la zone couvre plus
+	 *                                  de {@link #MAX_QUERY_TILES} cases à ce niveau de zoom.
+	 */
+	public List<HeatmapTile> getTiles(double minLatitude, double minLongitude, double maxLatitude,
+			double maxLongitude, int zoom, long windowMillis, long nowMillis) {
+		if (zoom < 0 || zoom > maxZoom) {
+			throw new IllegalArgumentException("zoom must be between 0 and " + maxZoom);
+		}
+		if (!(minLatitude >= -90 && minLatitude <= maxLatitude && maxLatitude <= 90)) {
+			throw new IllegalArgumentException("latitudes must satisfy -90 <= minLatitude <= maxLatitude <= 90");
+		}
+		if (!(minLongitude >= -180 && minLongitude <= maxLongitude && maxLongitude <= 180)) {
+			throw new IllegalArgumentException(
+					"longitudes must satisfy -180 <= minLongitude <= maxLongitude <= 180");
+		}
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("window must be positive");
+		}
+		int level = zoom;
+		int minX = tileX(minLongitude, level);
+		int maxX = tileX(maxLongitude, level);
+		int minY = tileY(minLatitude, level);
+		int maxY = tileY(maxLatitude, level);
+		long toEpoch = nowMillis / bucketMillis;
+		long fromEpoch = toEpoch - Math.max(0, windowMillis / bucketMillis - 1);
+		long areaTiles = (long) (maxX - minX + 1) * (maxY - minY + 1);
+		if (areaTiles > MAX_QUERY_TILES) {
+			throw new IllegalArgumentException("area covers " + areaTiles + " tiles at zoom " + zoom + ", at most "
+					+ MAX_QUERY_TILES + " are allowed: reduce the area or the zoom");
+		}
+
+		Map<Long, Long> counts = new HashMap<>();
+		for (int slot = 0; slot < buckets.length(); slot++) {
+			Bucket bucket = buckets.get(slot);
+			if (bucket == null || bucket.epoch < fromEpoch || bucket.epoch > toEpoch) {
+				continue;
+			}
+			Map<Long, LongAdder> tiles = bucket.tiles[level];
+			if (areaTiles <= tiles.size()) {
+				for (int y = minY; y <= maxY; y++) {
+					for (int x = minX; x <= maxX; x++) {
+						LongAdder counter = tiles.get(key(x, y));
+						if (counter != null) {
+							counts.merge(key(x, y), counter.sum(), Long::sum);
+						}
+					}
+				}
+			} else {
+				tiles.forEach((key, counter) -> {
+					int x = (int) (key >>> 32);
+					int y = (int) (long) key;
+					if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+						counts.merge(key, counter.sum(), Long::sum);
+					}
+				});
+			}
+		}
+
+		List<HeatmapTile> result = new ArrayList<>(counts.size());
+		double tileLongitude = 360d / (1 << level);
+		double tileLatitude = 180d / (1 << level);
+		counts.forEach((key, count) -> {
+			int x = (int) (key >>> 32);
+			int y = (int) (long) key;
+			result.add(new HeatmapTile(level, x, y, -90 + y * tileLatitude, -180 + x * tileLongitude,
+					-90 + (y + 1) * tileLatitude, -180 + (x + 1) * tileLongitude, count));
+		});
+		result.sort(Comparator.comparingInt(HeatmapTile::y).thenComparingInt(HeatmapTile::x));
+		return result;
+	}
+
+	private static int tileX(double longitude, int zoom) {
+		return clamp((int) Math.floor((longitude + 180) / 360 * (1 << zoom)), zoom);
+	}
+
+	private static int tileY(double latitude, int zoom) {
+		return clamp((int) Math.floor((latitude + 90) / 180 * (1 << zoom)), zoom);
+	}
+
+	private static int clamp(int index, int zoom) {
+		return Math.max(0, Math.min((1 << zoom) - 1, index));
+	}
+
+	private static long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	public int getMaxZoom() {
+		return maxZoom;
+	}
+
+	/**
+	 * @return La durée totale couverte par l'anneau des tranches de temps.
+	 */
+	public long getRetentionMillis() {
+		return bucketMillis * buckets.length();
+	}
+
+	public long getRecordedCount() {
+		return recorded.sum();
+	}
+
+	/**
+	 * @return Le nombre de positions ignorées car plus anciennes que les tranches conservées.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return Le nombre de positions qui n'ont pas été comptées à tous les niveaux de zoom, faute de place dans
+	 *         leur tranche de temps.
+	 */
+	public long getOverflowedCount() {
+		return overflowed.sum();
+	}
+}
@@ -1,20 +1,34 @@
 package com.openclassrooms.tourguide.service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 import gpsUtil.location.Attraction;
 import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.event.RewardListener;
+import com.openclassrooms.tourguide.model.RewardEvaluation;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.profiling.RewardEvaluationEvent;
+import com.openclassrooms.tourguide.ratelimit.TokenBucket;
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
+import com.openclassrooms.tourguide.resilience.ResiliencePolicy;
 import com.openclassrooms.tourguide.model.UserReward;
 /**
  * Classe responsable de la gestion des récompenses pour les utilisateurs.
@@ -23,6 +37,7 @@ import com.openclassrooms.tourguide.model.UserReward;
  */
 @Service
 public class RewardsService {
+	private final Logger logger = LoggerFactory.getLogger(RewardsService.class);
     private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
 
 	// Proximité en miles
@@ -33,7 +48,35 @@ public class RewardsService {
 	private final GpsUtil gpsUtil;
 
 	private final RewardCentral rewardsCentral;
-	private ExecutorService executorService = Executors.newFixedThreadPool(50);
+	// Pool de taille fixe, redimensionnable à chaud (endpoint actuator du tracker)
+	private final ThreadPoolExecutor executorService = new ThreadPoolExecutor(50, 50, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>());
+
+	// Couches de résilience (cloisonnement, délai, disjoncteur) propres à chaque bibliothèque externe
+	private final ResiliencePolicy gpsUtilPolicy = new ResiliencePolicy("gpsUtil", 100, 10_000, 10_000,
+			new CircuitBreaker(20, 30, TimeUnit.SECONDS));
+	private final ResiliencePolicy rewardCentralPolicy = new ResiliencePolicy("rewardCentral", 100, 5_000, 5_000,
+			new CircuitBreaker(20, 30, TimeUnit.SECONDS));
+	// Catalogue des attractions indexé, rechargé depuis gpsUtil au-delà de sa durée de validité.
+	// En cas d'indisponibilité de gpsUtil, le dernier catalogue connu reste utilisé.
+	private static final long ATTRACTION_CATALOG_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	private static final long ATTRACTION_CATALOG_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	private volatile AttractionIndex attractionIndex;
+	private volatile long attractionCatalogExpiresAtMillis;
+	// Pool dédié au calcul de proximité (sans appel bloquant), dimensionné sur le nombre de cœurs
+	private static final int PARALLEL_MATCHING_THRESHOLD = 64;
+	private final ForkJoinPool matchingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("reward-matching-" + thread.getPoolIndex());
+		return thread;
+	}, null, false);
+	// Évaluations complètes des récompenses, et évaluations évitées pour des utilisateurs immobiles
+	private final LongAdder evaluatedCount = new LongAdder();
+	private final LongAdder skippedEvaluations = new LongAdder();
+	// Écouteurs notifiés des récompenses attribuées (notifications poussées aux clients)
+	private final List<RewardListener> rewardListeners = new CopyOnWriteArrayList<>();
+	// Valeur de repli : derniers points connus par attraction
+	private final Map<UUID, Integer> lastKnownRewardPoints = new ConcurrentHashMap<>();
 
 	/**
 	 * Constructeur de RewardsService prenant en paramètres l'outil GPS (GpsUtil) et le centre de récompenses (RewardCentral).
@@ -48,6 +91,9 @@ public class RewardsService {
 	@PreDestroy
 	public void shutdownExecutorService() {
 		executorService.shutdown();
+		matchingPool.shutdown();
+		gpsUtilPolicy.shutdown();
+		rewardCentralPolicy.shutdown();
 	}
 	public void setProximityBuffer(int proximityBuffer) {
 		this.proximityBuffer = proximityBuffer;
@@ -57,26 +103,205 @@ public class RewardsService {
 		proximityBuffer = defaultProximityBuffer;
 	}
 
+	public int getProximityBuffer() {
+		return proximityBuffer;
+	}
+
 
 	//La méthode calculateRewards() a été modifiée Pour améliorer les performances en utilisant un traitement
 	// parallèle pour calculer les récompenses des utilisateurs.
 	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = new ArrayList<>(user.getVisitedLocations());
-		Set<String> userRewardAttractions = user.getUserRewards().stream()
-						.map(UserReward::getAttractionName)
-						.collect(Collectors.toSet());
-
-		userLocations.parallelStream().forEach( userLocation ->
-				//loop through all attractions
-				gpsUtil.getAttractions().stream().forEach(attraction -> {
-					//loop through all the user's rewards and check which are the ones he never got a reward for
-					if (!userRewardAttractions.contains(attraction.attractionName)) {
-						if (nearAttraction(userLocation, attraction)) {
-							user.addUserReward(new UserReward(userLocation, attraction, getRewardPoints(attraction, user)));
-						}
+		evaluateRewards(user, getAttractionIndex(), proximityBuffer);
+	}
+
+	/**
+	 * Évalue les récompenses d'un utilisateur après l'enregistrement d'une nouvelle localisation, sauf s'il n'a pas
+	 * pu se rapprocher d'une attraction non récompensée depuis la dernière évaluation complète : par inégalité
+	 * triangulaire, si la distance parcourue depuis la position évaluée est inférieure à la distance de cette
+	 * position à l'attraction non récompensée la plus proche, diminuée du rayon de proximité, aucune attraction
+	 * ne peut être à portée. La dernière évaluation est ignorée si le rayon ou le catalogue ont changé.
+	 *
+	 * @param user            L'utilisateur.
+	 * @param visitedLocation La localisation qui vient d'être enregistrée.
+	 * @return true si les récompenses ont été évaluées, false si l'évaluation a été évitée.
+	 */
+	public boolean calculateRewardsIfMoved(User user, VisitedLocation visitedLocation) {
+		AttractionIndex index = getAttractionIndex();
+		int buffer = proximityBuffer;
+		RewardEvaluation last = user.getLastRewardEvaluation();
+		if (last != null && last.proximityBuffer() == buffer && last.catalogVersion() == index.getVersion()
+				&& getDistance(last.location(), visitedLocation.location)
+						< last.distanceToNearestUnrewarded() - buffer) {
+			skippedEvaluations.increment();
+			return false;
+		}
+		boolean complete = evaluateRewards(user, index, buffer);
+		// une évaluation incomplète (RewardCentral indisponible) ne doit pas permettre d'éviter la suivante
+		user.setLastRewardEvaluation(complete
+				? new RewardEvaluation(visitedLocation.location,
+						getDistanceToNearestUnrewardedAttraction(user, index, visitedLocation.location), buffer,
+						index.getVersion())
+				: null);
+		return true;
+	}
+
+	// Retourne false si une récompense n'a pas pu être attribuée faute de RewardCentral
+	private boolean evaluateRewards(User user, AttractionIndex index, int buffer) {
+		RewardEvaluationEvent event = new RewardEvaluationEvent();
+		event.start();
+		evaluatedCount.increment();
+		List<VisitedLocation> userLocations = user.getVisitedLocations();
+		BitSet rewardedAttractions = user.copyRewardedAttractions();
+
+		// Phase de calcul : attractions non récompensées à portée, sans aucun appel bloquant
+		Map<Integer, VisitedLocation> candidates = matchUnrewardedAttractions(userLocations, index, buffer,
+				rewardedAttractions);
+
+		// Phase d'entrées-sorties : appels à RewardCentral lancés ensemble sur le pool de sa couche de résilience,
+		// les récompenses étant ajoutées par le thread appelant une fois toutes les réponses reçues
+		List<CompletableFuture<UserReward>> lookups = new ArrayList<>(candidates.size());
+		candidates.forEach((i, userLocation) -> {
+			Attraction attraction = index.get(i);
+			lookups.add(getRewardPointsAsync(attraction, user)
+					.thenApply(points -> new UserReward(userLocation, attraction, points))
+					// RewardCentral indisponible : la récompense sera attribuée lors d'une prochaine évaluation
+					.exceptionally(e -> null));
+		});
+		boolean complete = true;
+		boolean added = false;
+		for (CompletableFuture<UserReward> lookup : lookups) {
+			UserReward userReward = lookup.join();
+			if (userReward != null) {
+				added |= addReward(user, userReward);
+			} else {
+				complete = false;
+			}
+		}
+		if (added) {
+			notifyRewardsUpdated(user);
+		}
+		event.setUserName(user.getUserName());
+		event.setVisitedLocations(userLocations.size());
+		event.setRewardsAdded(user.getUserRewards().size() - rewardedAttractions.cardinality());
+		event.finish();
+		return complete;
+	}
+
+	private boolean addReward(User user, UserReward userReward) {
+		if (!user.addUserReward(userReward)) {
+			return false;
+		}
+		for (RewardListener listener : rewardListeners) {
+			try {
+				listener.rewardAdded(user, userReward);
+			} catch (RuntimeException e) {
+				logger.warn("Reward listener failed for " + user.getUserName(), e);
+			}
+		}
+		return true;
+	}
+
+	private void notifyRewardsUpdated(User user) {
+		for (RewardListener listener : rewardListeners) {
+			try {
+				listener.rewardsUpdated(user);
+			} catch (RuntimeException e) {
+				logger.warn("Reward listener failed for " + user.getUserName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Ajoute un écouteur notifié de chaque récompense attribuée par une évaluation ou un rattrapage.
+	 */
+	public void addRewardListener(RewardListener listener) {
+		rewardListeners.add(listener);
+	}
+
+	public void removeRewardListener(RewardListener listener) {
+		rewardListeners.remove(listener);
+	}
+
+	/**
+	 * Recherche, pour chaque attraction non récompensée à portée d'au moins une localisation, la première
+	 * localisation qui l'atteint. Un long historique est parcouru en parallèle sur le pool de calcul dédié,
+	 * jamais sur le pool commun de la JVM.
+	 *
+	 * @return Les localisations retenues, par index d'attraction dans le catalogue.
+	 */
+	private Map<Integer, VisitedLocation> matchUnrewardedAttractions(List<VisitedLocation> userLocations,
+			AttractionIndex index, int buffer, BitSet rewardedAttractions) {
+		if (userLocations.size() < PARALLEL_MATCHING_THRESHOLD) {
+			Map<Integer, VisitedLocation> candidates = new LinkedHashMap<>();
+			for (VisitedLocation userLocation : userLocations) {
+				index.forEachWithin(userLocation.location, buffer, i -> {
+					if (!rewardedAttractions.get(index.refOf(i))) {
+						candidates.putIfAbsent(i, userLocation);
 					}
+				});
+			}
+			return candidates;
+		}
+		// un flux parallèle lancé depuis une tâche du pool dédié s'exécute sur ce pool
+		return matchingPool.submit(() -> userLocations.parallelStream()
+				.flatMap(userLocation -> {
+					List<Map.Entry<Integer, VisitedLocation>> matches = new ArrayList<>();
+					index.forEachWithin(userLocation.location, buffer, i -> {
+						if (!rewardedAttractions.get(index.refOf(i))) {
+							matches.add(Map.entry(i, userLocation));
+						}
+					});
+					return matches.stream();
 				})
- );
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first,
+						LinkedHashMap::new)))
+				.join();
+	}
+
+	/**
+	 * Réévalue tout l'historique d'un utilisateur avec les règles courantes (rayon de proximité et catalogue),
+	 * séquentiellement, en consommant un jeton du limiteur avant chaque appel à RewardCentral.
+	 * Utilisé par le rattrapage des récompenses, qui parallélise lui-même par lots d'utilisateurs.
+	 *
+	 * @param user     L'utilisateur dont l'historique est rejoué.
+	 * @param throttle Le limiteur des appels à RewardCentral.
+	 * @return Le nombre de récompenses ajoutées.
+	 */
+	public int replayRewards(User user, TokenBucket throttle) throws InterruptedException {
+		AttractionIndex index = getAttractionIndex();
+		int buffer = proximityBuffer;
+		BitSet rewardedAttractions = user.copyRewardedAttractions();
+		List<VisitedLocation> userLocations = user.getVisitedLocations();
+		List<UserReward> newRewards = new ArrayList<>();
+		List<Integer> within = new ArrayList<>();
+		for (VisitedLocation userLocation : userLocations) {
+			within.clear();
+			index.forEachWithin(userLocation.location, buffer, within::add);
+			for (int i : within) {
+				Attraction attraction = index.get(i);
+				int ref = index.refOf(i);
+				if (!rewardedAttractions.get(ref)) {
+					rewardedAttractions.set(ref);
+					throttle.acquire();
+					try {
+						newRewards.add(new UserReward(userLocation, attraction, getRewardPoints(attraction, user)));
+					} catch (DependencyUnavailableException e) {
+						// RewardCentral indisponible : l'attraction pourra être récompensée par une prochaine évaluation
+						rewardedAttractions.clear(ref);
+					}
+				}
+			}
+		}
+		int added = 0;
+		for (UserReward userReward : newRewards) {
+			if (addReward(user, userReward)) {
+				added++;
+			}
+		}
+		if (added > 0) {
+			notifyRewardsUpdated(user);
+		}
+		return added;
 	}
 
 	public CompletableFuture<Void> calculateRewardsAsyncList(List<User> allUsers){
@@ -100,16 +325,157 @@ public class RewardsService {
 		);
 	}
 
+	/**
+	 * Méthode permettant d'obtenir la distance entre une localisation et l'attraction la plus proche
+	 * pour laquelle l'utilisateur n'a pas encore été récompensé.
+	 *
+	 * @return La distance en miles, ou Double.MAX_VALUE si l'utilisateur a été récompensé pour toutes les attractions.
+	 */
+	public double getDistanceToNearestUnrewardedAttraction(User user, Location location) {
+		return getDistanceToNearestUnrewardedAttraction(user, getAttractionIndex(), location);
+	}
+
+	/**
+	 * Variante utilisant l'index donné, par exemple le dernier index connu, sans jamais recharger le catalogue.
+	 */
+	public double getDistanceToNearestUnrewardedAttraction(User user, AttractionIndex index, Location location) {
+		BitSet rewardedAttractions = user.copyRewardedAttractions();
+		int[] nearest = index.nearest(location, 1, i -> !rewardedAttractions.get(index.refOf(i)));
+		return nearest.length == 0 ? Double.MAX_VALUE : index.distance(nearest[0], location);
+	}
+
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
 		return getDistance(attraction, location) > attractionProximityRange ? false : true;
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
+	public int getAttractionProximityRange() {
+		return attractionProximityRange;
 	}
-	
+
+	/**
+	 * Méthode permettant d'obtenir les points de récompense d'une attraction pour un utilisateur.
+	 * Si RewardCentral est indisponible, les derniers points connus pour l'attraction sont utilisés.
+	 *
+	 * @throws DependencyUnavailableException si RewardCentral est indisponible et qu'aucun point n'est connu.
+	 */
 	public int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return resolveRewardPoints(attraction, rewardCentralPolicy.tryCall("getAttractionRewardPoints",
+				() -> rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId())));
+	}
+
+	/**
+	 * Variante non bloquante de {@link #getRewardPoints(Attraction, User)} : l'appel à RewardCentral s'exécute
+	 * sur le pool de sa couche de résilience.
+	 *
+	 * @return Les points à venir, en erreur ({@link DependencyUnavailableException}) si RewardCentral est
+	 *         indisponible et qu'aucun point n'est connu.
+	 */
+	public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, User user) {
+		return rewardCentralPolicy.tryCallAsync("getAttractionRewardPoints",
+				() -> rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId()))
+				.thenApply(points -> resolveRewardPoints(attraction, points));
+	}
+
+	private int resolveRewardPoints(Attraction attraction, Optional<Integer> points) {
+		if (points.isPresent()) {
+			lastKnownRewardPoints.put(attraction.attractionId, points.get());
+			return points.get();
+		}
+		Integer cachedPoints = lastKnownRewardPoints.get(attraction.attractionId);
+		if (cachedPoints == null) {
+			throw new DependencyUnavailableException("rewardCentral");
+		}
+		return cachedPoints;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir le catalogue des attractions.
+	 * Si gpsUtil est indisponible, le dernier catalogue connu est utilisé.
+	 *
+	 * @throws DependencyUnavailableException si gpsUtil est indisponible et qu'aucun catalogue n'est connu.
+	 */
+	public List<Attraction> getAttractions() {
+		return getAttractionIndex().getAttractions();
+	}
+
+	/**
+	 * Méthode permettant d'obtenir l'index précalculé du catalogue des attractions.
+	 * Le catalogue n'est rechargé depuis gpsUtil qu'au premier appel puis à l'expiration de sa durée de validité.
+	 *
+	 * @throws DependencyUnavailableException si gpsUtil est indisponible et qu'aucun catalogue n'est connu.
+	 */
+	public AttractionIndex getAttractionIndex() {
+		AttractionIndex index = attractionIndex;
+		if (index == null || isAttractionCatalogExpired()) {
+			index = loadAttractionIndex(false);
+		}
+		return index;
+	}
+
+	/**
+	 * @return Le dernier index du catalogue chargé, même expiré, ou null si le catalogue n'a jamais été chargé.
+	 *         Aucun appel à gpsUtil n'est fait.
+	 */
+	public AttractionIndex getLoadedAttractionIndex() {
+		return attractionIndex;
+	}
+
+	/**
+	 * Recharge immédiatement le catalogue des attractions depuis gpsUtil et reconstruit son index.
+	 *
+	 * @return L'index du catalogue rechargé, ou le dernier index connu si gpsUtil est indisponible.
+	 * @throws DependencyUnavailableException si gpsUtil est indisponible et qu'aucun catalogue n'est connu.
+	 */
+	public AttractionIndex refreshAttractionIndex() {
+		return loadAttractionIndex(true);
+	}
+
+	private synchronized AttractionIndex loadAttractionIndex(boolean force) {
+		AttractionIndex current = attractionIndex;
+		// un autre thread a pu recharger le catalogue pendant l'attente du verrou
+		if (!force && current != null && !isAttractionCatalogExpired()) {
+			return current;
+		}
+		Optional<List<Attraction>> attractions = gpsUtilPolicy.tryCall("getAttractions", gpsUtil::getAttractions);
+		if (attractions.isPresent()) {
+			attractionIndex = new AttractionIndex(attractions.get());
+			attractionCatalogExpiresAtMillis = System.currentTimeMillis() + ATTRACTION_CATALOG_TTL_MILLIS;
+			return attractionIndex;
+		}
+		if (current == null) {
+			throw new DependencyUnavailableException("gpsUtil");
+		}
+		// le dernier catalogue connu est conservé, un nouvel essai n'aura lieu qu'après un court délai
+		attractionCatalogExpiresAtMillis = System.currentTimeMillis() + ATTRACTION_CATALOG_RETRY_MILLIS;
+		return current;
+	}
+
+	private boolean isAttractionCatalogExpired() {
+		return System.currentTimeMillis() > attractionCatalogExpiresAtMillis;
+	}
+
+	public long getEvaluatedCount() {
+		return evaluatedCount.sum();
+	}
+
+	public long getSkippedEvaluationCount() {
+		return skippedEvaluations.sum();
+	}
+
+	public ForkJoinPool getMatchingPool() {
+		return matchingPool;
+	}
+
+	public ThreadPoolExecutor getExecutor() {
+		return executorService;
+	}
+
+	public ResiliencePolicy getGpsUtilPolicy() {
+		return gpsUtilPolicy;
+	}
+
+	public ResiliencePolicy getRewardCentralPolicy() {
+		return rewardCentralPolicy;
 	}
 	
 	public double getDistance(Location loc1, Location loc2) {
@@ -118,8 +484,9 @@ public class RewardsService {
         double lat2 = Math.toRadians(loc2.latitude);
         double lon2 = Math.toRadians(loc2.longitude);
 
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+        // le cosinus est borné : les erreurs d'arrondi donneraient NaN pour deux positions identiques
+        double angle = Math.acos(Math.min(1, Math.sin(lat1) * Math.sin(lat2)
+                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2)));
 
         double nauticalMiles = 60 * Math.toDegrees(angle);
         return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles; //(simplifier)remplace double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;return statuteMiles;
@@ -1,23 +1,46 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.event.LocationListener;
+import com.openclassrooms.tourguide.event.LocationTracked;
+import com.openclassrooms.tourguide.event.RewardsEventBus;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.profiling.TrackUserEvent;
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.DependencyUnavailableException;
+import com.openclassrooms.tourguide.resilience.ResiliencePolicy;
+import com.openclassrooms.tourguide.store.TieredUserStore;
+import com.openclassrooms.tourguide.store.UserPinning;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.model.AttractionPopularity;
+import com.openclassrooms.tourguide.model.AttractionPresence;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.LocationHistoryPage;
 import com.openclassrooms.tourguide.model.NearbyAttraction;
+import com.openclassrooms.tourguide.model.TripDealInputs;
+import com.openclassrooms.tourguide.model.TripDeals;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserPreferences;
 import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.model.UserView;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
@@ -40,14 +63,51 @@ public class TourGuideService {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripPricer tripPricer;
+	// Couche de résilience (cloisonnement, délai, disjoncteur) propre à TripPricer
+	private final ResiliencePolicy tripPricerPolicy = new ResiliencePolicy("tripPricer", 50, 5_000, 5_000,
+			new CircuitBreaker(20, 30, TimeUnit.SECONDS));
 	public final Tracker tracker;
 	boolean testMode = true;
-	private ExecutorService executorService = Executors.newFixedThreadPool(20);
+	private final boolean lazyStartup;
+	private volatile boolean usersLoaded;
+	// Pool de taille fixe, redimensionnable à chaud (endpoint actuator du tracker)
+	private final ThreadPoolExecutor executorService = new ThreadPoolExecutor(20, 20, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>());
+	// Bus d'événements découplant le suivi de localisation du calcul des récompenses
+	private final RewardsEventBus rewardsEventBus;
+	private final AttractionPresenceIndex presenceIndex;
+	private final GeoHeatmap heatmap = new GeoHeatmap();
+	// Offres de voyage recalculées en arrière-plan après un changement des récompenses ou des préférences
+	private final TripDealRefresher tripDealRefresher;
+	// Instantanés immuables des utilisateurs lus par les endpoints
+	private final UserReadModel readModel;
+	// Utilisateurs récompensés par attraction, pour les statistiques de popularité
+	private final AttractionPopularityIndex popularityIndex = new AttractionPopularityIndex();
+	// Écouteurs notifiés des localisations enregistrées (notifications poussées aux clients)
+	private final List<LocationListener> locationListeners = new CopyOnWriteArrayList<>();
+	// Épinglage des utilisateurs retenus par les traitements asynchrones, dans le stockage courant
+	private final UserPinning userPinning = new UserPinning() {
+		@Override
+		public User pin(User user) {
+			return pinUser(user);
+		}
+
+		@Override
+		public void unpin(User user) {
+			unpinUser(user);
+		}
+	};
+	// Partition des utilisateurs entre les nœuds du cluster (un seul nœud par défaut)
+	private volatile ClusterMembership clusterMembership = ClusterMembership.standalone();
 
 	@PreDestroy
 	public void shutdownExecutorService() {
 		executorService.shutdown();
+		rewardsEventBus.shutdown();
+		tripDealRefresher.shutdown();
+		tripPricerPolicy.shutdown();
+		userStore.flush();
 	}
 
 	/**
@@ -57,21 +117,89 @@ public class TourGuideService {
 	 * @param rewardsService Le service de récompenses utilisé pour calculer les récompenses des utilisateurs.
 	 */
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, new TripPricer());
+	}
+
+	/**
+	 * Constructeur de TourGuideService permettant de fournir l'instance de TripPricer
+	 * (par exemple une implémentation simulée pour les tests de charge).
+	 *
+	 * @param gpsUtil        L'utilitaire GPS utilisé pour obtenir les localisations et attractions.
+	 * @param rewardsService Le service de récompenses utilisé pour calculer les récompenses des utilisateurs.
+	 * @param tripPricer     Le service de tarification utilisé pour obtenir les offres de voyage.
+	 */
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer) {
+		this(gpsUtil, rewardsService, tripPricer, false);
+	}
+
+	/**
+	 * Constructeur de TourGuideService utilisé par Spring.
+	 * En démarrage différé, les utilisateurs internes sont créés en arrière-plan une fois l'application prête,
+	 * et le suivi est démarré par le cycle de vie du contexte (bean Tracker) après un délai.
+	 *
+	 * @param gpsUtil        L'utilitaire GPS utilisé pour obtenir les localisations et attractions.
+	 * @param rewardsService Le service de récompenses utilisé pour calculer les récompenses des utilisateurs.
+	 * @param tripPricer     Le service de tarification utilisé pour obtenir les offres de voyage.
+	 * @param lazyStartup    true pour le démarrage différé, false pour créer les utilisateurs et démarrer le suivi
+	 *                       dans le constructeur.
+	 */
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+			@Value("${tourguide.startup.lazy:false}") boolean lazyStartup) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
+		this.tripPricer = tripPricer;
+		this.rewardsEventBus = new RewardsEventBus(rewardsService);
+		this.presenceIndex = new AttractionPresenceIndex(rewardsService);
+		this.tripDealRefresher = new TripDealRefresher(this::getTripDeals, userPinning);
+		rewardsService.addRewardListener((user, userReward) -> tripDealRefresher.refreshIfChanged(user));
+		this.readModel = new UserReadModel(rewardsService);
+		rewardsService.addRewardListener(readModel);
+		rewardsService.addRewardListener(popularityIndex);
+		this.lazyStartup = lazyStartup;
 		
 		Locale.setDefault(Locale.US);
 
-		if (testMode) {
+		if (testMode && !lazyStartup) {
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
 			initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
+		usersLoaded = !testMode || !lazyStartup;
 		tracker = new Tracker(this);
+		if (!lazyStartup) {
+			tracker.startTracking(0);
+		}
 		addShutDownHook();
 	}
 
+	/**
+	 * En démarrage différé, crée les utilisateurs internes en arrière-plan une fois l'application prête
+	 * à recevoir des requêtes, puis les confie au suivi.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadUsersInBackground() {
+		if (usersLoaded) {
+			return;
+		}
+		executorService.submit(() -> {
+			logger.info("TestMode enabled");
+			logger.debug("Initializing users in background");
+			initializeInternalUsers();
+			getTrackedUsers().forEach(tracker.getScheduler()::register);
+			usersLoaded = true;
+			logger.debug("Finished initializing users");
+		});
+	}
+
+	/**
+	 * @return true une fois les utilisateurs internes créés (immédiatement en démarrage non différé).
+	 */
+	public boolean isUsersLoaded() {
+		return usersLoaded;
+	}
+
 	/**
 	 * Méthode permettant d'obtenir les récompenses d'un utilisateur.
 	 *
@@ -79,7 +207,7 @@ public class TourGuideService {
 	 * @return La liste des récompenses de l'utilisateur.
 	 */
 	public List<UserReward> getUserRewards(User user) {
-		return user.getUserRewards();
+		return readModel.view(user).rewards();
 	}
 
 
@@ -90,9 +218,8 @@ public class TourGuideService {
 	 * @return La localisation de l'utilisateur.
 	 */
 	public VisitedLocation getUserLocation(User user) {
-		VisitedLocation visitedLocation = (user.getVisitedLocations().size() > 0) ? user.getLastVisitedLocation()
-				: trackUserLocation(user);
-		return visitedLocation;
+		VisitedLocation visitedLocation = readModel.view(user).lastLocation();
+		return visitedLocation != null ? visitedLocation : trackUserLocation(user);
 	}
 
 
@@ -103,25 +230,206 @@ public class TourGuideService {
 	 * @return L'utilisateur correspondant au nom d'utilisateur spécifié.
 	 */
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		User user = userStore.get(userName);
+		if (user != null && activeUserWindowMillis > 0) {
+			// Un utilisateur redevenu actif reprend sa place dans le suivi
+			tracker.getScheduler().register(user);
+		}
+		return user;
 	}
 
 
+	/**
+	 * Méthode permettant d'obtenir, page par page, les localisations visitées par un utilisateur sur une période.
+	 * Le curseur désigne la date de la prochaine localisation et le nombre de localisations de même date déjà
+	 * retournées : il reste valide si de nouvelles localisations sont enregistrées entre deux pages.
+	 *
+	 * @param user       L'utilisateur.
+	 * @param fromMillis La date de début de la période, incluse.
+	 * @param toMillis   La date de fin de la période, exclue.
+	 * @param cursor     Le curseur retourné avec la page précédente, ou null pour la première page.
+	 * @param limit      Le nombre maximal de localisations par page.
+	 * @return La page de l'historique.
+	 * @throws IllegalArgumentException si le curseur est invalide ou si la limite est inférieure à 1.
+	 */
+	public LocationHistoryPage getLocationHistory(User user, long fromMillis, long toMillis, String cursor, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		long from = fromMillis;
+		int skip = 0;
+		if (cursor != null && !cursor.isEmpty()) {
+			int separator = cursor.indexOf(':');
+			try {
+				from = Math.max(fromMillis, Long.parseLong(cursor.substring(0, separator)));
+				skip = Integer.parseInt(cursor.substring(separator + 1));
+			} catch (NumberFormatException | IndexOutOfBoundsException e) {
+				throw new IllegalArgumentException("Invalid cursor " + cursor);
+			}
+			if (skip < 0) {
+				throw new IllegalArgumentException("Invalid cursor " + cursor);
+			}
+		}
+		// une localisation de plus que demandé indique s'il reste une page
+		List<VisitedLocation> locations = user.getVisitedLocationsBetween(from, skip, toMillis, limit + 1);
+		if (locations.size() <= limit) {
+			return new LocationHistoryPage(user.getUserName(), locations, null);
+		}
+		List<VisitedLocation> page = locations.subList(0, limit);
+		long lastTime = page.get(limit - 1).timeVisited.getTime();
+		int sameTime = (int) page.stream().filter(location -> location.timeVisited.getTime() == lastTime).count();
+		if (lastTime == from) {
+			sameTime += skip;
+		}
+		return new LocationHistoryPage(user.getUserName(), page, lastTime + ":" + sameTime);
+	}
+
 	/**
 	 * Méthode permettant d'obtenir tous les utilisateurs.
 	 *
 	 * @return La liste de tous les utilisateurs.
 	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().collect(Collectors.toList());
+		return userStore.getAll();
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		if (userStore.add(user)) {
+			tracker.getScheduler().register(user);
+			popularityIndex.seed(user);
 		}
 	}
 
+	/**
+	 * Méthode permettant d'obtenir les utilisateurs à suivre : ceux consultés pendant la fenêtre d'activité,
+	 * ou tous les utilisateurs si aucune fenêtre n'est définie.
+	 *
+	 * @return La liste des utilisateurs à suivre.
+	 */
+	public List<User> getTrackedUsers() {
+		return userStore.getActiveUsers(activeUserWindowMillis);
+	}
+
+	/**
+	 * Méthode permettant de savoir si un utilisateur a été consulté pendant la fenêtre d'activité.
+	 *
+	 * @param user L'utilisateur.
+	 * @return true si l'utilisateur doit continuer à être suivi.
+	 */
+	public boolean isActiveUser(User user) {
+		return userStore.isActive(user, activeUserWindowMillis);
+	}
+
+	/**
+	 * Méthode permettant d'obtenir l'instance courante d'un utilisateur, rechargée depuis le stockage
+	 * si elle a été évincée de la mémoire depuis sa planification.
+	 *
+	 * @param user L'utilisateur.
+	 * @return L'instance courante de l'utilisateur.
+	 */
+	public User resolveUser(User user) {
+		return userStore.resolve(user);
+	}
+
+	/**
+	 * Méthode permettant d'obtenir les dernières offres de voyage calculées pour un utilisateur, sans attendre
+	 * TripPricer. Les offres sont calculées immédiatement lors de la première consultation ou si un nouveau calcul
+	 * est demandé ; sinon, un recalcul en arrière-plan est programmé si les données de tarification ont changé.
+	 *
+	 * @param user         L'utilisateur.
+	 * @param forceRefresh true pour recalculer les offres immédiatement.
+	 * @return Les offres et la date de leur calcul.
+	 */
+	public TripDeals getCachedTripDeals(User user, boolean forceRefresh) {
+		User current = pinUser(user);
+		try {
+			if (forceRefresh || current.getTripDealsComputedAt() == null) {
+				tripDealRefresher.refreshNow(current);
+			} else {
+				tripDealRefresher.refreshIfChanged(current);
+			}
+			return new TripDeals(current.getTripDeals(), current.getTripDealsComputedAt(),
+					tripDealRefresher.isRefreshPending(current));
+		} finally {
+			unpinUser(current);
+		}
+	}
+
+	/**
+	 * Méthode permettant de modifier les préférences d'un utilisateur ; ses offres de voyage sont recalculées
+	 * en arrière-plan.
+	 *
+	 * @param user            L'utilisateur.
+	 * @param userPreferences Les nouvelles préférences.
+	 */
+	public void updateUserPreferences(User user, UserPreferences userPreferences) {
+		User current = pinUser(user);
+		try {
+			current.setUserPreferences(userPreferences);
+			tripDealRefresher.refreshIfChanged(current);
+		} finally {
+			unpinUser(current);
+		}
+	}
+
+	/**
+	 * Méthode permettant d'obtenir les attractions pour lesquelles le plus d'utilisateurs ont été récompensés.
+	 *
+	 * @param limit          Le nombre maximal d'attractions retournées.
+	 * @param withAttraction Le nom d'une attraction de référence pour ne compter que ses visiteurs, ou null.
+	 * @return Les attractions, de la plus à la moins populaire.
+	 * @throws IllegalArgumentException Si la limite est négative.
+	 */
+	public List<AttractionPopularity> getAttractionPopularity(int limit, String withAttraction) {
+		int withRef = withAttraction == null ? -1 : AttractionRegistry.refOf(withAttraction);
+		if (withAttraction != null && withRef < 0) {
+			return new ArrayList<>();
+		}
+		return popularityIndex.getMostPopular(limit, withRef);
+	}
+
+	public AttractionPopularityIndex getPopularityIndex() {
+		return popularityIndex;
+	}
+
+	/**
+	 * Méthode permettant d'ajouter à l'index de popularité les récompenses de tous les utilisateurs du stockage,
+	 * y compris ceux enregistrés sur disque lors d'une exécution précédente. Les utilisateurs sur disque sont lus
+	 * sans être chargés dans le cache.
+	 *
+	 * @return Le nombre d'utilisateurs parcourus.
+	 */
+	public int seedPopularityIndex() {
+		TieredUserStore store = userStore;
+		int seeded = 0;
+		for (String userName : store.getUserNames()) {
+			if (store.scan(userName, popularityIndex::seed)) {
+				seeded++;
+			}
+		}
+		return seeded;
+	}
+
+	/**
+	 * Alimente l'index de popularité en arrière-plan une fois l'application prête, le stockage étant alors
+	 * défini.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void seedPopularityIndexInBackground() {
+		executorService.submit(() -> {
+			int seeded = seedPopularityIndex();
+			logger.debug("Seeded attraction popularity from " + seeded + " users");
+		});
+	}
+
+	public UserReadModel getReadModel() {
+		return readModel;
+	}
+
+	public TripDealRefresher getTripDealRefresher() {
+		return tripDealRefresher;
+	}
+
 	/**
 	 * Méthode permettant d'obtenir les offres de voyage pour un utilisateur.
 	 *
@@ -133,12 +441,19 @@ public class TourGuideService {
 	//délai de 15 minutes (via la librairie gpsUtil), ainsi qu’une mise à jour des Rewards avec l’attribution
 	//de 100 000 récompenses en moins de 20 minutes (via la librairie RewardsCentral).
 	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
-		return providers;
+		TripDealInputs inputs = TripDealInputs.of(user);
+		Optional<List<Provider>> providers = tripPricerPolicy.tryCall("getPrice",
+				() -> tripPricer.getPrice(tripPricerApiKey, user.getUserId(), inputs.numberOfAdults(),
+						inputs.numberOfChildren(), inputs.tripDuration(), inputs.rewardPoints()));
+		if (providers.isEmpty()) {
+			// TripPricer indisponible : repli sur les dernières offres calculées pour l'utilisateur
+			if (user.getTripDeals().isEmpty()) {
+				throw new DependencyUnavailableException("tripPricer");
+			}
+			return user.getTripDeals();
+		}
+		user.setTripDeals(providers.get(), inputs);
+		return providers.get();
 	}
 
 
@@ -155,15 +470,212 @@ public class TourGuideService {
 
 	/**
 	 * Méthode permettant de suivre la localisation d'un utilisateur.
+	 * Le calcul des récompenses n'est plus effectué ici : un événement {@link LocationTracked} est publié
+	 * et traité de manière asynchrone par les workers du {@link RewardsEventBus}.
 	 *
 	 * @param user L'utilisateur à suivre.
 	 * @return La localisation de l'utilisateur.
 	 */
 	public VisitedLocation trackUserLocation(User user) {
-		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-		user.addToVisitedLocations(visitedLocation);
-		rewardsService.calculateRewards(user);
-		return visitedLocation;
+		// épinglé jusqu'à l'évaluation de ses récompenses : les workers modifient l'instance du stockage
+		User current = pinUser(user);
+		boolean published = false;
+		TrackUserEvent event = new TrackUserEvent();
+		event.setUserName(current.getUserName());
+		event.start();
+		try {
+			Optional<VisitedLocation> trackedLocation = rewardsService.getGpsUtilPolicy().tryCall("getUserLocation",
+					() -> gpsUtil.getUserLocation(current.getUserId()));
+			if (trackedLocation.isEmpty()) {
+				// gpsUtil indisponible : repli sur la dernière position connue, qui n'est pas enregistrée à nouveau
+				if (!current.hasVisitedLocations()) {
+					throw new DependencyUnavailableException("gpsUtil");
+				}
+				return current.getLastVisitedLocation();
+			}
+			VisitedLocation visitedLocation = trackedLocation.get();
+			current.addToVisitedLocations(visitedLocation);
+			current.setLatestLocationTimestamp(visitedLocation.timeVisited);
+			try {
+				presenceIndex.update(current, visitedLocation.location);
+				readModel.publish(current);
+			} catch (DependencyUnavailableException e) {
+				// catalogue des attractions indisponible : la présence et l'instantané seront mis à jour plus tard
+				logger.debug("Attraction presence not updated for " + current.getUserName());
+			}
+			heatmap.record(visitedLocation);
+			LocationTracked locationTracked = new LocationTracked(current, visitedLocation, () -> unpinUser(current));
+			published = true;
+			rewardsEventBus.publish(locationTracked);
+			for (LocationListener listener : locationListeners) {
+				try {
+					listener.locationTracked(locationTracked);
+				} catch (RuntimeException e) {
+					logger.warn("Location listener failed for " + current.getUserName(), e);
+				}
+			}
+			return visitedLocation;
+		} finally {
+			if (!published) {
+				unpinUser(current);
+			}
+			event.finish();
+		}
+	}
+
+	/**
+	 * Méthode permettant d'épingler un utilisateur le temps d'un traitement asynchrone : il n'est pas évincé
+	 * de la mémoire avant l'appel de {@link #unpinUser(User)}.
+	 *
+	 * @param user L'utilisateur.
+	 * @return L'instance courante de l'utilisateur, à utiliser par le traitement.
+	 */
+	public User pinUser(User user) {
+		User pinned = userStore.pin(user.getUserName());
+		return pinned != null ? pinned : user;
+	}
+
+	public void unpinUser(User user) {
+		userStore.unpin(user.getUserName());
+	}
+
+	public UserPinning getUserPinning() {
+		return userPinning;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir le bus d'événements des récompenses (retard, file d'attente, etc.).
+	 *
+	 * @return Le bus d'événements des récompenses.
+	 */
+	public RewardsEventBus getRewardsEventBus() {
+		return rewardsEventBus;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir l'index de présence des utilisateurs autour des attractions.
+	 *
+	 * @return L'index de présence.
+	 */
+	public AttractionPresenceIndex getPresenceIndex() {
+		return presenceIndex;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir le nombre d'utilisateurs présents autour d'une attraction. Les noms des
+	 * utilisateurs ne sont pas exposés.
+	 *
+	 * @param attractionName Le nom de l'attraction.
+	 * @return La présence autour de l'attraction, ou null si l'attraction est inconnue.
+	 */
+	public AttractionPresence getAttractionPresence(String attractionName) {
+		int ref = AttractionRegistry.refOf(attractionName);
+		return ref < 0 ? null : toPresence(ref);
+	}
+
+	/**
+	 * Méthode permettant d'obtenir les attractions autour desquelles se trouvent le plus d'utilisateurs.
+	 *
+	 * @param limit Le nombre maximal d'attractions retournées.
+	 * @return Les attractions, de la plus à la moins fréquentée.
+	 * @throws IllegalArgumentException Si la limite est négative.
+	 */
+	public List<AttractionPresence> getCrowdedAttractions(int limit) {
+		return presenceIndex.getMostCrowded(limit).stream().map(this::toPresence).toList();
+	}
+
+	private AttractionPresence toPresence(int ref) {
+		Attraction attraction = AttractionRegistry.get(ref);
+		return new AttractionPresence(attraction.attractionName, attraction.latitude, attraction.longitude,
+				presenceIndex.countUsersNear(ref));
+	}
+
+	/**
+	 * Méthode permettant de retirer un utilisateur qui n'est plus suivi par ce nœud de l'index de présence.
+	 *
+	 * @param user L'utilisateur.
+	 */
+	public void forgetUserPresence(User user) {
+		presenceIndex.remove(user.getUserName());
+	}
+
+	/**
+	 * Ajoute un écouteur notifié de chaque localisation enregistrée par le suivi.
+	 */
+	public void addLocationListener(LocationListener listener) {
+		locationListeners.add(listener);
+	}
+
+	public void removeLocationListener(LocationListener listener) {
+		locationListeners.remove(listener);
+	}
+
+	/**
+	 * Méthode permettant d'obtenir la carte de densité des positions suivies.
+	 *
+	 * @return La carte de densité.
+	 */
+	public GeoHeatmap getHeatmap() {
+		return heatmap;
+	}
+
+	public ThreadPoolExecutor getExecutor() {
+		return executorService;
+	}
+
+	public RewardsService getRewardsService() {
+		return rewardsService;
+	}
+
+	/**
+	 * Définit la composition du cluster : seuls les utilisateurs de la partition du nœud courant sont suivis.
+	 *
+	 * @param clusterMembership La composition du cluster.
+	 */
+	@Autowired(required = false)
+	public void setClusterMembership(ClusterMembership clusterMembership) {
+		this.clusterMembership = clusterMembership;
+	}
+
+	/**
+	 * Définit le stockage des utilisateurs (cache borné et disque). Les utilisateurs déjà présents
+	 * y sont transférés.
+	 *
+	 * @param userStore Le stockage des utilisateurs.
+	 */
+	@Autowired(required = false)
+	public void setUserStore(TieredUserStore userStore) {
+		TieredUserStore previousStore = this.userStore;
+		previousStore.forEach(userStore::add);
+		this.userStore = userStore;
+	}
+
+	public TieredUserStore getUserStore() {
+		return userStore;
+	}
+
+	/**
+	 * Définit la fenêtre d'activité : seuls les utilisateurs consultés pendant cette durée sont suivis.
+	 *
+	 * @param minutes La durée de la fenêtre en minutes ; 0 pour suivre tous les utilisateurs.
+	 */
+	@Autowired(required = false)
+	public void setActiveUserWindowMinutes(@Value("${tourguide.tracker.active-window-minutes:0}") long minutes) {
+		this.activeUserWindowMillis = TimeUnit.MINUTES.toMillis(minutes);
+	}
+
+	public long getActiveUserWindowMillis() {
+		return activeUserWindowMillis;
+	}
+
+	/**
+	 * Méthode permettant de savoir si un utilisateur appartient à la partition du nœud courant.
+	 *
+	 * @param user L'utilisateur.
+	 * @return true si l'utilisateur est suivi par ce nœud.
+	 */
+	public boolean isLocalUser(User user) {
+		return clusterMembership.isLocal(user.getUserName());
 	}
 
 
@@ -174,12 +686,10 @@ public class TourGuideService {
 	 * @return La liste des attractions à proximité de la localisation visitée.
 	 */
 	public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
+		AttractionIndex index = rewardsService.getAttractionIndex();
 		List<Attraction> nearbyAttractions = new ArrayList<>();
-		for (Attraction attraction : gpsUtil.getAttractions()) {
-			if (rewardsService.isWithinAttractionProximity(attraction, visitedLocation.location)) {
-				nearbyAttractions.add(attraction);
-			}
-		}
+		index.forEachWithin(visitedLocation.location, rewardsService.getAttractionProximityRange(),
+				i -> nearbyAttractions.add(index.get(i)));
 
 		return nearbyAttractions;
 	}
@@ -195,25 +705,107 @@ public class TourGuideService {
 	//La méthode getFiveNearestAttractions() a été ajoutée Pour répondre aux spécifications fonctionnelles qui
 	// exigent que la méthode retourne les cinq attractions les plus proches
 	public List<NearbyAttraction> getFiveNearestAttractions(VisitedLocation visitedLocation, User user){
-		List<Attraction> allAttractions = gpsUtil.getAttractions();
-		return allAttractions
-				.stream()
-				//sort the tourist attractions the nearest to the furthest
-				.sorted(Comparator.comparingDouble( attraction -> rewardsService.getDistance(visitedLocation.location, attraction))
-				)
-				.map(attraction -> new NearbyAttraction(
-						attraction.attractionName,
-						attraction.latitude,
-						attraction.longitude,
-						visitedLocation.location.latitude,
-						visitedLocation.location.longitude,
-						rewardsService.getDistance(attraction, visitedLocation.location),
-						rewardsService.getRewardPoints(attraction, user)
-				))
-				//take the first 5
-				.limit(5)
-				//stream back to list
-				.collect(Collectors.toList());
+		AttractionIndex index = rewardsService.getAttractionIndex();
+		//the index returns the 5 nearest attractions, from the nearest to the furthest
+		int[] nearest = index.nearest(visitedLocation.location, 5);
+		List<NearbyAttraction> nearbyAttractions = new ArrayList<>(nearest.length);
+		for (int i : nearest) {
+			Attraction attraction = index.get(i);
+			nearbyAttractions.add(new NearbyAttraction(
+					AttractionRegistry.intern(attraction),
+					visitedLocation.location.latitude,
+					visitedLocation.location.longitude,
+					index.distance(i, visitedLocation.location),
+					rewardsService.getRewardPoints(attraction, user)));
+		}
+		return nearbyAttractions;
+	}
+
+	/**
+	 * Variante non bloquante de {@link #getFiveNearestAttractions(VisitedLocation, User)} : les appels à
+	 * RewardCentral sont lancés ensemble sur le pool de sa couche de résilience.
+	 *
+	 * @return Les attractions à venir, en erreur si les points d'une attraction ne peuvent être obtenus.
+	 */
+	public CompletableFuture<List<NearbyAttraction>> getFiveNearestAttractionsAsync(VisitedLocation visitedLocation,
+			User user) {
+		AttractionIndex index = rewardsService.getAttractionIndex();
+		int[] nearest = index.nearest(visitedLocation.location, 5);
+		List<CompletableFuture<NearbyAttraction>> lookups = new ArrayList<>(nearest.length);
+		for (int i : nearest) {
+			Attraction attraction = index.get(i);
+			double distance = index.distance(i, visitedLocation.location);
+			lookups.add(rewardsService.getRewardPointsAsync(attraction, user)
+					.thenApply(points -> new NearbyAttraction(AttractionRegistry.intern(attraction),
+							visitedLocation.location.latitude, visitedLocation.location.longitude, distance, points)));
+		}
+		return CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0]))
+				.thenApply(ignored -> lookups.stream().map(CompletableFuture::join).toList());
+	}
+
+	/**
+	 * Méthode permettant d'obtenir les cinq attractions les plus proches de la dernière localisation d'un
+	 * utilisateur, lues dans son instantané ; seuls les points de récompense sont obtenus à la demande.
+	 *
+	 * @param user L'utilisateur.
+	 * @return Les attractions, de la plus proche à la plus éloignée.
+	 */
+	public List<NearbyAttraction> getNearbyAttractions(User user) {
+		UserView view = readModel.view(user);
+		if (view.lastLocation() == null) {
+			return getFiveNearestAttractions(trackUserLocation(user), user);
+		}
+		Location location = view.lastLocation().location;
+		List<NearbyAttraction> nearbyAttractions = new ArrayList<>(view.nearestAttractionRefs().size());
+		for (int ref : view.nearestAttractionRefs()) {
+			Attraction attraction = AttractionRegistry.get(ref);
+			nearbyAttractions.add(new NearbyAttraction(ref, location.latitude, location.longitude,
+					rewardsService.getDistance(attraction, location), rewardsService.getRewardPoints(attraction, user)));
+		}
+		return nearbyAttractions;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir les attractions les plus proches de la dernière attraction pour laquelle
+	 * l'utilisateur a été récompensé (visitée le plus récemment), à partir des plus proches voisines précalculées
+	 * de chaque attraction.
+	 *
+	 * @param user  L'utilisateur.
+	 * @param count Le nombre d'attractions recherchées (au plus {@link AttractionIndex#MAX_NEIGHBOURS}).
+	 * @return La liste des attractions voisines, vide si l'utilisateur n'a encore visité aucune attraction.
+	 * @throws IllegalArgumentException Si le nombre d'attractions demandé est inférieur à 1.
+	 */
+	public List<NearbyAttraction> getAttractionsNearLastVisit(User user, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1");
+		}
+		UserView view = readModel.view(user);
+		List<UserReward> userRewards = view.rewards();
+		if (userRewards.isEmpty()) {
+			return new ArrayList<>();
+		}
+		AttractionIndex index = rewardsService.getAttractionIndex();
+		// les récompenses sont ajoutées dans un ordre quelconque : la dernière visite est la plus récente
+		UserReward lastVisit = userRewards.stream()
+				.max(Comparator.comparing((UserReward reward) -> reward.visitedLocation.timeVisited))
+				.get();
+		int visited = index.indexOfRef(lastVisit.getAttractionRef());
+		if (visited < 0) {
+			return new ArrayList<>();
+		}
+		Location location = view.lastLocation().location;
+		int[] neighbours = index.nearestToAttraction(visited, count);
+		List<NearbyAttraction> nearbyAttractions = new ArrayList<>(neighbours.length);
+		for (int rank = 0; rank < neighbours.length; rank++) {
+			Attraction attraction = index.get(neighbours[rank]);
+			nearbyAttractions.add(new NearbyAttraction(
+					AttractionRegistry.intern(attraction),
+					location.latitude,
+					location.longitude,
+					index.neighbourDistance(visited, rank),
+					rewardsService.getRewardPoints(attraction, user)));
+		}
+		return nearbyAttractions;
 	}
 
 	private void addShutDownHook() {
@@ -231,8 +823,10 @@ public class TourGuideService {
 	 **********************************************************************************/
 	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
-	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	// internal users are provided and stored in memory (or in the configured tiered store)
+	private volatile TieredUserStore userStore = new TieredUserStore();
+	// Fenêtre d'activité au-delà de laquelle un utilisateur n'est plus suivi (0 : tous les utilisateurs)
+	private volatile long activeUserWindowMillis = 0;
 
 	private void initializeInternalUsers() {
 		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
@@ -242,7 +836,7 @@ public class TourGuideService {
 			User user = new User(UUID.randomUUID(), userName, phone, email);
 			generateUserLocationHistory(user);
 
-			internalUserMap.put(userName, user);
+			userStore.add(user);
 		});
 		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
 	}
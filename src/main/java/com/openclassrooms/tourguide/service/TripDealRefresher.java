@@ -0,0 +1,205 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.TripDealInputs;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.store.UserPinning;
+
+import tripPricer.Provider;
+
+/**
+ * Précalcul des offres de voyage en arrière-plan : les offres d'un utilisateur sont recalculées quand le total
+ * de ses points de récompense ou ses préférences changent, afin que la consultation des offres n'attende pas
+ * TripPricer.
+ * <ul>
+ * <li>seuls les utilisateurs dont les offres ont déjà été calculées une fois sont précalculés ;</li>
+ * <li>les changements rapprochés sont regroupés : le calcul n'est lancé qu'après un délai sans nouveau
+ * changement ;</li>
+ * <li>les calculs sont exécutés par un pool borné ; un calcul refusé faute de place est relancé au changement
+ * ou à la consultation suivante ;</li>
+ * <li>aucun appel n'est fait si les données de tarification n'ont pas changé depuis le dernier calcul, telles
+ * qu'enregistrées dans l'utilisateur avec ses offres ;</li>
+ * <li>un utilisateur dont le recalcul est programmé reste épinglé dans le stockage jusqu'à la fin du calcul.</li>
+ * </ul>
+ */
+public class TripDealRefresher {
+
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 2_000;
+	public static final int DEFAULT_WORKERS = 4;
+	public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+	// Recalcul programmé d'un utilisateur : seul le calcul correspondant à l'entrée courante la retire
+	private static final class PendingRefresh {
+		private ScheduledFuture<?> future;
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(TripDealRefresher.class);
+	private final Function<User, List<Provider>> pricer;
+	private final UserPinning userPinning;
+	private final long debounceMillis;
+	private final ScheduledExecutorService debouncer;
+	private final ThreadPoolExecutor workers;
+	private final Map<String, PendingRefresh> pending = new ConcurrentHashMap<>();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder skippedRefreshes = new LongAdder();
+	private final LongAdder rejectedRefreshes = new LongAdder();
+
+	public TripDealRefresher(Function<User, List<Provider>> pricer, UserPinning userPinning) {
+		this(pricer, userPinning, DEFAULT_DEBOUNCE_MILLIS, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public TripDealRefresher(Function<User, List<Provider>> pricer, long debounceMillis, int workerCount,
+			int queueCapacity) {
+		this(pricer, UserPinning.NONE, debounceMillis, workerCount, queueCapacity);
+	}
+
+	/**
+	 * @param pricer         Le calcul des offres d'un utilisateur, qui les enregistre dans l'utilisateur avec
+	 *                       leurs données de tarification.
+	 * @param userPinning    L'épinglage des utilisateurs dont un recalcul est programmé.
+	 * @param debounceMillis Le délai sans nouveau changement avant le recalcul.
+	 * @param workerCount    Le nombre de calculs simultanés.
+	 * @param queueCapacity  Le nombre maximal de calculs en attente.
+	 */
+	public TripDealRefresher(Function<User, List<Provider>> pricer, UserPinning userPinning, long debounceMillis,
+			int workerCount, int queueCapacity) {
+		this.pricer = pricer;
+		this.userPinning = userPinning;
+		this.debounceMillis = debounceMillis;
+		this.debouncer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "trip-deals-debouncer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		((ScheduledThreadPoolExecutor) debouncer).setRemoveOnCancelPolicy(true);
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "trip-deals-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Calcule immédiatement les offres d'un utilisateur, par le thread appelant.
+	 *
+	 * @return Les offres calculées.
+	 */
+	public List<Provider> refreshNow(User user) {
+		cancelPending(user);
+		List<Provider> providers = pricer.apply(user);
+		refreshes.increment();
+		return providers;
+	}
+
+	/**
+	 * Programme le recalcul des offres d'un utilisateur après le délai de regroupement, si elles ont déjà été
+	 * calculées une fois et que ses données de tarification ont changé. Un recalcul déjà programmé est reporté.
+	 */
+	public void refreshIfChanged(User user) {
+		if (user.getTripDealsComputedAt() == null || !isStale(user)) {
+			return;
+		}
+		pending.compute(user.getUserName(), (name, scheduled) -> {
+			// épinglé à la programmation du premier recalcul, libéré quand il n'y en a plus
+			User pinned = scheduled == null ? userPinning.pin(user) : user;
+			if (scheduled != null) {
+				scheduled.future.cancel(false);
+			}
+			PendingRefresh refresh = new PendingRefresh();
+			try {
+				refresh.future = debouncer.schedule(() -> submit(pinned, refresh), debounceMillis,
+						TimeUnit.MILLISECONDS);
+				return refresh;
+			} catch (RejectedExecutionException e) {
+				userPinning.unpin(pinned);
+				return null;
+			}
+		});
+	}
+
+	private void submit(User user, PendingRefresh refresh) {
+		try {
+			workers.execute(() -> {
+				try {
+					if (!isStale(user)) {
+						skippedRefreshes.increment();
+						return;
+					}
+					refreshNow(user);
+				} catch (RuntimeException e) {
+					// TripPricer indisponible : le calcul sera relancé au prochain changement ou à la prochaine consultation
+					logger.debug("Trip deals refresh failed for " + user.getUserName() + ": " + e);
+				} finally {
+					removePending(user, refresh);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			removePending(user, refresh);
+			rejectedRefreshes.increment();
+		}
+	}
+
+	// Un recalcul reprogrammé pendant ce calcul reste en attente, avec l'épinglage de l'utilisateur
+	private void removePending(User user, PendingRefresh refresh) {
+		if (pending.remove(user.getUserName(), refresh)) {
+			userPinning.unpin(user);
+		}
+	}
+
+	/**
+	 * @return true si les données de tarification ont changé depuis le dernier calcul des offres.
+	 */
+	public boolean isStale(User user) {
+		return !TripDealInputs.of(user).equals(user.getTripDealInputs());
+	}
+
+	public boolean isRefreshPending(User user) {
+		return pending.containsKey(user.getUserName());
+	}
+
+	private void cancelPending(User user) {
+		PendingRefresh scheduled = pending.remove(user.getUserName());
+		if (scheduled != null) {
+			scheduled.future.cancel(false);
+			userPinning.unpin(user);
+		}
+	}
+
+	public long getRefreshCount() {
+		return refreshes.sum();
+	}
+
+	/**
+	 * @return Le nombre de recalculs évités car les données de tarification étaient revenues à leur valeur calculée.
+	 */
+	public long getSkippedRefreshCount() {
+		return skippedRefreshes.sum();
+	}
+
+	public long getRejectedRefreshCount() {
+		return rejectedRefreshes.sum();
+	}
+
+	public void shutdown() {
+		debouncer.shutdownNow();
+		workers.shutdownNow();
+	}
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.event.RewardListener;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.model.UserView;
+
+/**
+ * Modèle de lecture des utilisateurs : les endpoints lisent un instantané immuable de chaque utilisateur
+ * ({@link UserView}) au lieu des listes modifiées par le suivi et les récompenses.
+ * <ul>
+ * <li>les écritures sont regroupées : un instantané est publié une fois par localisation suivie et une fois par
+ * évaluation des récompenses, quel que soit le nombre de récompenses attribuées ;</li>
+ * <li>une lecture ne fait qu'une lecture volatile tant que l'instantané correspond à la version de
+ * l'utilisateur ; il n'est reconstruit que si l'utilisateur a été modifié sans publication.</li>
+ * </ul>
+ */
+public class UserReadModel implements RewardListener {
+
+	private final RewardsService rewardsService;
+	private final LongAdder published = new LongAdder();
+	private final LongAdder rebuiltOnRead = new LongAdder();
+
+	public UserReadModel(RewardsService rewardsService) {
+		this.rewardsService = rewardsService;
+	}
+
+	/**
+	 * Construit et publie l'instantané courant d'un utilisateur.
+	 *
+	 * @return L'instantané publié.
+	 */
+	public UserView publish(User user) {
+		// La version est lue avant l'état : une modification concurrente rendra l'instantané périmé
+		long version = user.getVersion();
+		List<VisitedLocation> last = user.getLastVisitedLocations(1);
+		VisitedLocation lastLocation = last.isEmpty() ? null : last.get(0);
+		List<UserReward> rewards = user.copyUserRewards();
+		List<Integer> nearest = List.of();
+		if (lastLocation != null) {
+			AttractionIndex index = rewardsService.getAttractionIndex();
+			nearest = Arrays.stream(index.nearest(lastLocation.location, 5))
+					.mapToObj(i -> AttractionRegistry.intern(index.get(i)))
+					.toList();
+		}
+		UserView view = new UserView(version, lastLocation, rewards,
+				rewards.stream().mapToInt(UserReward::getRewardPoints).sum(), nearest);
+		user.publishView(view);
+		published.increment();
+		return view;
+	}
+
+	/**
+	 * @return L'instantané courant de l'utilisateur, reconstruit seulement s'il est absent ou périmé.
+	 */
+	public UserView view(User user) {
+		UserView view = user.getView();
+		if (view != null && view.version() == user.getVersion()) {
+			return view;
+		}
+		rebuiltOnRead.increment();
+		return publish(user);
+	}
+
+	@Override
+	public void rewardAdded(User user, UserReward userReward) {
+		// publication regroupée à la fin de l'évaluation, dans rewardsUpdated
+	}
+
+	@Override
+	public void rewardsUpdated(User user) {
+		publish(user);
+	}
+
+	public long getPublishedCount() {
+		return published.sum();
+	}
+
+	/**
+	 * @return Le nombre d'instantanés reconstruits lors d'une lecture, faute de publication après une modification.
+	 */
+	public long getRebuiltOnReadCount() {
+		return rebuiltOnRead.sum();
+	}
+}
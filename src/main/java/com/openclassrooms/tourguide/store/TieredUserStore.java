@@ -0,0 +1,498 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.serialization.UserSnapshotCodec;
+
+/**
+ * Stockage des utilisateurs à deux niveaux : un cache borné des utilisateurs récemment consultés (éviction LRU)
+ * et un stockage local sur disque, un instantané CBOR par utilisateur.
+ * <ul>
+ * <li>un utilisateur absent du cache est chargé depuis le disque au premier accès ;</li>
+ * <li>un utilisateur évincé n'est réécrit que s'il a été modifié depuis son dernier enregistrement
+ * (version différente), et l'écriture a lieu hors du verrou du cache ;</li>
+ * <li>chaque consultation est horodatée, ce qui permet de ne suivre que les utilisateurs actifs ;</li>
+ * <li>les traitements de masse parcourent les utilisateurs sans les placer dans le cache
+ * ({@link #scan(String, Consumer)}), ce qui n'en évince pas les utilisateurs actifs ;</li>
+ * <li>un utilisateur retenu par un traitement en cours (récompenses, rattrapage, offres, abonnement) est épinglé
+ * et n'est pas évincé : sans cela, ses modifications ultérieures seraient perdues au rechargement d'une copie
+ * depuis le disque.</li>
+ * </ul>
+ * Sans répertoire, le stockage est purement en mémoire et non borné.
+ * La capacité du cache doit dépasser le nombre d'utilisateurs actifs, faute de quoi des utilisateurs encore
+ * suivis seraient évincés puis rechargés à chaque cycle.
+ */
+public class TieredUserStore {
+
+	private static final class HotUser {
+		private final User user;
+		private volatile long persistedVersion;
+		private volatile long lastAccessMillis;
+
+		private HotUser(User user, long persistedVersion, long lastAccessMillis) {
+			this.user = user;
+			this.persistedVersion = persistedVersion;
+			this.lastAccessMillis = lastAccessMillis;
+		}
+
+		private boolean isDirty() {
+			return user.getVersion() != persistedVersion;
+		}
+	}
+
+	private static final String SNAPSHOT_EXTENSION = ".cbor";
+
+	private final Logger logger = LoggerFactory.getLogger(TieredUserStore.class);
+	private final UserSnapshotCodec codec;
+	private final Path directory;
+	private final int maxHotUsers;
+	private final LinkedHashMap<String, HotUser> hotUsers;
+	// Utilisateurs évincés en cours d'écriture : ils restent accessibles jusqu'à la fin de l'écriture
+	private final Map<String, HotUser> pendingWrites = new ConcurrentHashMap<>();
+	// Nombre de traitements en cours par utilisateur épinglé, protégé par le verrou du cache
+	private final Map<String, Integer> pinCounts = new HashMap<>();
+	// Copies chargées par un parcours sans passer par le cache, protégées par le verrou du cache : un accès
+	// concurrent place cette copie dans le cache plutôt que d'en charger une seconde
+	private final Map<String, HotUser> scannedUsers = new HashMap<>();
+	// Noms de tous les utilisateurs connus, en mémoire ou sur disque
+	private final Set<String> userNames = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+
+	/**
+	 * Crée un stockage en mémoire, sans limite ni disque.
+	 */
+	public TieredUserStore() {
+		this(null, null, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param codec       Le codec des instantanés d'utilisateurs.
+	 * @param directory   Le répertoire des instantanés ; les utilisateurs qui s'y trouvent déjà sont connus du stockage.
+	 * @param maxHotUsers Le nombre maximal d'utilisateurs conservés en mémoire.
+	 */
+	public TieredUserStore(UserSnapshotCodec codec, Path directory, int maxHotUsers) {
+		this.codec = codec;
+		this.directory = directory;
+		this.maxHotUsers = maxHotUsers;
+		this.hotUsers = new LinkedHashMap<>(16, 0.75f, true);
+		if (directory != null) {
+			try {
+				Files.createDirectories(directory);
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_EXTENSION)) {
+					files.forEach(file -> userNames.add(userNameOf(file)));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			logger.debug("Found " + userNames.size() + " stored users in " + directory);
+		}
+	}
+
+	/**
+	 * Retourne un utilisateur et l'horodate comme actif, en le chargeant depuis le disque si nécessaire.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 * @return L'utilisateur, ou null s'il est inconnu.
+	 */
+	public User get(String userName) {
+		HotUser hotUser = hydrate(userName, true);
+		return hotUser == null ? null : hotUser.user;
+	}
+
+	/**
+	 * Retourne l'instance courante d'un utilisateur sans l'horodater comme actif (utilisé par le suivi).
+	 * Une instance évincée entre-temps est remplacée par celle du stockage.
+	 *
+	 * @param user L'utilisateur.
+	 * @return L'instance courante de l'utilisateur.
+	 */
+	public User resolve(User user) {
+		HotUser hotUser = hydrate(user.getUserName(), false);
+		return hotUser == null ? user : hotUser.user;
+	}
+
+	/**
+	 * Ajoute un nouvel utilisateur.
+	 *
+	 * @param user L'utilisateur à ajouter.
+	 * @return false si un utilisateur de même nom existe déjà.
+	 */
+	public boolean add(User user) {
+		if (!userNames.add(user.getUserName())) {
+			return false;
+		}
+		// Un nouvel utilisateur n'a jamais été enregistré : il est écrit lors de son éviction
+		promote(new HotUser(user, -1, System.currentTimeMillis()));
+		return true;
+	}
+
+	/**
+	 * Retourne un utilisateur sans l'horodater comme actif, en le chargeant depuis le disque si nécessaire.
+	 * L'utilisateur est placé dans le cache : les traitements de masse utilisent {@link #scan(String, Consumer)}.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 * @return L'utilisateur, ou null s'il est inconnu.
+	 */
+	public User find(String userName) {
+		HotUser hotUser = hydrate(userName, false);
+		return hotUser == null ? null : hotUser.user;
+	}
+
+	/**
+	 * Épingle un utilisateur le temps d'un traitement : il n'est pas évincé avant l'appel de {@link #unpin(String)}
+	 * correspondant. Le traitement doit utiliser l'instance retournée.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 * @return L'instance courante de l'utilisateur, ou null s'il est inconnu (rien n'est alors épinglé).
+	 */
+	public User pin(String userName) {
+		if (directory == null) {
+			// sans disque, aucun utilisateur n'est évincé
+			return find(userName);
+		}
+		synchronized (hotUsers) {
+			pinCounts.merge(userName, 1, Integer::sum);
+		}
+		// épinglé avant d'être placé dans le cache : il ne peut plus en être évincé
+		HotUser hotUser = hydrate(userName, false);
+		if (hotUser == null) {
+			unpin(userName);
+			return null;
+		}
+		return hotUser.user;
+	}
+
+	/**
+	 * Libère un utilisateur épinglé par {@link #pin(String)} ; il peut de nouveau être évincé.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 */
+	public void unpin(String userName) {
+		if (directory == null) {
+			return;
+		}
+		List<HotUser> evicted;
+		synchronized (hotUsers) {
+			if (pinCounts.computeIfPresent(userName, (name, count) -> count > 1 ? count - 1 : null) != null) {
+				return;
+			}
+			// les évictions reportées tant que l'utilisateur était épinglé ont lieu maintenant
+			evicted = evictOverflow(null);
+		}
+		writeEvicted(evicted);
+	}
+
+	public boolean isPinned(String userName) {
+		synchronized (hotUsers) {
+			return pinCounts.containsKey(userName);
+		}
+	}
+
+	/**
+	 * Applique un traitement à un utilisateur sans le placer dans le cache ni l'horodater comme actif
+	 * (utilisé par les traitements de masse). Un utilisateur absent du cache est chargé depuis le disque le temps
+	 * du traitement, puis réécrit s'il a été modifié ; un utilisateur en mémoire est épinglé pendant le traitement.
+	 *
+	 * @param userName Le nom de l'utilisateur.
+	 * @param action   Le traitement.
+	 * @return false si l'utilisateur est inconnu.
+	 */
+	public boolean scan(String userName, Consumer<User> action) {
+		if (directory == null || isHot(userName) || pendingWrites.containsKey(userName)) {
+			return applyPinned(userName, action);
+		}
+		if (!userNames.contains(userName)) {
+			return false;
+		}
+		HotUser scanned = load(userName);
+		boolean registered;
+		synchronized (hotUsers) {
+			// chargé entre-temps par un autre thread : son instance est utilisée
+			registered = !hotUsers.containsKey(userName) && !pendingWrites.containsKey(userName)
+					&& scannedUsers.putIfAbsent(userName, scanned) == null;
+		}
+		if (!registered) {
+			return applyPinned(userName, action);
+		}
+		try {
+			action.accept(scanned.user);
+			if (scanned.isDirty()) {
+				write(scanned);
+			}
+		} finally {
+			synchronized (hotUsers) {
+				scannedUsers.remove(userName);
+			}
+		}
+		return true;
+	}
+
+	private boolean applyPinned(String userName, Consumer<User> action) {
+		User user = pin(userName);
+		if (user == null) {
+			return false;
+		}
+		try {
+			action.accept(user);
+		} finally {
+			unpin(userName);
+		}
+		return true;
+	}
+
+	private boolean isHot(String userName) {
+		synchronized (hotUsers) {
+			return hotUsers.containsKey(userName);
+		}
+	}
+
+	/**
+	 * Parcourt tous les utilisateurs un par un, par ordre de nom, sans constituer la liste de tous les utilisateurs
+	 * (contrairement à {@link #getAll()}).
+	 *
+	 * @param action Le traitement appliqué à chaque utilisateur.
+	 */
+	public void forEach(Consumer<User> action) {
+		for (String userName : getUserNames()) {
+			HotUser hotUser = hydrate(userName, false);
+			if (hotUser != null) {
+				action.accept(hotUser.user);
+			}
+		}
+	}
+
+	/**
+	 * @return Les noms de tous les utilisateurs connus, triés, sans charger les utilisateurs stockés sur disque.
+	 */
+	public List<String> getUserNames() {
+		List<String> names = new ArrayList<>(userNames);
+		names.sort(null);
+		return names;
+	}
+
+	public boolean contains(String userName) {
+		return userNames.contains(userName);
+	}
+
+	public int size() {
+		return userNames.size();
+	}
+
+	/**
+	 * Retourne tous les utilisateurs. Les utilisateurs absents du cache sont chargés depuis le disque :
+	 * avec un grand nombre d'utilisateurs stockés, préférer {@link #forEach(Consumer)} ou
+	 * {@link #getActiveUsers(long)}.
+	 *
+	 * @return La liste de tous les utilisateurs.
+	 */
+	public List<User> getAll() {
+		List<User> users = new ArrayList<>(userNames.size());
+		for (String userName : userNames) {
+			HotUser hotUser = hydrate(userName, false);
+			if (hotUser != null) {
+				users.add(hotUser.user);
+			}
+		}
+		return users;
+	}
+
+	/**
+	 * Retourne les utilisateurs en mémoire consultés pendant la fenêtre d'activité.
+	 *
+	 * @param windowMillis La fenêtre d'activité ; 0 pour tous les utilisateurs.
+	 * @return La liste des utilisateurs actifs.
+	 */
+	public List<User> getActiveUsers(long windowMillis) {
+		if (windowMillis <= 0) {
+			return getAll();
+		}
+		long since = System.currentTimeMillis() - windowMillis;
+		List<User> users = new ArrayList<>();
+		synchronized (hotUsers) {
+			for (HotUser hotUser : hotUsers.values()) {
+				if (hotUser.lastAccessMillis >= since) {
+					users.add(hotUser.user);
+				}
+			}
+		}
+		return users;
+	}
+
+	/**
+	 * @return true si l'utilisateur a été consulté pendant la fenêtre d'activité (toujours vrai si elle vaut 0).
+	 */
+	public boolean isActive(User user, long windowMillis) {
+		if (windowMillis <= 0) {
+			return true;
+		}
+		HotUser hotUser;
+		synchronized (hotUsers) {
+			hotUser = hotUsers.get(user.getUserName());
+		}
+		if (hotUser == null) {
+			hotUser = pendingWrites.get(user.getUserName());
+		}
+		return hotUser != null && hotUser.lastAccessMillis >= System.currentTimeMillis() - windowMillis;
+	}
+
+	/**
+	 * Enregistre sur disque tous les utilisateurs en mémoire modifiés depuis leur dernier enregistrement.
+	 */
+	public void flush() {
+		if (directory == null) {
+			return;
+		}
+		List<HotUser> dirtyUsers = new ArrayList<>();
+		synchronized (hotUsers) {
+			for (HotUser hotUser : hotUsers.values()) {
+				if (hotUser.isDirty()) {
+					dirtyUsers.add(hotUser);
+				}
+			}
+		}
+		dirtyUsers.forEach(this::write);
+	}
+
+	private HotUser hydrate(String userName, boolean markActive) {
+		HotUser hotUser;
+		synchronized (hotUsers) {
+			hotUser = hotUsers.get(userName);
+		}
+		if (hotUser == null) {
+			if (!userNames.contains(userName)) {
+				return null;
+			}
+			hotUser = pendingWrites.get(userName);
+			if (hotUser == null) {
+				hotUser = load(userName);
+			}
+			hotUser = promote(hotUser);
+		}
+		if (markActive) {
+			hotUser.lastAccessMillis = System.currentTimeMillis();
+		}
+		return hotUser;
+	}
+
+	private HotUser load(String userName) {
+		try {
+			User user = codec.read(fileOf(userName));
+			loads.incrementAndGet();
+			return new HotUser(user, user.getVersion(), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Place l'utilisateur dans le cache (sauf si un autre thread l'y a placé entre-temps), puis enregistre les évincés
+	private HotUser promote(HotUser candidate) {
+		String userName = candidate.user.getUserName();
+		HotUser hotUser;
+		List<HotUser> evicted;
+		synchronized (hotUsers) {
+			HotUser scanned = scannedUsers.get(userName);
+			if (scanned != null) {
+				candidate = scanned;
+			}
+			hotUser = hotUsers.putIfAbsent(userName, candidate);
+			if (hotUser == null) {
+				hotUser = candidate;
+			}
+			evicted = evictOverflow(userName);
+		}
+		writeEvicted(evicted);
+		return hotUser;
+	}
+
+	// Évince les utilisateurs les moins récemment consultés au-delà de la capacité, sauf les utilisateurs épinglés
+	// et celui qui vient d'être consulté (appelée sous le verrou du cache) ; retourne les évincés modifiés,
+	// à enregistrer hors du verrou
+	private List<HotUser> evictOverflow(String accessedUserName) {
+		List<HotUser> evicted = new ArrayList<>();
+		Iterator<Map.Entry<String, HotUser>> eldest = hotUsers.entrySet().iterator();
+		while (hotUsers.size() > maxHotUsers && eldest.hasNext()) {
+			Map.Entry<String, HotUser> entry = eldest.next();
+			if (pinCounts.containsKey(entry.getKey()) || entry.getKey().equals(accessedUserName)) {
+				continue;
+			}
+			HotUser hotUser = entry.getValue();
+			eldest.remove();
+			evictions.incrementAndGet();
+			if (hotUser.isDirty()) {
+				pendingWrites.put(hotUser.user.getUserName(), hotUser);
+				evicted.add(hotUser);
+			}
+		}
+		return evicted;
+	}
+
+	private void writeEvicted(List<HotUser> evicted) {
+		for (HotUser evictedUser : evicted) {
+			write(evictedUser);
+			pendingWrites.remove(evictedUser.user.getUserName(), evictedUser);
+		}
+	}
+
+	private void write(HotUser hotUser) {
+		long version = hotUser.user.getVersion();
+		try {
+			codec.write(hotUser.user, fileOf(hotUser.user.getUserName()));
+			hotUser.persistedVersion = version;
+			writes.incrementAndGet();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Path fileOf(String userName) {
+		return directory.resolve(URLEncoder.encode(userName, StandardCharsets.UTF_8) + SNAPSHOT_EXTENSION);
+	}
+
+	private static String userNameOf(Path file) {
+		String fileName = file.getFileName().toString();
+		return URLDecoder.decode(fileName.substring(0, fileName.length() - SNAPSHOT_EXTENSION.length()),
+				StandardCharsets.UTF_8);
+	}
+
+	public int getHotUserCount() {
+		synchronized (hotUsers) {
+			return hotUsers.size();
+		}
+	}
+
+	public long getLoadCount() {
+		return loads.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getWriteCount() {
+		return writes.get();
+	}
+}
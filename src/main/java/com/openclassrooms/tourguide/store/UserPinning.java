@@ -0,0 +1,33 @@
+package com.openclassrooms.tourguide.store;
+
+import com.openclassrooms.tourguide.model.User;
+
+/**
+ * Épinglage des utilisateurs retenus par un traitement asynchrone : un utilisateur épinglé n'est pas évincé
+ * du stockage (voir {@link TieredUserStore#pin(String)}), ce qui garantit que ses modifications portent sur
+ * l'instance du stockage.
+ */
+public interface UserPinning {
+
+	/**
+	 * Épinglage sans effet, pour les traitements sans stockage borné.
+	 */
+	UserPinning NONE = new UserPinning() {
+		@Override
+		public User pin(User user) {
+			return user;
+		}
+
+		@Override
+		public void unpin(User user) {
+		}
+	};
+
+	/**
+	 * @param user L'utilisateur à épingler.
+	 * @return L'instance courante de l'utilisateur, à utiliser par le traitement.
+	 */
+	User pin(User user);
+
+	void unpin(User user);
+}
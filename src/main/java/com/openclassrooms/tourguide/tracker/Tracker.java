@@ -1,28 +1,49 @@
 package com.openclassrooms.tourguide.tracker;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
 
+import com.openclassrooms.tourguide.event.RewardsEventBus;
+import com.openclassrooms.tourguide.profiling.TrackerCycleEvent;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
 /**
  * Cette classe est responsable du suivi continu de la localisation des utilisateurs.
+ * Le suivi ne démarre qu'à l'appel de {@link #startTracking(long)} : directement par TourGuideService
+ * en démarrage immédiat, ou par le cycle de vie du contexte Spring (bean {@link SmartLifecycle}).
  */
 //Le Tracking devra être optimisé et être asynchrone, afin d’atteindre 100 000 emplacements dans un
 //délai de 15 minutes (via la librairie gpsUtil), ainsi qu’une mise à jour des Rewards avec l’attribution
 //de 100 000 récompenses en moins de 20 minutes (via la librairie RewardsCentral).
-public class Tracker extends Thread {
+public class Tracker implements Runnable, SmartLifecycle {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
+	// Intervalle entre deux consultations de l'ordonnanceur (réglable à chaud)
+	private volatile long trackingTickInterval = TimeUnit.SECONDS.toMillis(1);
+	// Nombre maximal d'utilisateurs suivis par cycle (0 : pas de limite)
+	private volatile int maxUsersPerCycle = 0;
+	// État du cycle courant, exposé par l'endpoint actuator du tracker
+	private final AtomicLong cycleNumber = new AtomicLong();
+	private final AtomicInteger cycleCompleted = new AtomicInteger();
+	private volatile int cycleUsers;
+	private volatile long cycleStartedAtMillis;
+	private volatile long lastCycleDurationMillis;
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final TrackingScheduler scheduler;
+	private volatile boolean stop = false;
+	private volatile boolean started = false;
+	// Délai avant le premier cycle lorsque le suivi est démarré par le contexte Spring
+	private volatile long initialDelayMillis = 0;
 
 
 	/**
@@ -32,7 +53,21 @@ public class Tracker extends Thread {
 	 */
 	public Tracker(TourGuideService tourGuideService) {
 		this.tourGuideService = tourGuideService;
+		this.scheduler = new TrackingScheduler(tourGuideService.getRewardsService());
+		tourGuideService.getTrackedUsers().forEach(scheduler::register);
+	}
 
+	/**
+	 * Méthode permettant de démarrer le suivi. Sans effet si le suivi a déjà été démarré.
+	 *
+	 * @param delayMillis Le délai avant le premier cycle de suivi.
+	 */
+	public synchronized void startTracking(long delayMillis) {
+		if (started || stop) {
+			return;
+		}
+		started = true;
+		initialDelayMillis = delayMillis;
 		executorService.submit(this);
 	}
 
@@ -44,29 +79,144 @@ public class Tracker extends Thread {
 		executorService.shutdownNow();
 	}
 
+	public void setInitialDelayMillis(long initialDelayMillis) {
+		this.initialDelayMillis = initialDelayMillis;
+	}
+
+	public long getTrackingTickInterval() {
+		return trackingTickInterval;
+	}
+
+	public void setTrackingTickInterval(long trackingTickInterval) {
+		this.trackingTickInterval = trackingTickInterval;
+	}
+
+	public int getMaxUsersPerCycle() {
+		return maxUsersPerCycle;
+	}
+
+	public void setMaxUsersPerCycle(int maxUsersPerCycle) {
+		this.maxUsersPerCycle = maxUsersPerCycle;
+	}
+
+	public long getCycleNumber() {
+		return cycleNumber.get();
+	}
+
+	public int getCycleUsers() {
+		return cycleUsers;
+	}
+
+	public int getCycleCompleted() {
+		return cycleCompleted.get();
+	}
+
+	public long getCycleStartedAtMillis() {
+		return cycleStartedAtMillis;
+	}
+
+	public long getLastCycleDurationMillis() {
+		return lastCycleDurationMillis;
+	}
+
+	// Cycle de vie Spring : le suivi démarre une fois le contexte rafraîchi et s'arrête avec lui
+
+	@Override
+	public void start() {
+		startTracking(initialDelayMillis);
+	}
+
+	@Override
+	public void stop() {
+		stopTracking();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return started && !stop;
+	}
+
+	/**
+	 * Méthode permettant d'obtenir l'ordonnanceur du suivi (intervalles, plafond d'appels à gpsUtil).
+	 *
+	 * @return L'ordonnanceur du suivi.
+	 */
+	public TrackingScheduler getScheduler() {
+		return scheduler;
+	}
+
 	@Override
 	public void run() {
 		StopWatch stopWatch = new StopWatch(); // Crée un chronomètre pour mesurer le temps d'exécution
+		try {
+			TimeUnit.MILLISECONDS.sleep(initialDelayMillis); // Diffère le premier cycle (démarrage de l'application)
+		} catch (InterruptedException e) {
+			return;
+		}
 		while (true) { // Boucle infinie pour exécuter le suivi en continu
 			if (Thread.currentThread().isInterrupted() || stop) { // Vérifie si le thread a été interrompu ou si le suivi doit s'arrêter
 				logger.debug("Tracker stopping"); // Journalise l'arrêt du suivi
 				break; // Sort de la boucle
 			}
 
-			List<User> users = tourGuideService.getAllUsers(); // Récupère la liste de tous les utilisateurs
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users."); // Journalise le début du suivi avec le nombre d'utilisateurs
-			stopWatch.start(); // Démarre le chronomètre
-			users.forEach(u -> tourGuideService.trackUserLocation(u)); // Parcourt chaque utilisateur et suit sa localisation
-			stopWatch.stop(); // Arrête le chronomètre
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); // Journalise le temps écoulé pour le suivi
-			stopWatch.reset(); // Réinitialise le chronomètre pour la prochaine itération
+			List<User> users = scheduler.pollDue(System.currentTimeMillis(),
+					maxUsersPerCycle > 0 ? maxUsersPerCycle : Integer.MAX_VALUE); // Récupère les utilisateurs dont le suivi est dû
+			users.replaceAll(tourGuideService::resolveUser); // Remplace les instances évincées de la mémoire depuis leur planification
+			users.removeIf(this::forgetIfRemoteOrInactive); // Ne suit que les utilisateurs actifs de la partition de ce nœud
+			if (!users.isEmpty()) {
+				logger.debug("Begin Tracker. Tracking " + users.size() + " users, " + scheduler.getQueuedCount()
+						+ " scheduled."); // Journalise le début du suivi avec le nombre d'utilisateurs
+				TrackerCycleEvent cycleEvent = new TrackerCycleEvent(); // Événement JFR couvrant le cycle
+				cycleEvent.setUsers(users.size());
+				cycleEvent.start();
+				cycleNumber.incrementAndGet();
+				cycleCompleted.set(0);
+				cycleUsers = users.size();
+				cycleStartedAtMillis = System.currentTimeMillis();
+				stopWatch.start(); // Démarre le chronomètre
+				CompletableFuture.allOf(users.stream()
+						.map(this::trackAndReschedule)
+						.toArray(CompletableFuture[]::new))
+						.join(); // Suit la localisation de chaque utilisateur en parallèle
+				stopWatch.stop(); // Arrête le chronomètre
+				cycleEvent.finish();
+				lastCycleDurationMillis = stopWatch.getTime();
+				logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); // Journalise le temps écoulé pour le suivi
+				RewardsEventBus rewardsEventBus = tourGuideService.getRewardsEventBus();
+				logger.debug("Rewards backlog: " + rewardsEventBus.getBacklog() + " events, lag: "
+						+ rewardsEventBus.getLastLagMillis() + " ms."); // Journalise le retard du calcul des récompenses
+				stopWatch.reset(); // Réinitialise le chronomètre pour la prochaine itération
+			}
 			try {
-				logger.debug("Tracker sleeping"); // Journalise que le suivi est en pause
-				TimeUnit.SECONDS.sleep(trackingPollingInterval); // Met le thread en pause pendant un intervalle de temps
+				TimeUnit.MILLISECONDS.sleep(trackingTickInterval); // Met le thread en pause jusqu'à la prochaine consultation
 			} catch (InterruptedException e) { // Gère les interruptions du sommeil
 				break; // Sort de la boucle
 			}
 		}
 	}
 
+	// Un utilisateur inactif sera de nouveau planifié lors de sa prochaine consultation ; sa présence autour
+	// des attractions n'est plus tenue à jour, elle est donc retirée
+	private boolean forgetIfRemoteOrInactive(User user) {
+		if (tourGuideService.isLocalUser(user) && tourGuideService.isActiveUser(user)) {
+			return false;
+		}
+		scheduler.forget(user);
+		tourGuideService.forgetUserPresence(user);
+		return true;
+	}
+
+	// Suit un utilisateur puis le replanifie, y compris si gpsUtil est indisponible
+	private CompletableFuture<Void> trackAndReschedule(User user) {
+		return tourGuideService.trackUserLocationAsync(user)
+				.handle((ignored, error) -> {
+					if (error != null) {
+						logger.debug("Unable to track user " + user.getUserName() + ": " + error.getMessage());
+					}
+					scheduler.reschedule(user, System.currentTimeMillis());
+					cycleCompleted.incrementAndGet();
+					return null;
+				});
+	}
+
 }
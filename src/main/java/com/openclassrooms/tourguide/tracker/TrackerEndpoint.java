@@ -0,0 +1,216 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.tourguide.event.RewardsEventBus;
+import com.openclassrooms.tourguide.resilience.ResiliencePolicy;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Endpoint actuator d'observation et de réglage à chaud du suivi et des récompenses :
+ *
+ * <pre>
+ * GET  /actuator/tracker    état du cycle courant, de l'ordonnanceur, des pools et des bibliothèques externes
+ * POST /actuator/tracker    réglage, par exemple {"trackingTickInterval":500,"trackingPoolSize":40}
+ * </pre>
+ *
+ * Seuls les paramètres présents dans la requête sont modifiés ; la réponse décrit l'état après réglage.
+ * Tous les paramètres sont validés avant d'en appliquer un seul : une requête contenant une valeur invalide
+ * est refusée (400) sans rien modifier.
+ */
+@Component
+@Endpoint(id = "tracker")
+public class TrackerEndpoint {
+
+	private final TourGuideService tourGuideService;
+
+	public TrackerEndpoint(TourGuideService tourGuideService) {
+		this.tourGuideService = tourGuideService;
+	}
+
+	@ReadOperation
+	public Map<String, Object> status() {
+		Tracker tracker = tourGuideService.tracker;
+		TrackingScheduler scheduler = tracker.getScheduler();
+		RewardsService rewardsService = tourGuideService.getRewardsService();
+		RewardsEventBus rewardsEventBus = tourGuideService.getRewardsEventBus();
+
+		Map<String, Object> cycle = new LinkedHashMap<>();
+		cycle.put("running", tracker.isRunning());
+		cycle.put("number", tracker.getCycleNumber());
+		cycle.put("users", tracker.getCycleUsers());
+		cycle.put("completed", tracker.getCycleCompleted());
+		cycle.put("inFlight", tracker.getCycleUsers() - tracker.getCycleCompleted());
+		cycle.put("startedAtMillis", tracker.getCycleStartedAtMillis());
+		cycle.put("lastDurationMillis", tracker.getLastCycleDurationMillis());
+		cycle.put("trackingTickInterval", tracker.getTrackingTickInterval());
+		cycle.put("maxUsersPerCycle", tracker.getMaxUsersPerCycle());
+
+		Map<String, Object> schedule = new LinkedHashMap<>();
+		schedule.put("queuedUsers", scheduler.getQueuedCount());
+		schedule.put("knownUsers", scheduler.getKnownUserCount());
+		schedule.put("minIntervalMillis", scheduler.getMinIntervalMillis());
+		schedule.put("maxIntervalMillis", scheduler.getMaxIntervalMillis());
+		schedule.put("minSpeedMph", scheduler.getMinSpeedMph());
+		schedule.put("maxGpsCallsPerMinute", scheduler.getMaxGpsCallsPerMinute());
+
+		Map<String, Object> rewards = new LinkedHashMap<>();
+		rewards.put("proximityBuffer", rewardsService.getProximityBuffer());
+		rewards.put("evaluations", rewardsService.getEvaluatedCount());
+		rewards.put("skippedEvaluations", rewardsService.getSkippedEvaluationCount());
+		rewards.put("workers", rewardsEventBus.getWorkerCount());
+		rewards.put("backlog", rewardsEventBus.getBacklog());
+		rewards.put("processedByCaller", rewardsEventBus.getProcessedByCallerCount());
+		rewards.put("lastLagMillis", rewardsEventBus.getLastLagMillis());
+		rewards.put("maxLagMillis", rewardsEventBus.getMaxLagMillis());
+
+		Map<String, Object> executors = new LinkedHashMap<>();
+		executors.put("tracking", describe(tourGuideService.getExecutor()));
+		executors.put("rewards", describe(rewardsService.getExecutor()));
+		ForkJoinPool matchingPool = rewardsService.getMatchingPool();
+		Map<String, Object> matching = new LinkedHashMap<>();
+		matching.put("parallelism", matchingPool.getParallelism());
+		matching.put("active", matchingPool.getActiveThreadCount());
+		matching.put("queued", matchingPool.getQueuedSubmissionCount() + matchingPool.getQueuedTaskCount());
+		matching.put("steals", matchingPool.getStealCount());
+		executors.put("matching", matching);
+
+		Map<String, Object> dependencies = new LinkedHashMap<>();
+		for (ResiliencePolicy policy : new ResiliencePolicy[] { rewardsService.getGpsUtilPolicy(),
+				rewardsService.getRewardCentralPolicy() }) {
+			dependencies.put(policy.getDependency(), describe(policy));
+		}
+
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("cycle", cycle);
+		status.put("scheduler", schedule);
+		status.put("rewards", rewards);
+		status.put("executors", executors);
+		status.put("dependencies", dependencies);
+		return status;
+	}
+
+	@WriteOperation
+	public Map<String, Object> tune(@Nullable Long trackingTickInterval, @Nullable Integer maxUsersPerCycle,
+			@Nullable Integer trackingPoolSize, @Nullable Integer rewardsPoolSize, @Nullable Integer rewardsWorkers,
+			@Nullable Integer gpsUtilMaxConcurrentCalls, @Nullable Integer rewardCentralMaxConcurrentCalls,
+			@Nullable Integer maxGpsCallsPerMinute, @Nullable Long minIntervalMillis, @Nullable Long maxIntervalMillis,
+			@Nullable Integer proximityBuffer) {
+		Tracker tracker = tourGuideService.tracker;
+		TrackingScheduler scheduler = tracker.getScheduler();
+		RewardsService rewardsService = tourGuideService.getRewardsService();
+		List<String> errors = new ArrayList<>();
+		check(errors, "trackingTickInterval", trackingTickInterval, 1);
+		check(errors, "maxUsersPerCycle", maxUsersPerCycle, 0);
+		check(errors, "trackingPoolSize", trackingPoolSize, 1);
+		check(errors, "rewardsPoolSize", rewardsPoolSize, 1);
+		check(errors, "rewardsWorkers", rewardsWorkers, 1);
+		check(errors, "gpsUtilMaxConcurrentCalls", gpsUtilMaxConcurrentCalls, 1);
+		check(errors, "rewardCentralMaxConcurrentCalls", rewardCentralMaxConcurrentCalls, 1);
+		check(errors, "maxGpsCallsPerMinute", maxGpsCallsPerMinute, 0);
+		check(errors, "minIntervalMillis", minIntervalMillis, 0);
+		check(errors, "maxIntervalMillis", maxIntervalMillis, 0);
+		check(errors, "proximityBuffer", proximityBuffer, 0);
+		long newMinInterval = minIntervalMillis != null ? minIntervalMillis : scheduler.getMinIntervalMillis();
+		long newMaxInterval = maxIntervalMillis != null ? maxIntervalMillis : scheduler.getMaxIntervalMillis();
+		if (newMinInterval > newMaxInterval) {
+			errors.add("minIntervalMillis must not exceed maxIntervalMillis");
+		}
+		if (!errors.isEmpty()) {
+			String message = String.join(", ", errors);
+			throw new InvalidEndpointRequestException(message, message);
+		}
+		if (trackingTickInterval != null) {
+			tracker.setTrackingTickInterval(trackingTickInterval);
+		}
+		if (maxUsersPerCycle != null) {
+			tracker.setMaxUsersPerCycle(maxUsersPerCycle);
+		}
+		if (trackingPoolSize != null) {
+			resize(tourGuideService.getExecutor(), trackingPoolSize);
+		}
+		if (rewardsPoolSize != null) {
+			resize(rewardsService.getExecutor(), rewardsPoolSize);
+		}
+		if (rewardsWorkers != null) {
+			tourGuideService.getRewardsEventBus().setWorkerCount(rewardsWorkers);
+		}
+		if (gpsUtilMaxConcurrentCalls != null) {
+			rewardsService.getGpsUtilPolicy().setMaxConcurrentCalls(gpsUtilMaxConcurrentCalls);
+		}
+		if (rewardCentralMaxConcurrentCalls != null) {
+			rewardsService.getRewardCentralPolicy().setMaxConcurrentCalls(rewardCentralMaxConcurrentCalls);
+		}
+		if (maxGpsCallsPerMinute != null) {
+			scheduler.setMaxGpsCallsPerMinute(maxGpsCallsPerMinute);
+		}
+		if (minIntervalMillis != null) {
+			scheduler.setMinIntervalMillis(minIntervalMillis);
+		}
+		if (maxIntervalMillis != null) {
+			scheduler.setMaxIntervalMillis(maxIntervalMillis);
+		}
+		if (proximityBuffer != null) {
+			rewardsService.setProximityBuffer(proximityBuffer);
+		}
+		return status();
+	}
+
+	private static void check(List<String> errors, String name, Number value, long min) {
+		if (value != null && value.longValue() < min) {
+			errors.add(name + " must be >= " + min);
+		}
+	}
+
+	// Pool de taille fixe : le cœur et le maximum sont modifiés dans l'ordre qui les garde cohérents
+	private static void resize(ThreadPoolExecutor executor, int poolSize) {
+		if (poolSize > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(poolSize);
+			executor.setCorePoolSize(poolSize);
+		} else {
+			executor.setCorePoolSize(poolSize);
+			executor.setMaximumPoolSize(poolSize);
+		}
+	}
+
+	private static Map<String, Object> describe(ThreadPoolExecutor executor) {
+		Map<String, Object> description = new LinkedHashMap<>();
+		description.put("poolSize", executor.getCorePoolSize());
+		description.put("active", executor.getActiveCount());
+		description.put("queued", executor.getQueue().size());
+		description.put("completed", executor.getCompletedTaskCount());
+		description.put("saturation", (double) executor.getActiveCount() / executor.getCorePoolSize());
+		return description;
+	}
+
+	private static Map<String, Object> describe(ResiliencePolicy policy) {
+		Map<String, Object> description = new LinkedHashMap<>();
+		description.put("maxConcurrentCalls", policy.getMaxConcurrentCalls());
+		description.put("availablePermits", policy.getAvailablePermits());
+		description.put("circuit", policy.getCircuitState().name());
+		description.put("calls", policy.getCallCount());
+		description.put("timeouts", policy.getTimeoutCount());
+		description.put("rejections", policy.getRejectionCount());
+		if (policy.isHedgingEnabled()) {
+			description.put("hedgeDelayMillis", policy.getHedgeDelayMillis());
+			description.put("hedges", policy.getHedgeCount());
+			description.put("hedgeWins", policy.getHedgeWinCount());
+			description.put("p99Millis", policy.getCallLatencyMillis(99));
+			description.put("p99AttemptMillis", policy.getAttemptLatencyMillis(99));
+		}
+		return description;
+	}
+}
@@ -0,0 +1,217 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import gpsUtil.location.VisitedLocation;
+
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.AttractionIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+/**
+ * Ordonnanceur du suivi des utilisateurs, basé sur une file de priorité triée par date d'échéance.
+ * L'échéance d'un utilisateur est calculée à partir de sa vitesse récente et de la distance qui le sépare
+ * de l'attraction non récompensée la plus proche : c'est le temps minimal qu'il lui faudrait pour
+ * l'atteindre. Un utilisateur immobile ou loin de toute attraction est donc suivi moins souvent
+ * qu'un utilisateur en mouvement dans une zone dense, sans jamais dépasser l'intervalle maximal.
+ * Le nombre d'appels à gpsUtil par minute peut être plafonné : les utilisateurs les plus en retard
+ * sont alors servis en premier.
+ */
+public class TrackingScheduler {
+
+	private static final class Entry {
+		private final User user;
+		private final long dueAtMillis;
+
+		private Entry(User user, long dueAtMillis) {
+			this.user = user;
+			this.dueAtMillis = dueAtMillis;
+		}
+	}
+
+	private final RewardsService rewardsService;
+	private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(e -> e.dueAtMillis));
+	// Utilisateurs connus de l'ordonnanceur (en file d'attente ou en cours de suivi)
+	private final Set<UUID> knownUsers = new HashSet<>();
+
+	private volatile long minIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+	private volatile long maxIntervalMillis = TimeUnit.MINUTES.toMillis(5);
+	// Vitesse minimale supposée (circulation urbaine), y compris pour un utilisateur immobile
+	private volatile double minSpeedMph = 30;
+	// Plafond d'appels à gpsUtil par minute (0 : pas de plafond)
+	private volatile int maxGpsCallsPerMinute = 0;
+	private double budgetTokens;
+	private long lastRefillMillis = System.currentTimeMillis();
+
+	public TrackingScheduler(RewardsService rewardsService) {
+		this.rewardsService = rewardsService;
+	}
+
+	/**
+	 * Ajoute un utilisateur à l'ordonnanceur ; il est dû immédiatement.
+	 * Un utilisateur déjà connu est ignoré.
+	 *
+	 * @param user L'utilisateur à suivre.
+	 */
+	public synchronized void register(User user) {
+		if (knownUsers.add(user.getUserId())) {
+			queue.add(new Entry(user, 0));
+		}
+	}
+
+	/**
+	 * Retire définitivement un utilisateur sorti de la file (par exemple appartenant à un autre nœud).
+	 *
+	 * @param user L'utilisateur à oublier.
+	 */
+	public synchronized void forget(User user) {
+		knownUsers.remove(user.getUserId());
+	}
+
+	/**
+	 * Replanifie un utilisateur après son suivi, selon son activité.
+	 *
+	 * @param user      L'utilisateur suivi.
+	 * @param nowMillis L'heure courante.
+	 */
+	public void reschedule(User user, long nowMillis) {
+		long interval = computeInterval(user);
+		synchronized (this) {
+			queue.add(new Entry(user, nowMillis + interval));
+		}
+	}
+
+	/**
+	 * Retire de la file les utilisateurs dont l'échéance est atteinte, dans la limite du budget d'appels.
+	 *
+	 * @param nowMillis L'heure courante.
+	 * @return Les utilisateurs à suivre, du plus en retard au moins en retard.
+	 */
+	public List<User> pollDue(long nowMillis) {
+		return pollDue(nowMillis, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Retire de la file au plus maxUsers utilisateurs dont l'échéance est atteinte, dans la limite du budget d'appels.
+	 *
+	 * @param nowMillis L'heure courante.
+	 * @param maxUsers  Le nombre maximal d'utilisateurs retournés (taille du lot).
+	 * @return Les utilisateurs à suivre, du plus en retard au moins en retard.
+	 */
+	public synchronized List<User> pollDue(long nowMillis, int maxUsers) {
+		int budget = Math.min(maxUsers, refillBudget(nowMillis));
+		List<User> due = new ArrayList<>();
+		while (due.size() < budget && !queue.isEmpty() && queue.peek().dueAtMillis <= nowMillis) {
+			due.add(queue.poll().user);
+		}
+		if (maxGpsCallsPerMinute > 0) {
+			budgetTokens -= due.size();
+		}
+		return due;
+	}
+
+	private int refillBudget(long nowMillis) {
+		if (maxGpsCallsPerMinute <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		// Seau à jetons : rechargé en continu, rafale limitée à 10 secondes de budget
+		double capacity = Math.max(1, maxGpsCallsPerMinute / 6d);
+		double refill = (nowMillis - lastRefillMillis) * maxGpsCallsPerMinute / 60_000d;
+		budgetTokens = Math.min(capacity, budgetTokens + refill);
+		lastRefillMillis = nowMillis;
+		return (int) budgetTokens;
+	}
+
+	/**
+	 * Calcule l'intervalle avant le prochain suivi : le temps minimal nécessaire à l'utilisateur,
+	 * à sa vitesse récente, pour entrer dans le rayon de l'attraction non récompensée la plus proche.
+	 */
+	long computeInterval(User user) {
+		if (!user.hasVisitedLocations()) {
+			return minIntervalMillis;
+		}
+		// Le dernier catalogue chargé suffit : son rechargement ferait un appel à gpsUtil hors du budget du suivi
+		AttractionIndex index = rewardsService.getLoadedAttractionIndex();
+		if (index == null) {
+			return minIntervalMillis;
+		}
+		VisitedLocation last = user.getLastVisitedLocation();
+		double distanceToReward = rewardsService.getDistanceToNearestUnrewardedAttraction(user, index, last.location)
+				- rewardsService.getProximityBuffer();
+		if (distanceToReward <= 0) {
+			return minIntervalMillis;
+		}
+		double speedMph = Math.max(minSpeedMph, getRecentSpeedMph(user.getLastVisitedLocations(2)));
+		long reachMillis = (long) (distanceToReward / speedMph * TimeUnit.HOURS.toMillis(1));
+		long interval = Math.max(minIntervalMillis, Math.min(maxIntervalMillis, reachMillis));
+		// Une localisation ancienne ne doit pas attendre au-delà de l'intervalle maximal
+		if (user.getLatestLocationTimestamp() != null) {
+			long staleness = System.currentTimeMillis() - user.getLatestLocationTimestamp().getTime();
+			interval = Math.max(minIntervalMillis, Math.min(interval, maxIntervalMillis - staleness));
+		}
+		return interval;
+	}
+
+	// Vitesse entre les deux dernières localisations connues, en miles par heure
+	private double getRecentSpeedMph(List<VisitedLocation> visitedLocations) {
+		int size = visitedLocations.size();
+		if (size < 2) {
+			return 0;
+		}
+		VisitedLocation previous = visitedLocations.get(size - 2);
+		VisitedLocation last = visitedLocations.get(size - 1);
+		long elapsedMillis = last.timeVisited.getTime() - previous.timeVisited.getTime();
+		if (elapsedMillis <= 0) {
+			return 0;
+		}
+		double miles = rewardsService.getDistance(previous.location, last.location);
+		return miles / elapsedMillis * TimeUnit.HOURS.toMillis(1);
+	}
+
+	public synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	public synchronized int getKnownUserCount() {
+		return knownUsers.size();
+	}
+
+	public long getMinIntervalMillis() {
+		return minIntervalMillis;
+	}
+
+	public void setMinIntervalMillis(long minIntervalMillis) {
+		this.minIntervalMillis = minIntervalMillis;
+	}
+
+	public long getMaxIntervalMillis() {
+		return maxIntervalMillis;
+	}
+
+	public void setMaxIntervalMillis(long maxIntervalMillis) {
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	public double getMinSpeedMph() {
+		return minSpeedMph;
+	}
+
+	public void setMinSpeedMph(double minSpeedMph) {
+		this.minSpeedMph = minSpeedMph;
+	}
+
+	public int getMaxGpsCallsPerMinute() {
+		return maxGpsCallsPerMinute;
+	}
+
+	public void setMaxGpsCallsPerMinute(int maxGpsCallsPerMinute) {
+		this.maxGpsCallsPerMinute = maxGpsCallsPerMinute;
+	}
+}
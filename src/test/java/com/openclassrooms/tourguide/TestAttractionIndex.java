@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.AttractionIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestAttractionIndex {
+
+	private final GpsUtil gpsUtil = new GpsUtil();
+	private final RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+	private final List<Attraction> attractions = gpsUtil.getAttractions();
+	private final AttractionIndex index = new AttractionIndex(attractions);
+
+	@Test
+	public void nearestMatchesExhaustiveSearch() {
+		Random random = new Random(42);
+		for (int n = 0; n < 500; n++) {
+			Location location = new Location(random.nextDouble() * 120 - 60, random.nextDouble() * 300 - 150);
+			int[] expected = IntStream.range(0, attractions.size()).boxed()
+					.sorted(Comparator.comparingDouble(i -> rewardsService.getDistance(attractions.get(i), location)))
+					.limit(5)
+					.mapToInt(Integer::intValue)
+					.toArray();
+
+			assertArrayEquals(expected, index.nearest(location, 5));
+			assertEquals(rewardsService.getDistance(attractions.get(expected[0]), location),
+					index.distance(expected[0], location), 1e-6);
+		}
+	}
+
+	@Test
+	public void forEachWithinMatchesExhaustiveSearch() {
+		Random random = new Random(7);
+		for (int n = 0; n < 500; n++) {
+			Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+			Location location = new Location(attraction.latitude + random.nextDouble() * 4 - 2,
+					attraction.longitude + random.nextDouble() * 4 - 2);
+			double radius = random.nextDouble() * 300;
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < attractions.size(); i++) {
+				if (rewardsService.getDistance(attractions.get(i), location) <= radius) {
+					expected.add(i);
+				}
+			}
+			List<Integer> actual = new ArrayList<>();
+			index.forEachWithin(location, radius, actual::add);
+			actual.sort(Comparator.naturalOrder());
+
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void nearestToAttractionUsesPrecomputedNeighbours() {
+		Attraction visited = attractions.get(0);
+		int[] neighbours = index.nearestToAttraction(0, 3);
+
+		assertEquals(3, neighbours.length);
+		for (int rank = 0; rank < neighbours.length; rank++) {
+			assertEquals(rewardsService.getDistance(visited, attractions.get(neighbours[rank])),
+					index.neighbourDistance(0, rank), 1e-3);
+		}
+		assertArrayEquals(index.nearest(visited, 3, i -> i != 0), neighbours);
+	}
+}
@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.AttractionPopularity;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.serialization.UserSnapshotCodec;
+import com.openclassrooms.tourguide.service.AttractionPopularityIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.store.TieredUserStore;
+
+public class TestAttractionPopularityIndex {
+
+	private static final Attraction FIRST = new Attraction("Popularity First", "", "", 10, 10);
+	private static final Attraction SECOND = new Attraction("Popularity Second", "", "", 20, 20);
+
+	private static void reward(AttractionPopularityIndex index, User user, Attraction attraction) {
+		UserReward userReward = new UserReward(
+				new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()), attraction, 10);
+		if (user.addUserReward(userReward)) {
+			index.rewardAdded(user, userReward);
+		}
+	}
+
+	@Test
+	public void rewardedUsersAreCountedAndIntersected() {
+		AttractionPopularityIndex index = new AttractionPopularityIndex();
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User jane = new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com");
+		reward(index, jon, FIRST);
+		reward(index, jon, SECOND);
+		reward(index, jane, FIRST);
+		// la même attraction n'est récompensée qu'une fois
+		reward(index, jane, FIRST);
+		int first = AttractionRegistry.intern(FIRST);
+		int second = AttractionRegistry.intern(SECOND);
+
+		assertTrue(jon.isRewardedFor(second));
+		assertFalse(jane.isRewardedFor(second));
+		assertEquals(2, index.countRewardedUsers(first));
+		assertEquals(1, index.countRewardedUsers(first, second));
+		assertEquals(List.of(new AttractionPopularity("Popularity First", 2),
+				new AttractionPopularity("Popularity Second", 1)), index.getMostPopular(10, -1));
+		assertEquals(List.of(new AttractionPopularity("Popularity First", 1)), index.getMostPopular(10, second));
+
+		// un utilisateur déjà indexé n'est pas compté deux fois
+		index.seed(jon);
+		assertEquals(2, index.countRewardedUsers(first));
+	}
+
+	@Test
+	public void storedUsersAreSeededAtStartup(@TempDir Path directory) {
+		TieredUserStore previousRun = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 10);
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		jon.addUserReward(new UserReward(
+				new VisitedLocation(jon.getUserId(), new Location(0, 0), new Date()), FIRST, 10));
+		previousRun.add(jon);
+		previousRun.flush();
+
+		GpsUtil gpsUtil = new GpsUtil();
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, new RewardsService(gpsUtil, new RewardCentral()));
+		tourGuideService.tracker.stopTracking();
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 10);
+		tourGuideService.setUserStore(store);
+
+		assertEquals(1, tourGuideService.seedPopularityIndex());
+		assertEquals(1, tourGuideService.getPopularityIndex().countRewardedUsers(AttractionRegistry.intern(FIRST)));
+		// les utilisateurs sur disque sont lus sans être chargés dans le cache
+		assertEquals(0, store.getHotUserCount());
+		assertThrows(IllegalArgumentException.class, () -> tourGuideService.getAttractionPopularity(-1, null));
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.AttractionPresenceIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestAttractionPresenceIndex {
+
+	@Test
+	public void presenceFollowsUserMoves() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		AttractionPresenceIndex presenceIndex = new AttractionPresenceIndex(rewardsService);
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User jane = new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com");
+		Location disneyland = new Location(33.817595, -117.922008);
+
+		presenceIndex.update(jon, disneyland);
+		presenceIndex.update(jane, disneyland);
+		int ref = AttractionRegistry.refOf("Disneyland");
+
+		assertEquals(2, presenceIndex.countUsersNear(ref));
+		assertEquals(Set.of("jon", "jane"), presenceIndex.getUsersNear(ref));
+		assertEquals(ref, presenceIndex.getMostCrowded(1).get(0));
+
+		// jon quitte la zone : seule sa présence autour de Disneyland est retirée
+		presenceIndex.update(jon, new Location(0, 0));
+		assertEquals(Set.of("jane"), presenceIndex.getUsersNear(ref));
+		presenceIndex.update(jane, new Location(0, 0));
+		assertEquals(0, presenceIndex.countUsersNear(ref));
+		assertTrue(presenceIndex.getMostCrowded(10).isEmpty());
+	}
+
+	@Test
+	public void stalePresenceExpiresAndForgottenUsersAreRemoved() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		AttractionPresenceIndex presenceIndex = new AttractionPresenceIndex(rewardsService, 60_000);
+		User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User jane = new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com");
+		Location disneyland = new Location(33.817595, -117.922008);
+		int ref = AttractionRegistry.refOf("Disneyland");
+
+		presenceIndex.update(jon, disneyland);
+		presenceIndex.update(jane, disneyland);
+		presenceIndex.remove("jon");
+		assertEquals(Set.of("jane"), presenceIndex.getUsersNear(ref));
+
+		// aucune présence n'est encore périmée, puis celle de jane l'est une fois la durée de validité écoulée
+		assertEquals(0, presenceIndex.expire(System.currentTimeMillis()));
+		assertEquals(1, presenceIndex.expire(System.currentTimeMillis() + 120_000));
+		assertEquals(0, presenceIndex.countUsersNear(ref));
+		assertEquals(0, presenceIndex.getPresentUserCount());
+	}
+
+	@Test
+	public void mostCrowdedRejectsNegativeLimit() {
+		AttractionPresenceIndex presenceIndex = new AttractionPresenceIndex(
+				new RewardsService(new GpsUtil(), new RewardCentral()));
+
+		assertThrows(IllegalArgumentException.class, () -> presenceIndex.getMostCrowded(-1));
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.model.AttractionRegistry;
+import com.openclassrooms.tourguide.model.NearbyAttraction;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+
+public class TestAttractionRegistry {
+
+	@Test
+	public void attractionsAreInternedByName() {
+		Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		// même attraction, rechargée depuis le catalogue avec un nouvel UUID
+		Attraction reloaded = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		Attraction other = new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767, -110.821999);
+
+		int ref = AttractionRegistry.intern(disneyland);
+
+		assertEquals(ref, AttractionRegistry.intern(reloaded));
+		assertSame(AttractionRegistry.canonical(disneyland), AttractionRegistry.canonical(reloaded));
+		assertNotEquals(ref, AttractionRegistry.intern(other));
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date());
+		user.addUserReward(new UserReward(visitedLocation, disneyland, 100));
+		user.addUserReward(new UserReward(visitedLocation, reloaded, 200));
+		assertEquals(1, user.getUserRewards().size());
+		assertSame(AttractionRegistry.canonical(reloaded), user.getUserRewards().get(0).getAttraction());
+	}
+
+	@Test
+	public void catalogRefreshReplacesRegisteredAttraction() {
+		Attraction museum = new Attraction("Registry Museum", "Boston", "MA", 42.3, -71.0);
+		int ref = AttractionRegistry.intern(museum);
+		// l'attraction a déménagé dans le catalogue rechargé
+		Attraction moved = new Attraction("Registry Museum", "Cambridge", "MA", 42.37, -71.1);
+
+		assertEquals(ref, AttractionRegistry.register(moved));
+
+		assertSame(moved, AttractionRegistry.get(ref));
+		assertEquals("Cambridge", AttractionRegistry.canonical(museum).city);
+		assertEquals(ref, AttractionRegistry.intern(museum));
+		assertSame(moved, AttractionRegistry.get(ref));
+	}
+
+	@Test
+	public void nearbyAttractionResolvesDetailsAtSerialization() throws Exception {
+		Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		NearbyAttraction nearbyAttraction = new NearbyAttraction(AttractionRegistry.intern(disneyland), 33.8, -117.9,
+				1.5, 120);
+
+		JsonNode json = new ObjectMapper().valueToTree(nearbyAttraction);
+
+		assertEquals("Disneyland", json.get("name").asText());
+		assertEquals(33.817595, json.get("attractionLatitude").asDouble());
+		assertEquals(-117.9, json.get("userLongitude").asDouble());
+		assertEquals(120, json.get("rewards").asInt());
+		assertFalse(json.has("attractionRef"));
+		assertTrue(json.has("distance"));
+	}
+
+}
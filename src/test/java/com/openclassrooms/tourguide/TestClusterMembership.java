@@ -0,0 +1,87 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.openclassrooms.tourguide.cluster.ClusterMembership;
+import com.openclassrooms.tourguide.cluster.ClusterRoutingInterceptor;
+import com.openclassrooms.tourguide.cluster.ConsistentHashRing;
+
+public class TestClusterMembership {
+
+	private static final String MEMBERS = "node-a=http://localhost:9080,node-b=http://localhost:9081,"
+			+ "node-c=http://localhost:9082";
+
+	@Test
+	public void eachUserIsOwnedByExactlyOneNode() {
+		List<ClusterMembership> nodes = List.of(ClusterMembership.fromList("node-a", MEMBERS),
+				ClusterMembership.fromList("node-b", MEMBERS), ClusterMembership.fromList("node-c", MEMBERS));
+		int[] owned = new int[nodes.size()];
+
+		for (int i = 0; i < 30_000; i++) {
+			String userName = "internalUser" + i;
+			int owners = 0;
+			for (int n = 0; n < nodes.size(); n++) {
+				if (nodes.get(n).isLocal(userName)) {
+					owners++;
+					owned[n]++;
+				}
+			}
+			assertEquals(1, owners);
+		}
+
+		// Avec les nœuds virtuels, chaque partition reste proche d'un tiers des utilisateurs
+		for (int count : owned) {
+			assertTrue(count > 8_000 && count < 12_000, "Unbalanced partition: " + count);
+		}
+	}
+
+	@Test
+	public void addingNodeOnlyMovesItsShareOfUsers() {
+		ConsistentHashRing threeNodes = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"));
+		ConsistentHashRing fourNodes = new ConsistentHashRing(List.of("node-a", "node-b", "node-c", "node-d"));
+		int moved = 0;
+
+		for (int i = 0; i < 30_000; i++) {
+			String before = threeNodes.nodeFor("internalUser" + i);
+			String after = fourNodes.nodeFor("internalUser" + i);
+			if (!before.equals(after)) {
+				moved++;
+				// Un utilisateur ne peut être déplacé que vers le nouveau nœud
+				assertEquals("node-d", after);
+			}
+		}
+
+		assertTrue(moved < 30_000 * 0.35, "Too many users moved: " + moved);
+	}
+
+	@Test
+	public void requestForRemoteUserIsRedirectedToOwner() throws Exception {
+		ClusterMembership membership = ClusterMembership.fromList("node-a", MEMBERS);
+		String remoteUser = "internalUser0";
+		for (int i = 0; membership.isLocal(remoteUser); i++) {
+			remoteUser = "internalUser" + i;
+		}
+		ClusterRoutingInterceptor interceptor = new ClusterRoutingInterceptor(membership);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/getRewards");
+		request.setParameter("userName", remoteUser);
+		request.setQueryString("userName=" + remoteUser);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		boolean handledLocally = interceptor.preHandle(request, response, null);
+
+		String owner = membership.ownerOf(remoteUser);
+		assertFalse(handledLocally);
+		assertEquals(307, response.getStatus());
+		assertEquals(Map.of("node-b", "http://localhost:9081", "node-c", "http://localhost:9082").get(owner)
+				+ "/getRewards?userName=" + remoteUser, response.getHeader("Location"));
+	}
+}
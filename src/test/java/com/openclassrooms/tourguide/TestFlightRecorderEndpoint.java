@@ -0,0 +1,44 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.openclassrooms.tourguide.profiling.ExternalCallEvent;
+import com.openclassrooms.tourguide.profiling.FlightRecorderEndpoint;
+
+public class TestFlightRecorderEndpoint {
+
+	@Test
+	public void recordAndDownloadExternalCallEvents() throws Exception {
+		FlightRecorderEndpoint endpoint = new FlightRecorderEndpoint();
+
+		assertEquals("RUNNING", endpoint.start("default", null).get("state"));
+		int result = ExternalCallEvent.record("rewardCentral", "getAttractionRewardPoints", () -> 42);
+		String lastRecording = (String) endpoint.stop().get("lastRecording");
+		// seul le nom du fichier est exposé, et seuls les enregistrements de l'endpoint sont téléchargeables
+		assertFalse(lastRecording.contains("/"));
+		assertNull(endpoint.download("tourguide.jfr"));
+		assertNull(endpoint.download("other.jfr"));
+		Resource recording = endpoint.download(lastRecording);
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recording.getFile().toPath());
+		endpoint.shutdown();
+
+		assertEquals(42, result);
+		assertTrue(events.stream()
+				.filter(e -> e.getEventType().getName().equals("com.openclassrooms.tourguide.ExternalCall"))
+				.anyMatch(e -> e.getString("dependency").equals("rewardCentral")
+						&& e.getString("operation").equals("getAttractionRewardPoints")));
+	}
+
+}
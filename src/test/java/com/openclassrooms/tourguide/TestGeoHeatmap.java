@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.model.HeatmapTile;
+import com.openclassrooms.tourguide.service.GeoHeatmap;
+
+public class TestGeoHeatmap {
+
+	private static VisitedLocation at(double latitude, double longitude, long timeMillis) {
+		return new VisitedLocation(UUID.randomUUID(), new Location(latitude, longitude), new Date(timeMillis));
+	}
+
+	@Test
+	public void locationsAreCountedPerTileAndWindow() {
+		GeoHeatmap heatmap = new GeoHeatmap(8, 1_000, 10);
+		long now = 100_000;
+		heatmap.record(at(33.8, -117.9, now));
+		heatmap.record(at(33.9, -117.8, now - 1_000));
+		heatmap.record(at(48.8, 2.3, now));
+		// trop ancienne pour la fenêtre d'une seconde, mais conservée dans l'anneau
+		heatmap.record(at(33.8, -117.9, now - 5_000));
+
+		List<HeatmapTile> world = heatmap.getTiles(-90, -180, 90, 180, 0, 10_000, now);
+		assertEquals(1, world.size());
+		assertEquals(4, world.get(0).count());
+
+		List<HeatmapTile> california = heatmap.getTiles(30, -125, 40, -110, 8, 1_000, now);
+		assertEquals(1, california.size());
+		assertEquals(1, california.get(0).count());
+		assertTrue(california.get(0).minLatitude() <= 33.8 && california.get(0).maxLatitude() > 33.8);
+
+		assertEquals(3, heatmap.getTiles(30, -125, 40, -110, 8, 10_000, now).get(0).count());
+	}
+
+	@Test
+	public void oldBucketsAreRecycled() {
+		GeoHeatmap heatmap = new GeoHeatmap(4, 1_000, 2);
+		heatmap.record(at(10, 10, 1_000));
+		heatmap.record(at(10, 10, 3_000));
+		// la tranche de 1 s a été recyclée par celle de 3 s
+		heatmap.record(at(10, 10, 1_500));
+
+		assertEquals(1, heatmap.getTiles(-90, -180, 90, 180, 0, 10_000, 3_000).get(0).count());
+		assertEquals(1, heatmap.getDroppedCount());
+	}
+
+	@Test
+	public void tilesPerBucketAreCapped() {
+		// 3 niveaux de zoom : une seule position remplit la tranche
+		GeoHeatmap heatmap = new GeoHeatmap(2, 1_000, 2, 3);
+		heatmap.record(at(-80, -170, 1_000));
+		heatmap.record(at(80, 170, 1_000));
+
+		assertEquals(2, heatmap.getTiles(-90, -180, 90, 180, 0, 1_000, 1_000).get(0).count());
+		assertEquals(1, heatmap.getTiles(-90, -180, 90, 180, 2, 1_000, 1_000).size());
+		assertEquals(1, heatmap.getOverflowedCount());
+	}
+
+	@Test
+	public void invalidQueriesAreRejected() {
+		GeoHeatmap heatmap = new GeoHeatmap(10, 1_000, 2);
+
+		assertThrows(IllegalArgumentException.class, () -> heatmap.getTiles(-90, -180, 90, 180, 11, 1_000, 0));
+		assertThrows(IllegalArgumentException.class, () -> heatmap.getTiles(-90, -180, 90, 180, -1, 1_000, 0));
+		assertThrows(IllegalArgumentException.class, () -> heatmap.getTiles(40, -180, 30, 180, 4, 1_000, 0));
+		assertThrows(IllegalArgumentException.class, () -> heatmap.getTiles(-90, -200, 90, 180, 4, 1_000, 0));
+		// le monde entier au niveau 10 couvre un million de cases
+		assertThrows(IllegalArgumentException.class, () -> heatmap.getTiles(-90, -180, 90, 180, 10, 1_000, 0));
+		assertEquals(0, heatmap.getTiles(-90, -180, 90, 180, 6, 1_000, 0).size());
+	}
+
+}
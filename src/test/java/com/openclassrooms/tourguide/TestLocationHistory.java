@@ -0,0 +1,94 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.LocationHistoryPage;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+public class TestLocationHistory {
+
+	private static void visit(User user, double latitude, long timeMillis) {
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(latitude, 0), new Date(timeMillis)));
+	}
+
+	@Test
+	public void historyIsSortedAndQueriedByRange() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		visit(user, 1, 3_000);
+		visit(user, 2, 1_000);
+		visit(user, 3, 2_000);
+		visit(user, 4, 5_000);
+
+		assertEquals(List.of(2d, 3d, 1d, 4d),
+				user.getVisitedLocations().stream().map(v -> v.location.latitude).toList());
+		assertEquals(4d, user.getLastVisitedLocation().location.latitude);
+		assertEquals(List.of(3d, 1d),
+				user.getVisitedLocationsBetween(2_000, 0, 5_000, 10).stream().map(v -> v.location.latitude).toList());
+	}
+
+	@Test
+	public void pagesFollowCursorAcrossEqualTimes() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		// trois localisations de même date, à cheval sur deux pages
+		for (int i = 0; i < 7; i++) {
+			visit(user, i, i < 2 ? 1_000 : i < 5 ? 2_000 : 3_000);
+		}
+
+		List<Double> latitudes = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			LocationHistoryPage page = tourGuideService.getLocationHistory(user, 0, 3_000, cursor, 3);
+			page.locations().forEach(v -> latitudes.add(v.location.latitude));
+			cursor = page.nextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(List.of(0d, 1d, 2d, 3d, 4d), latitudes);
+		assertEquals(2, pages);
+		assertNull(tourGuideService.getLocationHistory(user, 3_000, Long.MAX_VALUE, null, 2).nextCursor());
+	}
+
+	@Test
+	public void invalidCursorsAreRejected() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		visit(user, 1, 1_000);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> tourGuideService.getLocationHistory(user, 0, 3_000, "1000:-1", 3));
+		assertThrows(IllegalArgumentException.class,
+				() -> tourGuideService.getLocationHistory(user, 0, 3_000, "1000", 3));
+		assertThrows(IllegalArgumentException.class,
+				() -> tourGuideService.getLocationHistory(user, 0, 3_000, null, 0));
+		// un décalage au-delà des localisations de même date ne retourne que les suivantes
+		assertEquals(0, tourGuideService.getLocationHistory(user, 0, 3_000, "1000:" + Integer.MAX_VALUE, 3)
+				.locations().size());
+	}
+
+}
@@ -2,24 +2,17 @@ package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.junit.jupiter.api.Test;
 
-import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
-import rewardCentral.RewardCentral;
-import com.openclassrooms.tourguide.helper.InternalTestHelper;
-import com.openclassrooms.tourguide.service.RewardsService;
-import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.loadtest.LoadTestConfig;
+import com.openclassrooms.tourguide.loadtest.LoadTestHarness;
+import com.openclassrooms.tourguide.loadtest.PhaseResult;
 import com.openclassrooms.tourguide.model.User;
 
 public class TestPerformance {
@@ -28,84 +21,69 @@ public class TestPerformance {
 	/*
 	 * Remarque sur les améliorations de performances :
 	 *
-	 * Le nombre d'utilisateurs générés pour les tests à volume élevé peut être facilement
-	 * ajusté via cette méthode :
+	 * Les tests s'appuient sur le banc de test de charge (package loadtest). Le volume et les latences
+	 * des bibliothèques externes se règlent par propriétés système, sans modifier le code :
 	 *
-	 * InternalTestHelper.setInternalUserNumber(100000);
+	 * -Dloadtest.users=100000                 nombre d'utilisateurs (jusqu'à 1 000 000)
+	 * -Dloadtest.latency=real|zero|fixed:10   modèle de latence commun aux trois bibliothèques
+	 * -Dloadtest.gps / rewards / tripPricer   modèle de latence propre à chaque bibliothèque
+	 *                                         (ex : uniform:1-1000, lognormal:300,0.8)
+	 * -Dloadtest.baseline=target/loadtest     comparaison avec les résultats d'une exécution précédente
 	 *
-	 *
-	 * Ces tests peuvent être modifiés pour convenir à de nouvelles solutions, tant que les
-	 * métriques de performances à la fin des tests restent cohérentes.
+	 * Par défaut, 10 000 utilisateurs et les latences réelles des bibliothèques.
 	 *
 	 * Voici les métriques de performances que nous essayons d'atteindre :
 	 *
 	 * highVolumeTrackLocation : 100 000 utilisateurs en 15 minutes :
-	 * assertTrue(TimeUnit.MINUTES.toSeconds(15) >=
-	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	 * assertTrue(TimeUnit.MINUTES.toSeconds(15) >= result.getElapsedSeconds());
 	 *
 	 * highVolumeGetRewards : 100 000 utilisateurs en 20 minutes :
-	 * assertTrue(TimeUnit.MINUTES.toSeconds(20) >=
-	 * TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	 * assertTrue(TimeUnit.MINUTES.toSeconds(20) >= result.getElapsedSeconds());
 	 */
 
 
 	@Test
-	public void highVolumeTrackLocation() throws ExecutionException, InterruptedException {
-		GpsUtil gpsUtil = new GpsUtil();
-		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
-		// Le nombre d'utilisateurs devrait être augmenté jusqu'à 100 000, et le test doit être terminé en moins de 15 minutes
-		InternalTestHelper.setInternalUserNumber(10000);
-		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
-
-		List<User> allUsers = tourGuideService.getAllUsers();
-
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
-		List<CompletableFuture<Void>> futures = allUsers
-				.stream()
-				.map(tourGuideService::trackUserLocationAsync)
-				.collect(Collectors.toList());
-
-		CompletableFuture<Void> allOf = CompletableFuture.allOf(
-				futures.toArray(new CompletableFuture[0])
-		);
-		allOf.get();
-		stopWatch.stop();
-		tourGuideService.tracker.stopTracking();
-
-		System.out.println("highVolumeTrackLocation: Time Elapsed: "
-				+ TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	public void highVolumeTrackLocation() throws Exception {
+		try (LoadTestHarness harness = new LoadTestHarness(new LoadTestConfig())) {
+			PhaseResult result = harness.trackLocations();
+			List<String> regressions = harness.report("highVolumeTrackLocation");
+
+			System.out.println("highVolumeTrackLocation: Time Elapsed: " + result.getElapsedSeconds() + " seconds.");
+			assertTrue(TimeUnit.MINUTES.toSeconds(15) >= result.getElapsedSeconds());
+			assertTrue(regressions.isEmpty(), "Regressions against baseline: " + regressions);
+		}
 	}
 
 	@Test
-	public void highVolumeGetRewards() {
-		GpsUtil gpsUtil = new GpsUtil();
-		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
-
-		// Le nombre d'utilisateurs devrait être augmenté jusqu'à 100 000, et le test doit être terminé en moins de 20 minutes
-		InternalTestHelper.setInternalUserNumber(10000);
-		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
-
-		Attraction attraction = gpsUtil.getAttractions().get(0);
-		List<User> allUsers = tourGuideService.getAllUsers();
-		allUsers.stream().forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
-
-		StopWatch stopWatch = new StopWatch();
-		stopWatch.start();
-
-		CompletableFuture<Void> allOf = rewardsService.calculateRewardsAsyncList(allUsers);
-		allOf.join();
-
-		for (User user : allUsers) {
-			assertTrue(user.getUserRewards().size() > 0);
+	public void highVolumeGetRewards() throws Exception {
+		try (LoadTestHarness harness = new LoadTestHarness(new LoadTestConfig())) {
+			Attraction attraction = harness.getGpsUtil().getAttractions().get(0);
+			List<User> allUsers = harness.getTourGuideService().getAllUsers();
+			allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
+
+			PhaseResult result = harness.calculateRewards();
+			List<String> regressions = harness.report("highVolumeGetRewards");
+
+			for (User user : allUsers) {
+				assertTrue(user.getUserRewards().size() > 0);
+			}
+			System.out.println("highVolumeGetRewards: Time Elapsed: " + result.getElapsedSeconds() + " seconds.");
+			assertTrue(TimeUnit.MINUTES.toSeconds(20) >= result.getElapsedSeconds());
+			assertTrue(regressions.isEmpty(), "Regressions against baseline: " + regressions);
 		}
-		stopWatch.stop();
-		tourGuideService.tracker.stopTracking();
+	}
 
-		System.out.println("highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
-				+ " seconds.");
-		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	@Test
+	public void highVolumeGetTripDeals() throws Exception {
+		try (LoadTestHarness harness = new LoadTestHarness(new LoadTestConfig())) {
+			harness.tripDeals();
+			List<String> regressions = harness.report("highVolumeGetTripDeals");
+
+			for (User user : harness.getTourGuideService().getAllUsers()) {
+				assertTrue(user.getTripDeals().size() > 0);
+			}
+			assertTrue(regressions.isEmpty(), "Regressions against baseline: " + regressions);
+		}
 	}
 
 }
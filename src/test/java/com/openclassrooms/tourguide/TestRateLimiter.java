@@ -0,0 +1,127 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.openclassrooms.tourguide.ratelimit.RateLimitInterceptor;
+import com.openclassrooms.tourguide.ratelimit.RateLimiter;
+import com.openclassrooms.tourguide.ratelimit.TokenBucket;
+
+public class TestRateLimiter {
+
+	@Test
+	public void bucketAdmitsBurstThenRefills() throws Exception {
+		TokenBucket bucket = new TokenBucket(2, 50);
+
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		long waitNanos = bucket.tryAcquire();
+		assertTrue(waitNanos > 0 && waitNanos <= TimeUnit.MILLISECONDS.toNanos(20));
+
+		TimeUnit.NANOSECONDS.sleep(waitNanos);
+		assertEquals(0, bucket.tryAcquire());
+	}
+
+	@Test
+	public void concurrentClientsNeverExceedBurst() throws Exception {
+		TokenBucket bucket = new TokenBucket(100, 0.001);
+		AtomicInteger admitted = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		CompletableFuture.allOf(IntStream.range(0, 8)
+				.mapToObj(t -> CompletableFuture.runAsync(() -> {
+					for (int i = 0; i < 1000; i++) {
+						if (bucket.tryAcquire() == 0) {
+							admitted.incrementAndGet();
+						}
+					}
+				}, executor))
+				.toArray(CompletableFuture[]::new)).join();
+		executor.shutdown();
+
+		assertEquals(100, admitted.get());
+	}
+
+	@Test
+	public void throttledRequestsReceive429PerClientAndEndpoint() throws Exception {
+		RateLimiter rateLimiter = new RateLimiter(new RateLimiter.Rule(1, 0.5),
+				RateLimiter.parseEndpointRules("/getRewards=3:1"));
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimiter, meterRegistry,
+				Set.of("client-a", "client-b"));
+
+		assertEquals(200, call(interceptor, "client-a", "/getNearbyAttractions").getStatus());
+		MockHttpServletResponse throttled = call(interceptor, "client-a", "/getNearbyAttractions");
+		assertEquals(429, throttled.getStatus());
+		assertEquals("2", throttled.getHeader("Retry-After"));
+		// Les autres clients et les autres endpoints ont leur propre seau
+		assertEquals(200, call(interceptor, "client-b", "/getNearbyAttractions").getStatus());
+		assertEquals(200, call(interceptor, "client-a", "/getRewards").getStatus());
+
+		assertEquals(1, meterRegistry.get("tourguide.ratelimit.throttled")
+				.tag("endpoint", "/getNearbyAttractions").counter().count());
+		assertFalse(meterRegistry.find("tourguide.ratelimit.throttled").tag("endpoint", "/getRewards")
+				.counters().stream().anyMatch(c -> c.count() > 0));
+		assertEquals(Map.of("/getRewards", new RateLimiter.Rule(3, 1)),
+				RateLimiter.parseEndpointRules("/getRewards=3:1"));
+	}
+
+	@Test
+	public void unknownApiKeysShareTheClientAddressBucket() throws Exception {
+		RateLimiter rateLimiter = new RateLimiter(new RateLimiter.Rule(1, 0.5), Map.of());
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimiter, meterRegistry, Set.of("client-a"));
+
+		assertEquals(200, call(interceptor, "forged-1", "/getRewards").getStatus());
+		// une clé inventée ne donne pas de nouveau seau
+		assertEquals(429, call(interceptor, "forged-2", "/getRewards").getStatus());
+		assertEquals(200, call(interceptor, "client-a", "/getRewards").getStatus());
+		assertEquals(2, rateLimiter.getBucketCount());
+	}
+
+	@Test
+	public void bucketsAndMetricsAreBoundedByRoutePattern() throws Exception {
+		RateLimiter rateLimiter = new RateLimiter(new RateLimiter.Rule(1, 0.5), Map.of(), 32);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimiter, meterRegistry, Set.of());
+
+		for (int i = 0; i < 10; i++) {
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/unknown/" + i);
+			interceptor.preHandle(request, new MockHttpServletResponse(), null);
+		}
+		for (int i = 0; i < 100; i++) {
+			rateLimiter.tryAcquire("ip:10.0.0." + i, "/getRewards");
+		}
+
+		assertEquals(1, meterRegistry.find("tourguide.ratelimit.throttled").counters().size());
+		assertEquals(9, meterRegistry.get("tourguide.ratelimit.throttled")
+				.tag("endpoint", RateLimitInterceptor.UNMAPPED_ENDPOINT).counter().count());
+		assertTrue(rateLimiter.getBucketCount() <= 32);
+	}
+
+	private MockHttpServletResponse call(RateLimitInterceptor interceptor, String apiKey, String uri) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.addHeader(RateLimitInterceptor.API_KEY_HEADER, apiKey);
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, uri);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		return response;
+	}
+}
@@ -0,0 +1,188 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.ResiliencePolicy;
+
+public class TestResiliencePolicy {
+
+	@Test
+	public void slowCallTimesOutAndFallsBack() {
+		ResiliencePolicy policy = new ResiliencePolicy("slow", 1, 50, 50, new CircuitBreaker(5, 1, TimeUnit.MINUTES));
+
+		int result = policy.call("sleep", () -> {
+			sleep(5_000);
+			return 1;
+		}, () -> -1);
+		policy.shutdown();
+
+		assertEquals(-1, result);
+		assertEquals(1, policy.getTimeoutCount());
+	}
+
+	@Test
+	public void asyncCallsRunConcurrentlyAndTimeOut() {
+		ResiliencePolicy policy = new ResiliencePolicy("async", 4, 1_000, 50, new CircuitBreaker(5, 1, TimeUnit.MINUTES));
+
+		long start = System.nanoTime();
+		CompletableFuture<Optional<Integer>> first = policy.tryCallAsync("sleep", () -> {
+			sleep(200);
+			return 1;
+		});
+		CompletableFuture<Optional<Integer>> second = policy.tryCallAsync("sleep", () -> {
+			sleep(200);
+			return 2;
+		});
+		CompletableFuture<Optional<Integer>> slow = policy.tryCallAsync("sleep", () -> {
+			sleep(5_000);
+			return 3;
+		});
+		long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertEquals(Optional.of(1), first.join());
+		assertEquals(Optional.of(2), second.join());
+		assertEquals(Optional.empty(), slow.join());
+		policy.shutdown();
+
+		// le thread appelant n'attend pas les appels eux-mêmes
+		assertTrue(submitMillis < 200);
+		assertEquals(1, policy.getTimeoutCount());
+	}
+
+	@Test
+	public void slowCallIsHedgedAndFirstResultWins() {
+		ResiliencePolicy policy = new ResiliencePolicy("hedged", 4, 2_000, 50, new CircuitBreaker(5, 1, TimeUnit.MINUTES));
+		policy.enableHedging(90, 0.5);
+		for (int i = 0; i < 200; i++) {
+			policy.tryCall("fast", () -> 0);
+		}
+		AtomicInteger attempts = new AtomicInteger();
+		long hedges = policy.getHedgeCount();
+		long hedgeWins = policy.getHedgeWinCount();
+
+		long start = System.nanoTime();
+		Optional<Integer> result = policy.tryCall("tail", () -> {
+			if (attempts.incrementAndGet() == 1) {
+				sleep(5_000);
+				return 1;
+			}
+			return 2;
+		});
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		policy.shutdown();
+
+		// la première tentative, lente, est doublée et la seconde l'emporte bien avant le délai maximal
+		assertEquals(Optional.of(2), result);
+		assertTrue(elapsedMillis < 1_000);
+		assertEquals(hedges + 1, policy.getHedgeCount());
+		assertEquals(hedgeWins + 1, policy.getHedgeWinCount());
+		assertEquals(0, policy.getTimeoutCount());
+	}
+
+	@Test
+	public void rejectedLaunchReleasesTheHalfOpenTrial() {
+		ResiliencePolicy policy = new ResiliencePolicy("stopped", 1, 1_000, 50,
+				new CircuitBreaker(1, 0, TimeUnit.MILLISECONDS));
+		policy.tryCall("fail", () -> {
+			throw new IllegalStateException("down");
+		});
+		policy.shutdown();
+
+		// le pool arrêté refuse les appels d'essai, qui sont rendus au disjoncteur au lieu de le bloquer
+		assertEquals(Optional.empty(), policy.tryCall("trial", () -> 1));
+		assertEquals(Optional.empty(), policy.tryCall("trial", () -> 1));
+		assertEquals(2, policy.getRejectionCount());
+		assertEquals(0, policy.getShortCircuitCount());
+	}
+
+	@Test
+	public void onlyTheTrialHolderReleasesTheHalfOpenTrial() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 0, TimeUnit.MILLISECONDS);
+		CircuitBreaker.Permission ordinary = circuitBreaker.tryAcquirePermission();
+		circuitBreaker.onFailure();
+
+		CircuitBreaker.Permission trial = circuitBreaker.tryAcquirePermission();
+		assertEquals(CircuitBreaker.Permission.TRIAL, trial);
+		// un appel ordinaire rendu tardivement ne libère pas l'appel d'essai en cours
+		circuitBreaker.releasePermission(ordinary);
+		assertEquals(CircuitBreaker.Permission.DENIED, circuitBreaker.tryAcquirePermission());
+
+		// l'appel d'essai non effectué (cloisonnement saturé) est rendu : un autre appelant peut essayer
+		circuitBreaker.releasePermission(trial);
+		assertEquals(CircuitBreaker.Permission.TRIAL, circuitBreaker.tryAcquirePermission());
+	}
+
+	@Test
+	public void circuitOpensAfterConsecutiveFailures() {
+		ResiliencePolicy policy = new ResiliencePolicy("failing", 2, 1_000, 1_000,
+				new CircuitBreaker(3, 1, TimeUnit.MINUTES));
+		AtomicInteger attempts = new AtomicInteger();
+
+		for (int i = 0; i < 10; i++) {
+			policy.tryCall("fail", () -> {
+				attempts.incrementAndGet();
+				throw new IllegalStateException("boom");
+			});
+		}
+		policy.shutdown();
+
+		// Seuls les trois premiers appels atteignent la bibliothèque, les suivants sont court-circuités
+		assertEquals(3, attempts.get());
+		assertEquals(CircuitBreaker.State.OPEN, policy.getCircuitState());
+		assertEquals(7, policy.getShortCircuitCount());
+	}
+
+	@Test
+	public void saturatedDependencyDoesNotAffectOthers() throws InterruptedException {
+		ResiliencePolicy saturated = new ResiliencePolicy("saturated", 1, 5_000, 10,
+				new CircuitBreaker(5, 1, TimeUnit.MINUTES));
+		ResiliencePolicy healthy = new ResiliencePolicy("healthy", 1, 1_000, 10,
+				new CircuitBreaker(5, 1, TimeUnit.MINUTES));
+		CountDownLatch release = new CountDownLatch(1);
+		Thread blocker = new Thread(() -> saturated.tryCall("block", () -> {
+			await(release);
+			return 1;
+		}));
+		blocker.start();
+		while (saturated.getAvailablePermits() > 0) {
+			sleep(5);
+		}
+
+		Optional<Integer> rejected = saturated.tryCall("other", () -> 2);
+		Optional<Integer> served = healthy.tryCall("call", () -> 3);
+		release.countDown();
+		blocker.join();
+		saturated.shutdown();
+		healthy.shutdown();
+
+		assertTrue(rejected.isEmpty());
+		assertEquals(1, saturated.getRejectionCount());
+		assertEquals(3, served.get());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
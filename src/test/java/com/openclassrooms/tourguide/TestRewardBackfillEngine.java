@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.backfill.RewardBackfillEngine;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+public class TestRewardBackfillEngine {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void backfillResumesFromCheckpoint() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		for (int i = 0; i < 4; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008),
+					new Date()));
+			tourGuideService.addUser(user);
+		}
+		// nouvelle règle : toutes les attractions sont à portée
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		int attractions = rewardsService.getAttractions().size();
+
+		// un rattrapage précédent a déjà traité les deux premiers lots
+		Path checkpoint = directory.resolve("backfill.checkpoint");
+		List<String> userNames = List.of("jon0", "jon1", "jon2", "jon3");
+		Files.writeString(checkpoint, RewardBackfillEngine.runKey(userNames, 1, Integer.MAX_VALUE, attractions)
+				+ System.lineSeparator() + "0" + System.lineSeparator() + "1" + System.lineSeparator());
+		// même nombre d'utilisateurs, mais pas les mêmes : le fichier de reprise ne s'applique pas
+		assertNotEquals(RewardBackfillEngine.runKey(List.of("jon0", "jon1", "jon2", "jon4"), 1, Integer.MAX_VALUE,
+				attractions), RewardBackfillEngine.runKey(userNames, 1, Integer.MAX_VALUE, attractions));
+		RewardBackfillEngine engine = new RewardBackfillEngine(tourGuideService, rewardsService, checkpoint, 4, 1, 1000);
+
+		assertTrue(engine.start(true));
+		assertTrue(engine.awaitCompletion(2, TimeUnit.MINUTES));
+		RewardBackfillEngine.Progress progress = engine.getProgress();
+
+		assertEquals(RewardBackfillEngine.State.COMPLETED, progress.state());
+		assertEquals(2, progress.resumedUsers());
+		assertEquals(2, progress.processedUsers());
+		assertEquals(4, progress.completedChunks());
+		assertEquals(2L * attractions, progress.rewardsAdded());
+		assertEquals(0, tourGuideService.getUser("jon0").getUserRewards().size());
+		assertEquals(attractions, tourGuideService.getUser("jon3").getUserRewards().size());
+		assertFalse(Files.exists(checkpoint));
+	}
+
+}
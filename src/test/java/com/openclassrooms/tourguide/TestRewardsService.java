@@ -1,18 +1,25 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.event.LocationTracked;
+import com.openclassrooms.tourguide.event.RewardsEventBus;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
@@ -22,7 +29,7 @@ import com.openclassrooms.tourguide.model.UserReward;
 public class TestRewardsService {
 	// Test pour vérifier qu'un utilisateur reçoit des récompenses pour avoir visité une attraction
 	@Test
-	public void userGetRewards() {
+	public void userGetRewards() throws InterruptedException {
 
 		// Modification 1 :
 		// L'import com.openclassrooms.tourguide.model.UserReward a été ajouté.
@@ -48,6 +55,8 @@ public class TestRewardsService {
 		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
 		// Suivre l'emplacement de l'utilisateur pour calculer les récompenses
 		tourGuideService.trackUserLocation(user);
+		// Attendre que les workers du bus d'événements aient calculé les récompenses
+		tourGuideService.getRewardsEventBus().awaitDrained(10, TimeUnit.SECONDS);
 		// Obtenir les récompenses de l'utilisateur
 		List<UserReward> userRewards = user.getUserRewards();
 		// Arrêter le suivi
@@ -101,4 +110,104 @@ public class TestRewardsService {
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
 	}
 
+	// Test pour vérifier qu'un utilisateur immobile n'est pas réévalué tant qu'il ne peut atteindre aucune attraction
+	@Test
+	public void stationaryUserSkipsRewardEvaluation() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractions().get(0);
+
+		// à environ 70 miles de l'attraction
+		VisitedLocation hotel = visit(user, attraction.latitude + 1, attraction.longitude);
+		assertTrue(rewardsService.calculateRewardsIfMoved(user, hotel));
+		assertFalse(rewardsService.calculateRewardsIfMoved(user, visit(user, attraction.latitude + 1, attraction.longitude)));
+		assertFalse(rewardsService.calculateRewardsIfMoved(user, visit(user, attraction.latitude + 0.9, attraction.longitude)));
+		assertEquals(2, rewardsService.getSkippedEvaluationCount());
+
+		// un changement de rayon invalide la dernière évaluation
+		rewardsService.setProximityBuffer(100);
+		assertTrue(rewardsService.calculateRewardsIfMoved(user, visit(user, attraction.latitude + 1, attraction.longitude)));
+		assertTrue(user.getUserRewards().size() > 0);
+		rewardsService.setDefaultProximityBuffer();
+
+		// un déplacement suffisant vers une attraction déclenche l'évaluation
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		rewardsService.calculateRewardsIfMoved(user2, visit(user2, attraction.latitude + 1, attraction.longitude));
+		assertTrue(rewardsService.calculateRewardsIfMoved(user2, visit(user2, attraction.latitude, attraction.longitude)));
+		assertEquals(1, user2.getUserRewards().size());
+	}
+
+	// Test pour vérifier que les événements d'un même utilisateur ne sont jamais évalués simultanément
+	@Test
+	public void eventsOfOneUserAreNotEvaluatedConcurrently() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral()) {
+			@Override
+			public boolean calculateRewardsIfMoved(User user, VisitedLocation visitedLocation) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				return true;
+			}
+		};
+		RewardsEventBus bus = new RewardsEventBus(rewardsService, 100, 4);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		for (int i = 0; i < 40; i++) {
+			bus.publish(new LocationTracked(user, visit(user, 0, 0)));
+		}
+
+		assertTrue(bus.awaitDrained(10, TimeUnit.SECONDS));
+		bus.shutdown();
+		assertEquals(1, maxRunning.get());
+		assertEquals(40, bus.getProcessedCount());
+	}
+
+	// Test pour vérifier que l'arrêt du bus libère les événements encore en file
+	@Test
+	public void shutdownReleasesQueuedEvents() throws InterruptedException {
+		CountDownLatch evaluating = new CountDownLatch(1);
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral()) {
+			@Override
+			public boolean calculateRewardsIfMoved(User user, VisitedLocation visitedLocation) {
+				evaluating.countDown();
+				try {
+					// bloqué jusqu'à l'interruption du worker par l'arrêt du bus
+					new CountDownLatch(1).await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+		};
+		RewardsEventBus bus = new RewardsEventBus(rewardsService, 100, 1);
+		AtomicInteger released = new AtomicInteger();
+		for (int i = 0; i < 6; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			bus.publish(new LocationTracked(user, visit(user, 0, 0), released::incrementAndGet));
+			if (i == 0) {
+				assertTrue(evaluating.await(10, TimeUnit.SECONDS));
+			}
+		}
+
+		bus.shutdown();
+
+		assertTrue(bus.awaitDrained(10, TimeUnit.SECONDS));
+		assertEquals(6, released.get());
+		assertEquals(5, bus.getDiscardedCount());
+		assertEquals(0, bus.getBacklog());
+	}
+
+	private static VisitedLocation visit(User user, double latitude, double longitude) {
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(latitude, longitude),
+				new Date());
+		user.addToVisitedLocations(visitedLocation);
+		return visitedLocation;
+	}
+
 }
@@ -0,0 +1,131 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.serialization.UserSnapshotCodec;
+import com.openclassrooms.tourguide.store.TieredUserStore;
+
+public class TestTieredUserStore {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void evictedUsersAreWrittenBackAndReloaded() {
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 2);
+		User jon = newUser("jon");
+		store.add(jon);
+		store.add(newUser("jon2"));
+		store.add(newUser("jon3"));
+
+		assertEquals(2, store.getHotUserCount());
+		assertEquals(1, store.getWriteCount());
+		User reloaded = store.get("jon");
+
+		assertNotSame(jon, reloaded);
+		assertEquals(jon.getVersion(), reloaded.getVersion());
+		assertEquals(jon.getLastVisitedLocation().timeVisited, reloaded.getLastVisitedLocation().timeVisited);
+		assertSame(reloaded, store.get("jon"));
+		assertEquals(1, store.getLoadCount());
+		assertEquals(2, store.getWriteCount());
+
+		// jon3, jamais enregistré, est écrit ; jon, non modifié depuis son chargement, ne l'est pas
+		store.get("jon2");
+		store.get("jon3");
+		assertEquals(3, store.getWriteCount());
+		assertEquals(3, new TieredUserStore(new UserSnapshotCodec(List::of), directory, 2).size());
+	}
+
+	@Test
+	public void onlyRecentlyAccessedUsersAreActive() {
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 10);
+		User jon = newUser("jon");
+		User jon2 = newUser("jon2");
+		store.add(jon);
+		store.add(jon2);
+		store.resolve(jon2);
+		long window = TimeUnit.MINUTES.toMillis(5);
+
+		assertEquals(2, store.getActiveUsers(window).size());
+		assertTrue(store.isActive(jon2, window));
+		assertEquals(2, store.getActiveUsers(0).size());
+		assertFalse(store.isActive(newUser("unknown"), window));
+	}
+
+	@Test
+	public void pinnedUsersAreNotEvicted() {
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 1);
+		User jon = newUser("jon");
+		store.add(jon);
+		assertSame(jon, store.pin("jon"));
+		store.add(newUser("jon2"));
+
+		// jon, épinglé, reste en mémoire : ses modifications portent sur l'instance du stockage
+		assertEquals(2, store.getHotUserCount());
+		jon.addToVisitedLocations(new VisitedLocation(jon.getUserId(), new Location(34.0, -118.0), new Date()));
+		assertSame(jon, store.get("jon"));
+
+		// libéré, il est évincé avec ses modifications
+		store.unpin("jon");
+		store.get("jon2");
+		assertEquals(1, store.getHotUserCount());
+		assertFalse(store.isPinned("jon"));
+		assertEquals(2, store.get("jon").getVisitedLocations().size());
+	}
+
+	@Test
+	public void scannedUsersAreWrittenBackWithoutEvictingActiveUsers() {
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 1);
+		store.add(newUser("jon"));
+		User active = newUser("jon2");
+		store.add(active);
+		long evictions = store.getEvictionCount();
+
+		assertTrue(store.scan("jon", user -> user.addToVisitedLocations(
+				new VisitedLocation(user.getUserId(), new Location(34.0, -118.0), new Date()))));
+
+		// jon n'est pas passé par le cache : jon2 y est resté
+		assertEquals(evictions, store.getEvictionCount());
+		assertTrue(store.scan("jon2", user -> assertSame(active, user)));
+		assertFalse(store.scan("unknown", user -> {
+		}));
+		assertEquals(2, store.get("jon").getVisitedLocations().size());
+	}
+
+	@Test
+	public void forEachVisitsEveryUserInNameOrder() {
+		TieredUserStore store = new TieredUserStore(new UserSnapshotCodec(List::of), directory, 1);
+		store.add(newUser("jon2"));
+		store.add(newUser("jon"));
+		store.add(newUser("jon3"));
+		List<String> userNames = new ArrayList<>();
+
+		store.forEach(user -> userNames.add(user.getUserName()));
+
+		assertEquals(List.of("jon", "jon2", "jon3"), userNames);
+		assertEquals(1, store.getHotUserCount());
+	}
+
+	private User newUser(String userName) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date()));
+		return user;
+	}
+}
@@ -1,8 +1,10 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -10,12 +12,14 @@ import com.openclassrooms.tourguide.model.NearbyAttraction;// Modification 1: Im
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
 import tripPricer.Provider;
 
 public class TestTourGuideService {
@@ -116,6 +120,37 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size());  // Modification 3: Assertion modifiée  assertEquals(5, attractions.size())
 	}
 
+	@Test
+	public void getAttractionsNearLastVisitUsesMostRecentVisit() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		Attraction recent = rewardsService.getAttractionIndex().get(0);
+		Attraction older = rewardsService.getAttractionIndex().get(1);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User reference = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		VisitedLocation recentVisit = new VisitedLocation(user.getUserId(), recent, new Date(2_000_000L));
+		VisitedLocation olderVisit = new VisitedLocation(user.getUserId(), older, new Date(1_000_000L));
+		user.addToVisitedLocations(recentVisit);
+		reference.addToVisitedLocations(recentVisit);
+		// la récompense la plus récente est ajoutée en premier
+		user.addUserReward(new UserReward(recentVisit, recent, 10));
+		user.addUserReward(new UserReward(olderVisit, older, 10));
+		reference.addUserReward(new UserReward(recentVisit, recent, 10));
+
+		List<String> names = tourGuideService.getAttractionsNearLastVisit(user, 3).stream()
+				.map(NearbyAttraction::getName).toList();
+		List<String> expected = tourGuideService.getAttractionsNearLastVisit(reference, 3).stream()
+				.map(NearbyAttraction::getName).toList();
+
+		assertEquals(3, names.size());
+		assertEquals(expected, names);
+		assertThrows(IllegalArgumentException.class, () -> tourGuideService.getAttractionsNearLastVisit(user, 0));
+	}
+
 	@Test
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -0,0 +1,75 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerEndpoint;
+
+public class TestTrackerEndpoint {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void tuneAppliesOnlyGivenSettings() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		TrackerEndpoint endpoint = new TrackerEndpoint(tourGuideService);
+		int gpsUtilMaxConcurrentCalls = rewardsService.getGpsUtilPolicy().getMaxConcurrentCalls();
+
+		Map<String, Object> status = endpoint.tune(500L, 100, 80, 10, 2, null, 4, null, null, null, null);
+		tourGuideService.tracker.stopTracking();
+
+		Map<String, Object> cycle = (Map<String, Object>) status.get("cycle");
+		Map<String, Object> executors = (Map<String, Object>) status.get("executors");
+		Map<String, Object> rewards = (Map<String, Object>) status.get("rewards");
+		Map<String, Object> dependencies = (Map<String, Object>) status.get("dependencies");
+		assertEquals(500L, cycle.get("trackingTickInterval"));
+		assertEquals(100, cycle.get("maxUsersPerCycle"));
+		assertEquals(80, ((Map<String, Object>) executors.get("tracking")).get("poolSize"));
+		assertEquals(10, ((Map<String, Object>) executors.get("rewards")).get("poolSize"));
+		assertEquals(80, tourGuideService.getExecutor().getMaximumPoolSize());
+		assertEquals(10, rewardsService.getExecutor().getMaximumPoolSize());
+		assertEquals(2, rewards.get("workers"));
+		assertEquals(4, ((Map<String, Object>) dependencies.get("rewardCentral")).get("maxConcurrentCalls"));
+		assertEquals(4, ((Map<String, Object>) dependencies.get("rewardCentral")).get("availablePermits"));
+		assertEquals(gpsUtilMaxConcurrentCalls,
+				((Map<String, Object>) dependencies.get("gpsUtil")).get("maxConcurrentCalls"));
+	}
+
+	@Test
+	public void tuneRejectsInvalidSettingsWithoutApplyingAny() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		TrackerEndpoint endpoint = new TrackerEndpoint(tourGuideService);
+		long trackingTickInterval = tourGuideService.tracker.getTrackingTickInterval();
+		int trackingPoolSize = tourGuideService.getExecutor().getCorePoolSize();
+
+		assertThrows(InvalidEndpointRequestException.class,
+				() -> endpoint.tune(500L, null, 0, null, null, null, null, null, null, null, null));
+		assertThrows(InvalidEndpointRequestException.class,
+				() -> endpoint.tune(0L, null, null, null, null, null, null, null, null, null, null));
+		assertThrows(InvalidEndpointRequestException.class,
+				() -> endpoint.tune(null, null, 40, null, 0, null, null, null, null, null, -1));
+		assertThrows(InvalidEndpointRequestException.class,
+				() -> endpoint.tune(null, null, null, null, null, null, null, null, 10_000L, 5_000L, null));
+
+		assertEquals(trackingTickInterval, tourGuideService.tracker.getTrackingTickInterval());
+		assertEquals(trackingPoolSize, tourGuideService.getExecutor().getCorePoolSize());
+		assertEquals(trackingPoolSize, tourGuideService.getExecutor().getMaximumPoolSize());
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.tracker.TrackingScheduler;
+
+public class TestTrackingScheduler {
+
+	@Test
+	public void userNearUnrewardedAttractionIsDueFirst() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		TrackingScheduler scheduler = new TrackingScheduler(rewardsService);
+		// l'ordonnanceur n'utilise que le catalogue déjà chargé, par exemple par une évaluation des récompenses
+		Attraction attraction = rewardsService.getAttractionIndex().get(0);
+
+		// Utilisateur immobile au milieu du Pacifique, loin de toute attraction
+		User idleUser = new User(UUID.randomUUID(), "idle", "000", "idle@tourGuide.com");
+		idleUser.addToVisitedLocations(new VisitedLocation(idleUser.getUserId(), new Location(0, -150), new Date()));
+		// Utilisateur à environ un mile du rayon d'une attraction pour laquelle il n'a pas été récompensé
+		User activeUser = new User(UUID.randomUUID(), "active", "000", "active@tourGuide.com");
+		activeUser.addToVisitedLocations(new VisitedLocation(activeUser.getUserId(),
+				new Location(attraction.latitude + 0.16, attraction.longitude), new Date()));
+
+		long now = System.currentTimeMillis();
+		scheduler.reschedule(idleUser, now);
+		scheduler.reschedule(activeUser, now);
+		rewardsService.shutdownExecutorService();
+
+		assertEquals(List.of(activeUser), scheduler.pollDue(now + TimeUnit.MINUTES.toMillis(3)));
+		assertEquals(List.of(idleUser), scheduler.pollDue(now + scheduler.getMaxIntervalMillis()));
+	}
+
+	@Test
+	public void gpsCallBudgetCapsDueUsers() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		TrackingScheduler scheduler = new TrackingScheduler(rewardsService);
+		scheduler.setMaxGpsCallsPerMinute(60);
+		for (int i = 0; i < 100; i++) {
+			scheduler.register(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+
+		// 60 appels par minute : au plus 10 utilisateurs après dix secondes
+		int polled = scheduler.pollDue(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10)).size();
+		rewardsService.shutdownExecutorService();
+
+		assertTrue(polled <= 10);
+		assertTrue(polled > 0);
+		assertEquals(100 - polled, scheduler.getQueuedCount());
+	}
+}
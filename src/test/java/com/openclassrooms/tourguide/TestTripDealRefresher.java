@@ -0,0 +1,121 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+import com.openclassrooms.tourguide.model.TripDealInputs;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.service.TripDealRefresher;
+import com.openclassrooms.tourguide.store.UserPinning;
+
+public class TestTripDealRefresher {
+
+	@Test
+	public void rewardChangesAreDebouncedIntoOneRefresh() throws Exception {
+		AtomicInteger pricerCalls = new AtomicInteger();
+		TripDealRefresher refresher = new TripDealRefresher(user -> {
+			pricerCalls.incrementAndGet();
+			List<Provider> providers = List.of(new Provider(UUID.randomUUID(), "Holiday Travels", 100));
+			user.setTripDeals(providers);
+			return providers;
+		}, 200, 1, 10);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(0, 0), new Date());
+
+		// pas de précalcul tant que les offres n'ont jamais été consultées
+		user.addUserReward(new UserReward(visitedLocation, new Attraction("A", "", "", 0, 0), 10));
+		refresher.refreshIfChanged(user);
+		assertFalse(refresher.isRefreshPending(user));
+
+		refresher.refreshNow(user);
+		Date firstComputation = user.getTripDealsComputedAt();
+		for (int i = 0; i < 5; i++) {
+			user.addUserReward(new UserReward(visitedLocation, new Attraction("B" + i, "", "", 0, 0), 10));
+			refresher.refreshIfChanged(user);
+		}
+		assertTrue(refresher.isRefreshPending(user));
+		for (int i = 0; i < 50 && pricerCalls.get() < 2; i++) {
+			Thread.sleep(50);
+		}
+		Thread.sleep(100);
+		refresher.shutdown();
+
+		assertEquals(2, pricerCalls.get());
+		assertFalse(refresher.isStale(user));
+		assertTrue(!user.getTripDealsComputedAt().before(firstComputation));
+	}
+
+	@Test
+	public void refreshRescheduledDuringPricingStaysPendingAndPinned() throws Exception {
+		AtomicInteger pricerCalls = new AtomicInteger();
+		CountDownLatch pricing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger pins = new AtomicInteger();
+		UserPinning pinning = new UserPinning() {
+			@Override
+			public User pin(User user) {
+				pins.incrementAndGet();
+				return user;
+			}
+
+			@Override
+			public void unpin(User user) {
+				pins.decrementAndGet();
+			}
+		};
+		TripDealRefresher refresher = new TripDealRefresher(user -> {
+			TripDealInputs inputs = TripDealInputs.of(user);
+			// le premier recalcul en arrière-plan reste bloqué
+			if (pricerCalls.incrementAndGet() == 2) {
+				pricing.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			List<Provider> providers = List.of(new Provider(UUID.randomUUID(), "Holiday Travels", 100));
+			user.setTripDeals(providers, inputs);
+			return providers;
+		}, pinning, 300, 1, 10);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(0, 0), new Date());
+		refresher.refreshNow(user);
+
+		user.addUserReward(new UserReward(visitedLocation, new Attraction("A", "", "", 0, 0), 10));
+		refresher.refreshIfChanged(user);
+		assertTrue(pricing.await(10, TimeUnit.SECONDS));
+		// nouveau changement pendant le calcul : la fin de ce calcul ne retire pas le recalcul reprogrammé
+		user.addUserReward(new UserReward(visitedLocation, new Attraction("B", "", "", 0, 0), 10));
+		refresher.refreshIfChanged(user);
+		release.countDown();
+		Thread.sleep(100);
+		assertTrue(refresher.isRefreshPending(user));
+		assertEquals(1, pins.get());
+
+		for (int i = 0; i < 50 && refresher.isRefreshPending(user); i++) {
+			Thread.sleep(50);
+		}
+		refresher.shutdown();
+
+		assertEquals(3, pricerCalls.get());
+		assertFalse(refresher.isStale(user));
+		assertEquals(0, pins.get());
+	}
+
+}
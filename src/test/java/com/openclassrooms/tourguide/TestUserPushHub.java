@@ -0,0 +1,155 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.push.UserPushHub;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+public class TestUserPushHub {
+
+	@Test
+	public void rewardsPendingForSlowClientAreCoalesced() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		UserPushHub hub = new UserPushHub(tourGuideService, 1, 1);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		// client lent : le premier envoi reste bloqué jusqu'à l'ouverture du verrou
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<Map.Entry<String, Object>> received = new LinkedBlockingQueue<>();
+		hub.subscribe(user, new UserPushHub.PushSink() {
+			@Override
+			public void send(String eventName, Object data) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				received.add(Map.entry(eventName, data));
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.calculateRewards(user);
+		int rewards = user.getUserRewards().size();
+		release.countDown();
+
+		// le premier envoi bloqué est soit les attractions proches, soit la première récompense attribuée
+		List<?> nearby = null;
+		int rewardEvents = 0;
+		int rewarded = 0;
+		while (nearby == null || rewarded < rewards) {
+			Map.Entry<String, Object> event = received.poll(10, TimeUnit.SECONDS);
+			if (UserPushHub.NEARBY_ATTRACTIONS_EVENT.equals(event.getKey())) {
+				assertNull(nearby);
+				nearby = (List<?>) event.getValue();
+			} else {
+				rewardEvents++;
+				rewarded += ((List<?>) event.getValue()).size();
+			}
+		}
+		hub.shutdown();
+
+		assertEquals(5, nearby.size());
+		// les récompenses attribuées pendant l'envoi bloqué sont regroupées en un seul événement
+		assertTrue(rewards > 2);
+		assertTrue(rewardEvents <= 2);
+		assertEquals(rewards, rewarded);
+		assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+		assertEquals(0, hub.getSubscriptionCount());
+	}
+
+	@Test
+	public void failingLocationListenerDoesNotBreakTracking() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		AtomicInteger notified = new AtomicInteger();
+		tourGuideService.addLocationListener(event -> {
+			throw new IllegalStateException("listener failure");
+		});
+		tourGuideService.addLocationListener(event -> notified.incrementAndGet());
+
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+
+		assertEquals(visitedLocation, user.getLastVisitedLocation());
+		assertEquals(1, notified.get());
+	}
+
+	@Test
+	public void stalledSubscriptionIsCancelledAndClosedOnceTheWriteReturns() throws Exception {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		// aucun délai : tout envoi en cours est considéré comme bloqué
+		UserPushHub hub = new UserPushHub(tourGuideService, 1, 1, 0);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		CountDownLatch sending = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+		hub.subscribe(user, new UserPushHub.PushSink() {
+			@Override
+			public void send(String eventName, Object data) throws IOException {
+				sending.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		});
+		assertTrue(sending.await(10, TimeUnit.SECONDS));
+		// un nouvel événement pendant l'envoi bloqué résilie l'abonnement
+		tourGuideService.trackUserLocation(user);
+		assertEquals(0, hub.getSubscriptionCount());
+		assertEquals(1, hub.getStalledSubscriptionCount());
+		release.countDown();
+
+		assertTrue(closed.await(10, TimeUnit.SECONDS));
+		hub.shutdown();
+	}
+
+}
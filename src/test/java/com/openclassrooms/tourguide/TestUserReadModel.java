@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserView;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.UserReadModel;
+
+public class TestUserReadModel {
+
+	@Test
+	public void writersPublishSnapshotsReadWithoutRebuild() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		UserReadModel readModel = tourGuideService.getReadModel();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = gpsUtil.getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+		// l'évaluation publie un seul instantané contenant toutes les récompenses attribuées
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		long publishedBefore = readModel.getPublishedCount();
+		rewardsService.calculateRewards(user);
+		assertEquals(publishedBefore + 1, readModel.getPublishedCount());
+
+		UserView view = user.getView();
+		assertSame(view, readModel.view(user));
+		assertEquals(user.getUserRewards().size(), view.rewards().size());
+		assertEquals(user.getUserRewards().stream().mapToInt(r -> r.getRewardPoints()).sum(), view.totalRewardPoints());
+		assertEquals(5, view.nearestAttractionRefs().size());
+		assertEquals(attraction.attractionName, tourGuideService.getNearbyAttractions(user).get(0).getName());
+		assertThrows(UnsupportedOperationException.class, () -> view.rewards().clear());
+		assertEquals(0, readModel.getRebuiltOnReadCount());
+
+		// un instantané plus ancien ne remplace pas le dernier publié
+		user.publishView(new UserView(view.version() - 1, null, List.of(), 0, List.of()));
+		assertSame(view, user.getView());
+	}
+
+}
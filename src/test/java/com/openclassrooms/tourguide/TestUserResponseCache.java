@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.controller.UserResponseCache;
+import com.openclassrooms.tourguide.model.User;
+
+public class TestUserResponseCache {
+
+	private final UserResponseCache cache = new UserResponseCache(Jackson2ObjectMapperBuilder.json());
+	private final AtomicInteger computations = new AtomicInteger();
+
+	@Test
+	public void unchangedUserIsServedFromCacheThenNotModified() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date()));
+
+		ResponseEntity<byte[]> first = respond(user, null);
+		ResponseEntity<byte[]> second = respond(user, null);
+		ResponseEntity<byte[]> notModified = respond(user, first.getHeaders().getETag());
+
+		assertEquals(1, computations.get());
+		assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+		assertEquals(MediaType.APPLICATION_JSON, first.getHeaders().getContentType());
+		assertNull(notModified);
+	}
+
+	@Test
+	public void newLocationChangesETag() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date()));
+		ResponseEntity<byte[]> first = respond(user, null);
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(34.1, -118.2), new Date()));
+		ResponseEntity<byte[]> second = respond(user, first.getHeaders().getETag());
+
+		assertEquals(2, computations.get());
+		assertNotEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+	}
+
+	@Test
+	public void eachFormatHasItsOwnETagAndVariesByAccept() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8, -117.9), new Date()));
+		ResponseEntity<byte[]> json = respond(user, null);
+
+		// l'ETag de la réponse JSON ne vaut pas pour une réponse CBOR
+		MockHttpServletResponse cborResponse = new MockHttpServletResponse();
+		ResponseEntity<byte[]> cbor = respond(user, json.getHeaders().getETag(), "application/cbor", cborResponse);
+		MockHttpServletResponse notModifiedResponse = new MockHttpServletResponse();
+		ResponseEntity<byte[]> notModified = respond(user, cbor.getHeaders().getETag(), "application/cbor",
+				notModifiedResponse);
+
+		assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+		assertNotEquals(json.getHeaders().getETag(), cbor.getHeaders().getETag());
+		assertEquals(List.of("Accept"), cbor.getHeaders().getVary());
+		assertNull(notModified);
+		assertEquals(304, notModifiedResponse.getStatus());
+		assertEquals(List.of("Accept"), notModifiedResponse.getHeaders("Vary"));
+	}
+
+	private ResponseEntity<byte[]> respond(User user, String ifNoneMatch) {
+		return respond(user, ifNoneMatch, null, new MockHttpServletResponse());
+	}
+
+	private ResponseEntity<byte[]> respond(User user, String ifNoneMatch, String accept,
+			MockHttpServletResponse response) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/getLocation");
+		if (ifNoneMatch != null) {
+			request.addHeader("If-None-Match", ifNoneMatch);
+		}
+		if (accept != null) {
+			request.addHeader("Accept", accept);
+		}
+		return cache.respond("getLocation", user, new ServletWebRequest(request, response), () -> {
+			computations.incrementAndGet();
+			return user.getLastVisitedLocation();
+		});
+	}
+}
@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+import com.openclassrooms.tourguide.model.RewardsSummary;
+import com.openclassrooms.tourguide.model.TripDealInputs;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.model.UserReward;
+import com.openclassrooms.tourguide.serialization.UserSnapshotCodec;
+
+public class TestUserSnapshotCodec {
+
+	@Test
+	public void snapshotRoundTripKeepsCatalogAttractions(@TempDir Path directory) throws Exception {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		UserSnapshotCodec codec = new UserSnapshotCodec(() -> attractions);
+		User user = newUserWithRewards(attractions);
+		Path file = directory.resolve(user.getUserId() + ".cbor");
+
+		codec.write(user, file);
+		User restored = codec.read(file);
+
+		assertEquals(user.getUserName(), restored.getUserName());
+		assertEquals(user.getVisitedLocations().size(), restored.getVisitedLocations().size());
+		assertEquals(user.getLastVisitedLocation().timeVisited, restored.getLastVisitedLocation().timeVisited);
+		assertEquals(user.getUserRewards().size(), restored.getUserRewards().size());
+		assertSame(user.getUserRewards().get(0).getAttraction(), restored.getUserRewards().get(0).getAttraction());
+		assertEquals(user.getTripDeals().get(0).tripId, restored.getTripDeals().get(0).tripId);
+		// les offres sont restaurées avec la date et les données de leur calcul
+		assertEquals(user.getTripDealsComputedAt(), restored.getTripDealsComputedAt());
+		assertEquals(user.getTripDealInputs(), restored.getTripDealInputs());
+		assertTrue(Files.size(file) > 0);
+	}
+
+	@Test
+	public void compactFormatsAreSmallerThanFullJson() throws Exception {
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		User user = newUserWithRewards(attractions);
+		ObjectMapper json = new ObjectMapper();
+
+		int fullJson = json.writeValueAsBytes(user.getUserRewards()).length;
+		int slimJson = json.writeValueAsBytes(RewardsSummary.of(user.getUserRewards())).length;
+		int cbor = new MappingJackson2CborHttpMessageConverter().getObjectMapper()
+				.writeValueAsBytes(RewardsSummary.of(user.getUserRewards())).length;
+
+		assertTrue(slimJson < fullJson, slimJson + " >= " + fullJson);
+		assertTrue(cbor < slimJson, cbor + " >= " + slimJson);
+		assertTrue(new HttpMessageConverters().getConverters().stream()
+				.anyMatch(MappingJackson2CborHttpMessageConverter.class::isInstance));
+	}
+
+	private User newUserWithRewards(List<Attraction> attractions) {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		for (int i = 0; i < 10; i++) {
+			Attraction attraction = attractions.get(i % 3);
+			VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(),
+					new Location(attraction.latitude, attraction.longitude), new Date(i * 1000L));
+			user.addToVisitedLocations(visitedLocation);
+			user.addUserReward(new UserReward(visitedLocation, attractions.get(i), 100 + i));
+		}
+		user.setLatestLocationTimestamp(new Date());
+		user.restoreTripDeals(List.of(new Provider(UUID.randomUUID(), "Holiday Travels", 250)), new Date(5_000),
+				TripDealInputs.of(user));
+		return user;
+	}
+}
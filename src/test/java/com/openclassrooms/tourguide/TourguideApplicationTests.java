@@ -1,13 +1,43 @@
 package com.openclassrooms.tourguide;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+
 @SpringBootTest
 class TourguideApplicationTests {
 
+	@Autowired
+	TourGuideService tourGuideService;
+
+	@Autowired
+	Tracker tracker;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void usersAreLoadedInBackgroundAndTrackerIsManagedByContext() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (!tourGuideService.isUsersLoaded() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+
+		assertTrue(tourGuideService.isUsersLoaded());
+		assertEquals(InternalTestHelper.getInternalUserNumber(), tourGuideService.getAllUsers().size());
+		assertSame(tourGuideService.tracker, tracker);
+		assertTrue(tracker.isRunning());
+	}
+
 }
@@ -0,0 +1,145 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modèle de latence appliqué aux bibliothèques externes simulées (gpsUtil, RewardCentral, TripPricer).
+ * Un modèle "réel" délègue à la bibliothèque d'origine et paie ses temps d'attente ;
+ * les autres modèles remplacent ces attentes par un délai fixe, aléatoire ou nul.
+ */
+public abstract class LatencyModel {
+
+	/**
+	 * @return true si la bibliothèque d'origine doit être appelée telle quelle.
+	 */
+	public boolean isReal() {
+		return false;
+	}
+
+	/**
+	 * @return Le délai à appliquer pour le prochain appel, en nanosecondes.
+	 */
+	public abstract long nextDelayNanos();
+
+	/**
+	 * Applique le délai du modèle sur le thread courant.
+	 */
+	public void pause() {
+		long delay = nextDelayNanos();
+		if (delay <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static LatencyModel real() {
+		return new LatencyModel() {
+			@Override
+			public boolean isReal() {
+				return true;
+			}
+
+			@Override
+			public long nextDelayNanos() {
+				return 0;
+			}
+
+			@Override
+			public String toString() {
+				return "real";
+			}
+		};
+	}
+
+	public static LatencyModel zero() {
+		return fixed(0);
+	}
+
+	public static LatencyModel fixed(double millis) {
+		long nanos = toNanos(millis);
+		return new LatencyModel() {
+			@Override
+			public long nextDelayNanos() {
+				return nanos;
+			}
+
+			@Override
+			public String toString() {
+				return nanos == 0 ? "zero" : "fixed:" + millis;
+			}
+		};
+	}
+
+	public static LatencyModel uniform(double minMillis, double maxMillis) {
+		long min = toNanos(minMillis);
+		long max = toNanos(maxMillis);
+		return new LatencyModel() {
+			@Override
+			public long nextDelayNanos() {
+				return min == max ? min : ThreadLocalRandom.current().nextLong(min, max);
+			}
+
+			@Override
+			public String toString() {
+				return "uniform:" + minMillis + "-" + maxMillis;
+			}
+		};
+	}
+
+	/**
+	 * Distribution log-normale, représentative des latences réseau (queue de distribution longue).
+	 *
+	 * @param medianMillis La médiane de la distribution, en millisecondes.
+	 * @param sigma        L'écart type du logarithme de la latence.
+	 */
+	public static LatencyModel logNormal(double medianMillis, double sigma) {
+		double mu = Math.log(medianMillis);
+		return new LatencyModel() {
+			@Override
+			public long nextDelayNanos() {
+				return toNanos(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+			}
+
+			@Override
+			public String toString() {
+				return "lognormal:" + medianMillis + "," + sigma;
+			}
+		};
+	}
+
+	/**
+	 * Construit un modèle à partir de sa description textuelle :
+	 * "real", "zero", "fixed:10", "uniform:1-1000" ou "lognormal:50,0.8".
+	 *
+	 * @param spec La description du modèle.
+	 * @return Le modèle de latence correspondant.
+	 */
+	public static LatencyModel parse(String spec) {
+		String[] parts = spec.trim().split(":", 2);
+		switch (parts[0].toLowerCase()) {
+		case "real":
+			return real();
+		case "zero":
+			return zero();
+		case "fixed":
+			return fixed(Double.parseDouble(parts[1]));
+		case "uniform":
+			String[] range = parts[1].split("-");
+			return uniform(Double.parseDouble(range[0]), Double.parseDouble(range[1]));
+		case "lognormal":
+			String[] params = parts[1].split(",");
+			return logNormal(Double.parseDouble(params[0]), Double.parseDouble(params[1]));
+		default:
+			throw new IllegalArgumentException("Unknown latency model: " + spec);
+		}
+	}
+
+	private static long toNanos(double millis) {
+		return (long) (millis * 1_000_000d);
+	}
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.loadtest;
+
+/**
+ * Configuration d'un test de charge, lue depuis les propriétés système afin de pouvoir
+ * faire varier le volume et les latences sans modifier le code :
+ *
+ * <pre>
+ * mvn test -Dtest=TestPerformance -Dloadtest.users=100000 -Dloadtest.latency=zero
+ * mvn test -Dtest=TestPerformance -Dloadtest.gps=fixed:50 -Dloadtest.rewards=lognormal:300,0.8
+ * mvn test -Dtest=TestPerformance -Dloadtest.baseline=target/loadtest
+ * </pre>
+ */
+public class LoadTestConfig {
+
+	private int users = Integer.getInteger("loadtest.users", 10_000);
+	private int concurrency = Integer.getInteger("loadtest.concurrency", 50);
+	private LatencyModel gpsLatency = model("loadtest.gps");
+	private LatencyModel rewardsLatency = model("loadtest.rewards");
+	private LatencyModel tripPricerLatency = model("loadtest.tripPricer");
+	// Répertoire contenant les résultats de référence à comparer (mode comparaison désactivé si null)
+	private String baselineDirectory = System.getProperty("loadtest.baseline");
+	private String outputDirectory = System.getProperty("loadtest.output", "target/loadtest");
+	// Régression tolérée en pourcentage avant de signaler un écart par rapport à la référence
+	private double tolerancePercent = Double.parseDouble(System.getProperty("loadtest.tolerance", "10"));
+
+	private static LatencyModel model(String property) {
+		return LatencyModel.parse(System.getProperty(property, System.getProperty("loadtest.latency", "real")));
+	}
+
+	public int getUsers() {
+		return users;
+	}
+
+	public LoadTestConfig setUsers(int users) {
+		this.users = users;
+		return this;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public LoadTestConfig setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	public LatencyModel getGpsLatency() {
+		return gpsLatency;
+	}
+
+	public LoadTestConfig setGpsLatency(LatencyModel gpsLatency) {
+		this.gpsLatency = gpsLatency;
+		return this;
+	}
+
+	public LatencyModel getRewardsLatency() {
+		return rewardsLatency;
+	}
+
+	public LoadTestConfig setRewardsLatency(LatencyModel rewardsLatency) {
+		this.rewardsLatency = rewardsLatency;
+		return this;
+	}
+
+	public LatencyModel getTripPricerLatency() {
+		return tripPricerLatency;
+	}
+
+	public LoadTestConfig setTripPricerLatency(LatencyModel tripPricerLatency) {
+		this.tripPricerLatency = tripPricerLatency;
+		return this;
+	}
+
+	public String getBaselineDirectory() {
+		return baselineDirectory;
+	}
+
+	public LoadTestConfig setBaselineDirectory(String baselineDirectory) {
+		this.baselineDirectory = baselineDirectory;
+		return this;
+	}
+
+	public String getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	public double getTolerancePercent() {
+		return tolerancePercent;
+	}
+
+	@Override
+	public String toString() {
+		return "users=" + users + ", concurrency=" + concurrency + ", gps=" + gpsLatency + ", rewards="
+				+ rewardsLatency + ", tripPricer=" + tripPricerLatency;
+	}
+}
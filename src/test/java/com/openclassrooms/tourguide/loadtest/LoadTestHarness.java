@@ -0,0 +1,235 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.model.User;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * Banc de test de charge : construit les services avec des bibliothèques externes simulées,
+ * exécute des phases (suivi, récompenses, offres de voyage) sur un nombre configurable d'utilisateurs
+ * et rapporte pour chaque phase le débit, les percentiles p50/p99/p999 et le taux d'allocation.
+ * Les résultats sont écrits dans le répertoire de sortie et peuvent être comparés à une référence ; une phase
+ * dont des opérations ont échoué est toujours signalée en régression.
+ */
+public class LoadTestHarness implements AutoCloseable {
+
+	private final LoadTestConfig config;
+	private final SimulatedGpsUtil gpsUtil;
+	private final RewardsService rewardsService;
+	private final TourGuideService tourGuideService;
+	private final List<PhaseResult> results = new ArrayList<>();
+
+	public LoadTestHarness(LoadTestConfig config) {
+		this.config = config;
+		this.gpsUtil = new SimulatedGpsUtil(config.getGpsLatency());
+		this.rewardsService = new RewardsService(gpsUtil, new SimulatedRewardCentral(config.getRewardsLatency()));
+		InternalTestHelper.setInternalUserNumber(config.getUsers());
+		this.tourGuideService = new TourGuideService(gpsUtil, rewardsService,
+				new SimulatedTripPricer(config.getTripPricerLatency()));
+		// Le Tracker ne doit pas interférer avec les mesures
+		tourGuideService.tracker.stopTracking();
+		System.out.println("Load test configuration: " + config);
+	}
+
+	public SimulatedGpsUtil getGpsUtil() {
+		return gpsUtil;
+	}
+
+	public RewardsService getRewardsService() {
+		return rewardsService;
+	}
+
+	public TourGuideService getTourGuideService() {
+		return tourGuideService;
+	}
+
+	/**
+	 * Phase de suivi : une localisation par utilisateur, puis attente du traitement des récompenses
+	 * publiées sur le bus d'événements (non comptée dans la durée de la phase).
+	 */
+	public PhaseResult trackLocations() throws InterruptedException {
+		PhaseResult result = runPhase("trackLocation", tourGuideService.getAllUsers(),
+				tourGuideService::trackUserLocation);
+		tourGuideService.getRewardsEventBus().awaitDrained(1, TimeUnit.HOURS);
+		System.out.println("Rewards event bus max lag: " + tourGuideService.getRewardsEventBus().getMaxLagMillis()
+				+ " ms.");
+		return result;
+	}
+
+	/**
+	 * Phase de calcul des récompenses : un calcul complet par utilisateur.
+	 */
+	public PhaseResult calculateRewards() throws InterruptedException {
+		return runPhase("calculateRewards", tourGuideService.getAllUsers(), rewardsService::calculateRewards);
+	}
+
+	/**
+	 * Phase d'offres de voyage : un appel à TripPricer par utilisateur.
+	 */
+	public PhaseResult tripDeals() throws InterruptedException {
+		return runPhase("tripDeals", tourGuideService.getAllUsers(), tourGuideService::getTripDeals);
+	}
+
+	/**
+	 * Exécute une opération pour chaque utilisateur sur un pool de la taille configurée,
+	 * en mesurant la latence de chaque opération et les allocations de la phase. Les opérations en échec sont
+	 * comptées à part et exclues des latences.
+	 *
+	 * @param name      Le nom de la phase.
+	 * @param users     Les utilisateurs à traiter.
+	 * @param operation L'opération à mesurer.
+	 * @return Le résultat de la phase.
+	 */
+	public PhaseResult runPhase(String name, List<User> users, Consumer<User> operation)
+			throws InterruptedException {
+		long[] latencies = new long[users.size()];
+		AtomicInteger index = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		AtomicReference<RuntimeException> firstError = new AtomicReference<>();
+		ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+		CountDownLatch done = new CountDownLatch(users.size());
+		Map<Long, Long> allocatedBefore = allocatedBytesByThread();
+		long start = System.nanoTime();
+		for (User user : users) {
+			executor.execute(() -> {
+				try {
+					long begin = System.nanoTime();
+					operation.accept(user);
+					latencies[index.getAndIncrement()] = System.nanoTime() - begin;
+				} catch (RuntimeException e) {
+					errors.incrementAndGet();
+					firstError.compareAndSet(null, e);
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+		long elapsed = System.nanoTime() - start;
+		// Mesure avant l'arrêt du pool : les allocations d'un thread terminé ne sont plus consultables
+		long allocated = allocatedBytesSince(allocatedBefore);
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.DAYS);
+		PhaseResult result = new PhaseResult(name, Arrays.copyOf(latencies, index.get()), errors.get(), elapsed,
+				allocated);
+		results.add(result);
+		System.out.println(result);
+		if (firstError.get() != null) {
+			System.out.println(name + ": " + errors.get() + " failed operations, first failure:");
+			firstError.get().printStackTrace(System.out);
+		}
+		return result;
+	}
+
+	// Octets alloués par chaque thread vivant
+	private static Map<Long, Long> allocatedBytesByThread() {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long[] threadIds = threadMXBean.getAllThreadIds();
+		long[] allocated = threadMXBean.getThreadAllocatedBytes(threadIds);
+		Map<Long, Long> allocatedByThread = new HashMap<>();
+		for (int i = 0; i < threadIds.length; i++) {
+			allocatedByThread.put(threadIds[i], Math.max(0, allocated[i]));
+		}
+		return allocatedByThread;
+	}
+
+	// Octets alloués depuis la mesure donnée par les threads encore vivants, y compris ceux créés entre-temps
+	private static long allocatedBytesSince(Map<Long, Long> before) {
+		long total = 0;
+		for (Map.Entry<Long, Long> thread : allocatedBytesByThread().entrySet()) {
+			total += Math.max(0, thread.getValue() - before.getOrDefault(thread.getKey(), 0L));
+		}
+		return total;
+	}
+
+	/**
+	 * Écrit les résultats de l'exécution et, si une référence est configurée, les compare à celle-ci.
+	 *
+	 * @param runName Le nom de l'exécution (nom du fichier de résultats).
+	 * @return La liste des métriques en régression au-delà de la tolérance configurée.
+	 */
+	public List<String> report(String runName) throws IOException {
+		Properties current = new Properties();
+		results.forEach(result -> result.exportTo(current));
+		// La référence est lue avant l'écriture, elle peut donc pointer vers le répertoire de sortie
+		Properties baseline = loadBaseline(runName);
+		Path output = Paths.get(config.getOutputDirectory());
+		Files.createDirectories(output);
+		try (Writer writer = Files.newBufferedWriter(output.resolve(runName + ".properties"))) {
+			current.store(writer, config.toString());
+		}
+
+		List<String> regressions = new ArrayList<>();
+		for (PhaseResult result : results) {
+			if (result.getErrors() > 0) {
+				String line = result.getName() + ".errors=" + result.getErrors();
+				regressions.add(line);
+				System.out.println(line + "  FAILED");
+			}
+		}
+		for (String key : current.stringPropertyNames()) {
+			if (baseline.getProperty(key) == null) {
+				continue;
+			}
+			double before = Double.parseDouble(baseline.getProperty(key));
+			double after = Double.parseDouble(current.getProperty(key));
+			double changePercent = before == 0 ? 0 : (after - before) * 100 / before;
+			// Pour le débit une baisse est une régression, pour les latences et allocations une hausse
+			double regressionPercent = key.endsWith(".throughput") ? -changePercent : changePercent;
+			String line = String.format("%-30s baseline=%12.2f current=%12.2f change=%+7.1f%%", key, before, after,
+					changePercent);
+			if (regressionPercent > config.getTolerancePercent()) {
+				regressions.add(line);
+				line += "  REGRESSION";
+			}
+			System.out.println(line);
+		}
+		return regressions;
+	}
+
+	private Properties loadBaseline(String runName) throws IOException {
+		Properties baseline = new Properties();
+		if (config.getBaselineDirectory() == null) {
+			return baseline;
+		}
+		Path baselineFile = Paths.get(config.getBaselineDirectory()).resolve(runName + ".properties");
+		if (!Files.exists(baselineFile)) {
+			System.out.println("No baseline found at " + baselineFile);
+			return baseline;
+		}
+		try (Reader reader = Files.newBufferedReader(baselineFile)) {
+			baseline.load(reader);
+		}
+		return baseline;
+	}
+
+	@Override
+	public void close() {
+		tourGuideService.tracker.stopTracking();
+		tourGuideService.shutdownExecutorService();
+		rewardsService.shutdownExecutorService();
+	}
+}
@@ -0,0 +1,113 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résultat d'une phase de test de charge : débit, percentiles de latence, nombre d'échecs et taux d'allocation.
+ */
+public class PhaseResult {
+
+	private final String name;
+	private final int operations;
+	private final int errors;
+	private final long elapsedNanos;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+	private final long allocatedBytes;
+
+	/**
+	 * @param name           Le nom de la phase.
+	 * @param latencies      Les latences des opérations réussies (le tableau est trié sur place).
+	 * @param errors         Le nombre d'opérations en échec, exclues des latences.
+	 * @param elapsedNanos   La durée totale de la phase.
+	 * @param allocatedBytes Le nombre d'octets alloués pendant la phase.
+	 */
+	public PhaseResult(String name, long[] latencies, int errors, long elapsedNanos, long allocatedBytes) {
+		Arrays.sort(latencies);
+		this.name = name;
+		this.operations = latencies.length;
+		this.errors = errors;
+		this.elapsedNanos = elapsedNanos;
+		this.p50Nanos = percentile(latencies, 0.50);
+		this.p99Nanos = percentile(latencies, 0.99);
+		this.p999Nanos = percentile(latencies, 0.999);
+		this.maxNanos = latencies.length == 0 ? 0 : latencies[latencies.length - 1];
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	private static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(quantile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getOperations() {
+		return operations;
+	}
+
+	public int getErrors() {
+		return errors;
+	}
+
+	public long getElapsedSeconds() {
+		return TimeUnit.NANOSECONDS.toSeconds(elapsedNanos);
+	}
+
+	// Opérations par seconde
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+	}
+
+	public double getP50Millis() {
+		return p50Nanos / 1e6;
+	}
+
+	public double getP99Millis() {
+		return p99Nanos / 1e6;
+	}
+
+	public double getP999Millis() {
+		return p999Nanos / 1e6;
+	}
+
+	public double getMaxMillis() {
+		return maxNanos / 1e6;
+	}
+
+	// Mégaoctets alloués par seconde pendant la phase
+	public double getAllocationRateMBs() {
+		return elapsedNanos == 0 ? 0 : allocatedBytes / 1_048_576d * 1e9 / elapsedNanos;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Exporte les métriques comparables de la phase, préfixées par son nom.
+	 */
+	public void exportTo(Properties properties) {
+		properties.setProperty(name + ".throughput", String.valueOf(getThroughput()));
+		properties.setProperty(name + ".p50Ms", String.valueOf(getP50Millis()));
+		properties.setProperty(name + ".p99Ms", String.valueOf(getP99Millis()));
+		properties.setProperty(name + ".p999Ms", String.valueOf(getP999Millis()));
+		properties.setProperty(name + ".allocMBs", String.valueOf(getAllocationRateMBs()));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%-14s ops=%-8d errors=%-6d elapsed=%5ds throughput=%10.1f/s p50=%9.2fms p99=%9.2fms "
+				+ "p999=%9.2fms max=%9.2fms alloc=%8.1fMB/s", name, operations, errors, getElapsedSeconds(), getThroughput(),
+				getP50Millis(), getP99Millis(), getP999Millis(), getMaxMillis(), getAllocationRateMBs());
+	}
+}
@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil dont la latence est pilotée par un {@link LatencyModel}.
+ * Le catalogue d'attractions est celui de la bibliothèque, chargé une seule fois.
+ */
+public class SimulatedGpsUtil extends GpsUtil {
+
+	private final LatencyModel latencyModel;
+	private final List<Attraction> attractions;
+
+	public SimulatedGpsUtil(LatencyModel latencyModel) {
+		this.latencyModel = latencyModel;
+		this.attractions = super.getAttractions();
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		if (latencyModel.isReal()) {
+			return super.getUserLocation(userId);
+		}
+		latencyModel.pause();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Location location = new Location(random.nextDouble(-85.05112878, 85.05112878), random.nextDouble(-180, 180));
+		return new VisitedLocation(userId, location, new Date());
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		if (latencyModel.isReal()) {
+			return super.getAttractions();
+		}
+		latencyModel.pause();
+		return attractions;
+	}
+}
@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral dont la latence est pilotée par un {@link LatencyModel}.
+ */
+public class SimulatedRewardCentral extends RewardCentral {
+
+	private final LatencyModel latencyModel;
+
+	public SimulatedRewardCentral(LatencyModel latencyModel) {
+		this.latencyModel = latencyModel;
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		if (latencyModel.isReal()) {
+			return super.getAttractionRewardPoints(attractionId, userId);
+		}
+		latencyModel.pause();
+		return ThreadLocalRandom.current().nextInt(1, 1000);
+	}
+}
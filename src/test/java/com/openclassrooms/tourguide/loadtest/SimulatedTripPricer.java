@@ -0,0 +1,38 @@
+package com.openclassrooms.tourguide.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * TripPricer dont la latence est pilotée par un {@link LatencyModel}.
+ */
+public class SimulatedTripPricer extends TripPricer {
+
+	private final LatencyModel latencyModel;
+
+	public SimulatedTripPricer(LatencyModel latencyModel) {
+		this.latencyModel = latencyModel;
+	}
+
+	@Override
+	public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+			int rewardsPoints) {
+		if (latencyModel.isReal()) {
+			return super.getPrice(apiKey, attractionId, adults, children, nightsStay, rewardsPoints);
+		}
+		latencyModel.pause();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Provider> providers = new ArrayList<>(5);
+		for (int i = 0; i < 5; i++) {
+			double price = Math.max(0, (random.nextInt(100, 700) * adults + random.nextInt(50, 300) * children)
+					* nightsStay + 0.99 - rewardsPoints);
+			providers.add(new Provider(UUID.randomUUID(), "Provider " + i, price));
+		}
+		return providers;
+	}
+}